@@ -12,31 +12,83 @@ import org.springframework.security.oauth2.server.resource.authentication.JwtAut
 import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.stereotype.Component;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Convertit le jeton en authentification Spring.
+ * <p>
+ * Les droits d'un jeton sont calculés une seule fois puis mis en cache sous son
+ * identifiant ({@code jti}), ou à défaut sous ses claims de rôles, jusqu'à son
+ * expiration ({@code exp}). Les instances de {@link SimpleGrantedAuthority} sont
+ * partagées entre tous les jetons. Métriques :
+ * {@code cache.gets{cache=jwt.droits}}.
+ */
 @Component
 public class JwtAuthConverter implements Converter<Jwt, AbstractAuthenticationToken> {
 
+	/** Clé utilisée quand le jeton n'a pas de {@code jti} : les claims dont dépendent les droits. */
+	private record ClaimsRoles(Object scope, Object ressources, Object realm) {
+	}
+
+	private record Droits(Set<GrantedAuthority> authorities, Instant expiration) {
+	}
+
+	private static final ConcurrentHashMap<String, GrantedAuthority> ROLES = new ConcurrentHashMap<>();
+
 	private final JwtGrantedAuthoritiesConverter jwtGrantedAuthoritiesConverter = new JwtGrantedAuthoritiesConverter();
 
+	private final Cache<Object, Droits> droits;
+
 	@Value("${jwt.auth.converter.principal-attribute:preferred_username}")
 	private String principalAttribute;
 
 	@Value("${jwt.auth.converter.resource-id:myclient}")
 	private String resourceId;
 
+	public JwtAuthConverter(MeterRegistry registry,
+			@Value("${jwt.auth.converter.cache.taille-max:10000}") long tailleMax,
+			@Value("${jwt.auth.converter.cache.duree-max:1h}") Duration dureeMax) {
+		this.droits = Caffeine.newBuilder()
+				.maximumSize(tailleMax)
+				.expireAfter(Expiry.creating((Object cle, Droits d) -> {
+					if (d.expiration() == null) {
+						return dureeMax;
+					}
+					Duration restant = Duration.between(Instant.now(), d.expiration());
+					return restant.isNegative() ? Duration.ZERO : restant.compareTo(dureeMax) > 0 ? dureeMax : restant;
+				}))
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(registry, droits, "jwt.droits");
+	}
+
 	@Override
 	public AbstractAuthenticationToken convert(@NonNull Jwt jwt) {
-		Collection<GrantedAuthority> authorities = Stream
-				.concat(jwtGrantedAuthoritiesConverter.convert(jwt).stream(),
-						Stream.concat(extractResourceRoles(jwt).stream(), extractRealmRoles(jwt).stream()))
-				.collect(Collectors.toSet());
+		Object cle = jwt.getId() != null ? jwt.getId()
+				: new ClaimsRoles(jwt.getClaim("scope"), jwt.getClaim("resource_access"), jwt.getClaim("realm_access"));
+		Droits d = droits.get(cle, c -> new Droits(calculer(jwt), jwt.getExpiresAt()));
+		return new JwtAuthenticationToken(jwt, d.authorities(), getPrincipleClaimName(jwt));
+	}
 
-		return new JwtAuthenticationToken(jwt, authorities, getPrincipleClaimName(jwt));
+	private Set<GrantedAuthority> calculer(Jwt jwt) {
+		Set<GrantedAuthority> authorities = new HashSet<>(jwtGrantedAuthoritiesConverter.convert(jwt));
+		extractResourceRoles(jwt, authorities);
+		extractRealmRoles(jwt, authorities);
+		return Set.copyOf(authorities);
 	}
 
 	private String getPrincipleClaimName(Jwt jwt) {
@@ -44,40 +96,26 @@ public class JwtAuthConverter implements Converter<Jwt, AbstractAuthenticationTo
 				: jwt.getClaim(JwtClaimNames.SUB);
 	}
 
-	private Collection<? extends GrantedAuthority> extractResourceRoles(Jwt jwt) {
+	private void extractResourceRoles(Jwt jwt, Set<GrantedAuthority> authorities) {
 		Map<String, Object> resourceAccess = jwt.getClaim("resource_access");
-		if (resourceAccess == null || !resourceAccess.containsKey(resourceId)) {
-			return Set.of();
+		if (resourceAccess == null || !(resourceAccess.get(resourceId) instanceof Map<?, ?> resource)) {
+			return;
 		}
-
-		@SuppressWarnings("unchecked")
-		Map<String, Object> resource = (Map<String, Object>) resourceAccess.get(resourceId);
-		@SuppressWarnings("unchecked")
-		Collection<String> resourceRoles = (Collection<String>) resource.get("roles");
-
-		if (resourceRoles == null) {
-			return Set.of();
+		if (resource.get("roles") instanceof Collection<?> resourceRoles) {
+			resourceRoles.forEach(role -> authorities.add(role(role.toString())));
 		}
-
-		return resourceRoles.stream()
-				.map(role -> new SimpleGrantedAuthority("ROLE_" + role.toUpperCase().replace(" ", "_")))
-				.collect(Collectors.toSet());
 	}
 
-	private Collection<? extends GrantedAuthority> extractRealmRoles(Jwt jwt) {
+	private void extractRealmRoles(Jwt jwt, Set<GrantedAuthority> authorities) {
 		Map<String, Object> realmAccess = jwt.getClaim("realm_access");
-		if (realmAccess == null || !realmAccess.containsKey("roles")) {
-			return Set.of();
-		}
-
-		@SuppressWarnings("unchecked")
-		Collection<String> realmRoles = (Collection<String>) realmAccess.get("roles");
-		if (realmRoles == null) {
-			return Set.of();
+		if (realmAccess != null && realmAccess.get("roles") instanceof Collection<?> realmRoles) {
+			realmRoles.forEach(role -> authorities.add(role(role.toString())));
 		}
+	}
 
-		return realmRoles.stream()
-				.map(role -> new SimpleGrantedAuthority("ROLE_" + role.toUpperCase().replace(" ", "_")))
-				.collect(Collectors.toSet());
+	/** Instance partagée de l'autorité {@code ROLE_<ROLE>} correspondant au rôle Keycloak. */
+	private static GrantedAuthority role(String role) {
+		return ROLES.computeIfAbsent(role,
+				r -> new SimpleGrantedAuthority("ROLE_" + r.toUpperCase(Locale.ROOT).replace(" ", "_")));
 	}
 }
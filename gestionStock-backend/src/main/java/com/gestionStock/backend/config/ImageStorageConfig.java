@@ -0,0 +1,43 @@
+package com.gestionStock.backend.config;
+
+import com.gestionStock.backend.service.images.CacheDisqueStorage;
+import com.gestionStock.backend.service.images.IImageStorage;
+import com.gestionStock.backend.service.images.StockageParContenu;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
+
+/**
+ * Stockage d'images utilisé par l'application : le backend choisi par
+ * {@code file.storage.type}, précédé d'un cache disque pour les backends
+ * distants, et dont les envois sont nommés par leur contenu.
+ */
+@Configuration
+public class ImageStorageConfig {
+
+    @Bean
+    @Primary
+    public IImageStorage imageStorage(Map<String, IImageStorage> stockages,
+            @Value("${file.storage.type}") String type,
+            @Value("${images.cache-disque.actif:true}") boolean cacheActif,
+            @Value("${images.cache-disque.repertoire:cache-images}") String repertoire,
+            @Value("${images.cache-disque.taille-max:512MB}") DataSize tailleMax,
+            MeterRegistry registry) throws IOException {
+        IImageStorage backend = stockages.get(type + "Storage");
+        if (backend == null) {
+            throw new IllegalStateException("Aucun stockage d'images pour file.storage.type=" + type);
+        }
+        IImageStorage stockage = backend;
+        if (cacheActif && !"local".equals(type)) {
+            stockage = new CacheDisqueStorage(backend, Paths.get(repertoire), tailleMax.toBytes(), registry);
+        }
+        return new StockageParContenu(stockage, registry);
+    }
+}
@@ -0,0 +1,103 @@
+package com.gestionStock.backend.config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.gestionStock.backend.entity.piece.Stock;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Passe la table {@code stock} d'une ligne par (pièce, entrepôt) à une ligne
+ * par (pièce, entrepôt, type).
+ * <p>
+ * {@code ddl-auto=update} ajoute des colonnes et des contraintes mais n'en
+ * supprime ni n'en durcit aucune : sur une base antérieure, l'ancienne
+ * contrainte à deux colonnes resterait en place et refuserait une seconde ligne
+ * de type pour le même couple. Au démarrage, les lignes sans type deviennent
+ * {@code DISPONIBLE}, la colonne passe en {@code NOT NULL}, l'ancienne
+ * contrainte est supprimée et {@link Stock#CLE_UNIQUE} créée si elle manque.
+ * Chaque étape vérifie l'état du schéma avant d'agir ; sur une base à jour, rien
+ * n'est modifié. Le tout se fait dans une transaction (DDL transactionnel sous
+ * PostgreSQL).
+ */
+@Slf4j
+@Component
+public class MigrationStock {
+
+	/** Contraintes d'unicité de {@code stock} sous la forme {nom, colonnes en minuscules séparées par des virgules}. */
+	private static final String CONTRAINTES_UNIQUES = """
+			SELECT tc.constraint_name, k.column_name
+			FROM information_schema.table_constraints tc
+			JOIN information_schema.key_column_usage k
+			  ON k.constraint_schema = tc.constraint_schema AND k.constraint_name = tc.constraint_name
+			WHERE tc.table_schema = CURRENT_SCHEMA AND LOWER(tc.table_name) = 'stock'
+			  AND tc.constraint_type = 'UNIQUE'
+			ORDER BY tc.constraint_name, k.ordinal_position
+			""";
+
+	private static final String TYPE_NULLABLE = """
+			SELECT is_nullable FROM information_schema.columns
+			WHERE table_schema = CURRENT_SCHEMA AND LOWER(table_name) = 'stock' AND LOWER(column_name) = 'type'
+			""";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transaction;
+
+	public MigrationStock(JdbcTemplate jdbcTemplate, TransactionTemplate transaction) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transaction = transaction;
+	}
+
+	@PostConstruct
+	public void migrer() {
+		transaction.executeWithoutResult(statut -> {
+			int completees = jdbcTemplate.update("UPDATE stock SET type = 'DISPONIBLE' WHERE type IS NULL");
+			if (completees > 0) {
+				log.info("{} lignes de stock sans type passées en DISPONIBLE", completees);
+			}
+			if (typeNullable()) {
+				jdbcTemplate.execute("ALTER TABLE stock ALTER COLUMN type SET NOT NULL");
+			}
+
+			boolean cleAJour = false;
+			for (Contrainte contrainte : contraintesUniques()) {
+				if (contrainte.colonnes().equals(List.of("piece_detachee_id", "entrepot_id"))) {
+					log.info("Suppression de l'ancienne contrainte d'unicité de stock {}", contrainte.nom());
+					jdbcTemplate.execute("ALTER TABLE stock DROP CONSTRAINT " + contrainte.nom());
+				} else if (contrainte.colonnes().equals(List.of("piece_detachee_id", "entrepot_id", "type"))) {
+					cleAJour = true;
+				}
+			}
+			if (!cleAJour) {
+				log.info("Création de la contrainte d'unicité de stock {}", Stock.CLE_UNIQUE);
+				jdbcTemplate.execute("ALTER TABLE stock ADD CONSTRAINT " + Stock.CLE_UNIQUE
+						+ " UNIQUE (piece_detachee_id, entrepot_id, type)");
+			}
+		});
+	}
+
+	private record Contrainte(String nom, List<String> colonnes) {
+	}
+
+	private boolean typeNullable() {
+		return jdbcTemplate.queryForList(TYPE_NULLABLE, String.class).contains("YES");
+	}
+
+	private List<Contrainte> contraintesUniques() {
+		Map<String, List<String>> colonnesParNom = new LinkedHashMap<>();
+		jdbcTemplate.query(CONTRAINTES_UNIQUES, ligne -> {
+			colonnesParNom.computeIfAbsent(ligne.getString(1), n -> new ArrayList<>())
+					.add(ligne.getString(2).toLowerCase(Locale.ROOT));
+		});
+		return colonnesParNom.entrySet().stream().map(e -> new Contrainte(e.getKey(), e.getValue())).toList();
+	}
+}
@@ -0,0 +1,54 @@
+package com.gestionStock.backend.controller.piece;
+
+import com.gestionStock.backend.dto.piece.AlerteStockDto;
+import com.gestionStock.backend.service.piece.AlerteStockService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/alertes")
+@AllArgsConstructor
+@CrossOrigin(origins = "http://localhost:4200")
+public class AlerteStockController {
+
+    private final AlerteStockService alerteService;
+
+    @GetMapping
+    @PreAuthorize("hasAnyRole('ADMINISTRATEUR', 'MAGASINIER', 'RESPONSABLE_LOGISTIQUE', 'AUDITEUR')")
+    public List<AlerteStockDto> getAll() {
+        return alerteService.alertes();
+    }
+
+    @GetMapping("/piece/{pieceId}")
+    @PreAuthorize("hasAnyRole('ADMINISTRATEUR', 'MAGASINIER', 'RESPONSABLE_LOGISTIQUE', 'AUDITEUR')")
+    public List<AlerteStockDto> getByPiece(@PathVariable Long pieceId) {
+        return alerteService.alertes(pieceId);
+    }
+
+    @PutMapping("/seuils/piece/{pieceId}/entrepot/{entrepotId}")
+    @PreAuthorize("hasAnyRole('MAGASINIER', 'RESPONSABLE_LOGISTIQUE')")
+    public ResponseEntity<?> definirSeuil(@PathVariable Long pieceId, @PathVariable Long entrepotId,
+            @RequestParam int seuil) {
+        try {
+            alerteService.definirSeuilEntrepot(pieceId, entrepotId, seuil);
+            return ResponseEntity.ok(alerteService.alertes(pieceId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/seuils/piece/{pieceId}/entrepot/{entrepotId}")
+    @PreAuthorize("hasAnyRole('MAGASINIER', 'RESPONSABLE_LOGISTIQUE')")
+    public ResponseEntity<?> supprimerSeuil(@PathVariable Long pieceId, @PathVariable Long entrepotId) {
+        try {
+            alerteService.definirSeuilEntrepot(pieceId, entrepotId, 0);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.gestionStock.backend.controller.piece;
 
+import com.gestionStock.backend.dto.piece.CategorieResume;
+import com.gestionStock.backend.dto.piece.PageCurseur;
 import com.gestionStock.backend.entity.piece.Categorie;
 import com.gestionStock.backend.service.piece.CategorieService;
 import lombok.AllArgsConstructor;
@@ -23,6 +25,19 @@ public class CategorieController {
         return categorieService.getAll();
     }
 
+    @GetMapping("/page")
+    @PreAuthorize("hasAnyRole('ADMINISTRATEUR', 'MAGASINIER')")
+    public ResponseEntity<?> getPage(@RequestParam(required = false) String curseur,
+            @RequestParam(defaultValue = "50") int taille,
+            @RequestParam(defaultValue = "id") String tri) {
+        try {
+            PageCurseur<CategorieResume> page = categorieService.page(curseur, taille, "nom".equals(tri));
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PostMapping
     @PreAuthorize("hasRole('MAGASINIER')")
     public ResponseEntity<Categorie> create(@RequestBody Categorie categorie) {
@@ -1,15 +1,29 @@
 package com.gestionStock.backend.controller.piece;
 
 import com.gestionStock.backend.service.images.ImageService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.InputStream;
-import java.net.URLConnection;
+import java.io.IOException;
+import java.net.URI;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/images")
@@ -17,27 +31,164 @@ import java.net.URLConnection;
 @CrossOrigin(origins = "http://localhost:4200")
 public class ImageController {
 
+    /** Les noms d'images sont uniques et jamais réécrits : une réponse reste valide indéfiniment. */
+    private static final CacheControl IMMUABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
+    /** Attributs de requête de Tomcat pour l'envoi d'un fichier par le noyau (sendfile). */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FICHIER = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_DEBUT = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
+    /** Type de contenu par extension connue, résolu une fois. */
+    private static final Map<String, MediaType> TYPES = new ConcurrentHashMap<>();
+
     private final ImageService imageService;
 
+    /**
+     * Sert une image (ou sa miniature avec {@code largeur}). Si le stockage
+     * dispose d'un CDN, le client y est redirigé et la miniature est produite
+     * par le CDN. Un {@code If-None-Match} qui contient l'ETag de l'image reçoit
+     * 304 sans interroger le stockage ; à défaut d'{@code If-None-Match}, un
+     * {@code If-Modified-Since} reçoit 304 si l'image stockée n'est pas plus
+     * récente que la date indiquée. Un fichier local est confié à Tomcat pour un envoi
+     * sans copie (sendfile), plage d'octets comprise ; sinon les plages sont
+     * servies par Spring à partir de la ressource, dont la taille fournit aussi
+     * {@code Content-Length}.
+     */
     @GetMapping("/{filename}")
-    public ResponseEntity<Resource> getImage(@PathVariable String filename) {
+    public ResponseEntity<Resource> getImage(@PathVariable String filename,
+            @RequestParam(required = false) Integer largeur,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            HttpServletRequest requete) {
         try {
-            InputStream is = imageService.getImage(filename);
-            if (is == null) {
+            String nom = largeur != null ? imageService.nomDerive(filename, largeur) : filename;
+            String cdn = imageService.urlPublique(filename, largeur);
+            if (cdn != null) {
+                return ResponseEntity.status(HttpStatus.FOUND).location(URI.create(cdn)).cacheControl(IMMUABLE).build();
+            }
+            String etag = "\"" + nom + "\"";
+            if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(IMMUABLE).build();
+            }
+
+            Resource image = imageService.getImageResource(nom);
+            boolean immuable = true;
+            if (image == null && largeur != null) {
+                // Miniature pas encore générée : l'original est servi, sans mise en cache durable.
+                image = imageService.getImageResource(filename);
+                immuable = false;
+            }
+            if (image == null) {
                 return ResponseEntity.notFound().build();
             }
 
-            // Essayer de deviner le type de contenu
-            String contentType = URLConnection.guessContentTypeFromName(filename);
-            if (contentType == null) {
-                contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE;
+            long modification = immuable ? image.lastModified() : 0;
+            // If-Modified-Since est ignoré quand If-None-Match est présent (RFC 9110, 13.1.3).
+            if (ifNoneMatch == null && modification > 0 && nonModifieeDepuis(modification, ifModifiedSince)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(IMMUABLE)
+                        .lastModified(modification).build();
             }
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(new InputStreamResource(is));
+            HttpHeaders entetes = new HttpHeaders();
+            entetes.setContentType(typeDeContenu(filename));
+            entetes.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+            if (immuable) {
+                entetes.setETag(etag);
+                entetes.setCacheControl(IMMUABLE);
+                if (modification > 0) {
+                    entetes.setLastModified(modification);
+                }
+            } else {
+                entetes.setCacheControl(CacheControl.noCache());
+            }
+
+            if (image instanceof FileSystemResource fichier && Boolean.TRUE.equals(requete.getAttribute(SENDFILE_SUPPORT))) {
+                ResponseEntity<Resource> envoi = sendfile(fichier, range, entetes, requete);
+                if (envoi != null) {
+                    return envoi;
+                }
+            }
+            return ResponseEntity.ok().headers(entetes).body(image);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    /** Vrai si l'image, modifiée à {@code modification}, ne l'a pas été après la date HTTP {@code ifModifiedSince}. */
+    private static boolean nonModifieeDepuis(long modification, String ifModifiedSince) {
+        if (ifModifiedSince == null) {
+            return false;
+        }
+        try {
+            long depuis = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant()
+                    .toEpochMilli();
+            return modification / 1000 <= depuis / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Délègue l'écriture du fichier, ou de la plage demandée, au conteneur. Les
+     * requêtes à plusieurs plages (et les fichiers vides) renvoient {@code null}
+     * et restent gérées par Spring.
+     */
+    private static ResponseEntity<Resource> sendfile(FileSystemResource fichier, String range, HttpHeaders entetes,
+            HttpServletRequest requete) throws IOException {
+        long longueur = fichier.contentLength();
+        if (longueur == 0) {
+            return null;
+        }
+        long debut = 0;
+        long fin = longueur;
+        HttpStatus statut = HttpStatus.OK;
+        if (range != null) {
+            List<HttpRange> plages;
+            try {
+                plages = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                plages = List.of();
+            }
+            if (plages.size() > 1) {
+                return null;
+            }
+            if (plages.size() == 1) {
+                HttpRange plage = plages.get(0);
+                if (plage.getRangeStart(longueur) >= longueur) {
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + longueur).build();
+                }
+                debut = plage.getRangeStart(longueur);
+                fin = plage.getRangeEnd(longueur) + 1;
+                statut = HttpStatus.PARTIAL_CONTENT;
+                entetes.set(HttpHeaders.CONTENT_RANGE, "bytes " + debut + "-" + (fin - 1) + "/" + longueur);
+            }
+        }
+
+        requete.setAttribute(SENDFILE_FICHIER, fichier.getFile().getAbsolutePath());
+        requete.setAttribute(SENDFILE_DEBUT, debut);
+        requete.setAttribute(SENDFILE_FIN, fin);
+        entetes.setContentLength(fin - debut);
+        return ResponseEntity.status(statut).headers(entetes).build();
+    }
+
+    private static MediaType typeDeContenu(String filename) {
+        int point = filename.lastIndexOf('.');
+        String extension = point >= 0 ? filename.substring(point + 1).toLowerCase(Locale.ROOT) : "";
+        MediaType type = TYPES.get(extension);
+        if (type == null) {
+            // Seules les extensions reconnues sont retenues : le nom vient de la requête.
+            type = MediaTypeFactory.getMediaType("f." + extension).orElse(null);
+            if (type == null) {
+                return MediaType.APPLICATION_OCTET_STREAM;
+            }
+            TYPES.putIfAbsent(extension, type);
+        }
+        return type;
+    }
 }
@@ -0,0 +1,45 @@
+package com.gestionStock.backend.controller.piece;
+
+import com.gestionStock.backend.entity.piece.MigrationImages;
+import com.gestionStock.backend.service.images.MigrationImagesService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/admin/images/migration")
+@AllArgsConstructor
+@CrossOrigin(origins = "http://localhost:4200")
+public class MigrationImagesController {
+
+    private final MigrationImagesService migrationService;
+
+    @GetMapping
+    @PreAuthorize("hasRole('ADMINISTRATEUR')")
+    public ResponseEntity<MigrationImages> etat() {
+        return migrationService.etat()
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping
+    @PreAuthorize("hasRole('ADMINISTRATEUR')")
+    public ResponseEntity<?> demarrer(@RequestParam(defaultValue = "true") boolean reprendre) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(migrationService.demarrer(reprendre));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping
+    @PreAuthorize("hasRole('ADMINISTRATEUR')")
+    public ResponseEntity<Void> arreter() {
+        migrationService.arreter();
+        return ResponseEntity.accepted().build();
+    }
+}
@@ -0,0 +1,59 @@
+package com.gestionStock.backend.controller.piece;
+
+import com.gestionStock.backend.dto.piece.MouvementStockDto;
+import com.gestionStock.backend.dto.piece.MouvementStockRequest;
+import com.gestionStock.backend.service.piece.MouvementStockService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+@RestController
+@RequestMapping("/api/mouvements")
+@AllArgsConstructor
+@CrossOrigin(origins = "http://localhost:4200")
+public class MouvementStockController {
+
+    private final MouvementStockService mouvementService;
+
+    @PostMapping
+    @PreAuthorize("hasAnyRole('MAGASINIER', 'RESPONSABLE_LOGISTIQUE')")
+    public CompletableFuture<ResponseEntity<?>> enregistrer(@AuthenticationPrincipal Jwt jwt,
+            @RequestBody List<MouvementStockRequest> mouvements) {
+        String auteur = jwt != null ? jwt.getSubject() : null;
+        try {
+            return mouvementService.enregistrer(mouvements, auteur)
+                    .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                    .exceptionally(MouvementStockController::versReponse);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(versReponse(e));
+        }
+    }
+
+    @GetMapping("/piece/{pieceId}")
+    @PreAuthorize("hasAnyRole('MAGASINIER', 'RESPONSABLE_LOGISTIQUE', 'AUDITEUR')")
+    public List<MouvementStockDto> historique(@PathVariable Long pieceId,
+            @RequestParam(required = false) Long avantId,
+            @RequestParam(defaultValue = "100") int taille) {
+        return mouvementService.historique(pieceId, avantId, Math.min(Math.max(taille, 1), 1000));
+    }
+
+    private static ResponseEntity<?> versReponse(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof IllegalArgumentException) {
+            return ResponseEntity.badRequest().body(cause.getMessage());
+        }
+        if (cause instanceof IllegalStateException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(cause.getMessage());
+        }
+        return ResponseEntity.internalServerError()
+                .body("Erreur lors de l'enregistrement des mouvements: " + cause.getMessage());
+    }
+}
@@ -0,0 +1,36 @@
+package com.gestionStock.backend.controller.piece;
+
+import com.gestionStock.backend.dto.piece.RapportNettoyage;
+import com.gestionStock.backend.service.images.NettoyageImagesService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/admin/images/nettoyage")
+@AllArgsConstructor
+@CrossOrigin(origins = "http://localhost:4200")
+public class NettoyageImagesController {
+
+    private final NettoyageImagesService nettoyageService;
+
+    @GetMapping
+    @PreAuthorize("hasRole('ADMINISTRATEUR')")
+    public ResponseEntity<RapportNettoyage> dernierRapport() {
+        return nettoyageService.dernierRapport()
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /** Simulation par défaut : le rapport indique ce qui serait supprimé. */
+    @PostMapping
+    @PreAuthorize("hasRole('ADMINISTRATEUR')")
+    public ResponseEntity<String> lancer(@RequestParam(defaultValue = "true") boolean simulation) {
+        if (!nettoyageService.lancer(simulation)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Un nettoyage est déjà en cours");
+        }
+        return ResponseEntity.accepted().build();
+    }
+}
@@ -1,15 +1,33 @@
 package com.gestionStock.backend.controller.piece;
 
+import com.gestionStock.backend.dto.piece.PageCurseur;
+import com.gestionStock.backend.dto.piece.PieceResume;
+import com.gestionStock.backend.dto.piece.PieceSuggestion;
+import com.gestionStock.backend.dto.piece.RapportImport;
 import com.gestionStock.backend.entity.piece.PieceDetachee;
 import com.gestionStock.backend.service.piece.PieceDetacheeService;
+import com.gestionStock.backend.service.piece.PieceExportService;
+import com.gestionStock.backend.service.piece.PieceParCodeService;
+import com.gestionStock.backend.service.piece.RecherchePieceService;
+import com.gestionStock.backend.service.piece.PieceImportService;
 import com.gestionStock.backend.service.images.ImageService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/pieces")
@@ -17,8 +35,14 @@ import java.util.List;
 @CrossOrigin(origins = "http://localhost:4200")
 public class PieceDetacheeController {
 
+    private static final long DELAI_EXPORT_MS = 10 * 60 * 1000;
+
     private final PieceDetacheeService pieceService;
     private final ImageService imageService;
+    private final PieceImportService importService;
+    private final PieceExportService exportService;
+    private final RecherchePieceService rechercheService;
+    private final PieceParCodeService parCodeService;
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMINISTRATEUR', 'MAGASINIER')")
@@ -26,6 +50,33 @@ public class PieceDetacheeController {
         return pieceService.findByActive();
     }
 
+    @GetMapping("/page")
+    @PreAuthorize("hasAnyRole('ADMINISTRATEUR', 'MAGASINIER')")
+    public ResponseEntity<?> getPage(@RequestParam(required = false) String curseur,
+            @RequestParam(defaultValue = "50") int taille,
+            @RequestParam(defaultValue = "id") String tri) {
+        try {
+            PageCurseur<PieceResume> page = pieceService.pageActives(curseur, taille, "designation".equals(tri));
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/by-code/{codeBarre}")
+    @PreAuthorize("hasAnyRole('ADMINISTRATEUR', 'MAGASINIER')")
+    public ResponseEntity<PieceResume> getByCode(@PathVariable String codeBarre) {
+        return parCodeService.parCode(codeBarre)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/recherche")
+    @PreAuthorize("hasAnyRole('ADMINISTRATEUR', 'MAGASINIER')")
+    public List<PieceSuggestion> rechercher(@RequestParam String q, @RequestParam(defaultValue = "10") int limite) {
+        return rechercheService.rechercher(q, limite);
+    }
+
     @PostMapping("/upload-image/{id}")
     @PreAuthorize("hasRole('MAGASINIER')")
     public ResponseEntity<?> uploadImage(@PathVariable Long id, @RequestParam("file") MultipartFile file) {
@@ -46,6 +97,28 @@ public class PieceDetacheeController {
         }
     }
 
+    /** Envoi de l'image en corps brut : le flux va directement au stockage, sans fichier temporaire. */
+    @PutMapping(value = "/{id}/image", consumes = "image/*")
+    @PreAuthorize("hasRole('MAGASINIER')")
+    public ResponseEntity<?> envoyerImage(@PathVariable Long id,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType type,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, defaultValue = "-1") long longueur,
+            @RequestParam(required = false) String nom, InputStream contenu) {
+        try {
+            String nomOriginal = nom != null ? nom : "image." + type.getSubtype();
+            String imageUrl = imageService.uploadImage(nomOriginal, contenu, longueur);
+            PieceDetachee updated = pieceService.updateImageUrl(id, imageUrl);
+            if (updated == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(updated);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Erreur lors du stockage de l'image: " + e.getMessage());
+        }
+    }
+
     @PostMapping
     @PreAuthorize("hasRole('MAGASINIER')")
     public ResponseEntity<PieceDetachee> create(@RequestBody PieceDetachee piece) {
@@ -53,6 +126,47 @@ public class PieceDetacheeController {
         return ResponseEntity.ok(saved);
     }
 
+    @PostMapping(value = "/import", consumes = { "text/csv", "application/x-ndjson" })
+    @PreAuthorize("hasRole('MAGASINIER')")
+    public ResponseEntity<?> importer(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream contenu) throws IOException {
+        try {
+            RapportImport rapport = importService.importer(contenu, contentType);
+            return ResponseEntity.ok(rapport);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyRole('ADMINISTRATEUR', 'MAGASINIER')")
+    public ResponseEntity<StreamingResponseBody> exporter(@RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "false") boolean gzip, HttpServletRequest requete) {
+        // L'export, écrit en flux, peut durer plusieurs minutes ; les autres requêtes gardent le délai par défaut.
+        WebAsyncUtils.getAsyncManager(requete).getAsyncWebRequest().setTimeout(DELAI_EXPORT_MS);
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        StreamingResponseBody corps = sortie -> {
+            OutputStream flux = gzip ? new GZIPOutputStream(sortie, 64 * 1024) : sortie;
+            if (ndjson) {
+                exportService.exporterNdjson(flux);
+            } else {
+                exportService.exporterCsv(flux);
+            }
+            if (flux instanceof GZIPOutputStream compresse) {
+                compresse.finish();
+            }
+        };
+
+        String fichier = "pieces." + (ndjson ? "ndjson" : "csv") + (gzip ? ".gz" : "");
+        MediaType type = gzip ? MediaType.parseMediaType("application/gzip")
+                : ndjson ? MediaType.parseMediaType("application/x-ndjson")
+                        : new MediaType("text", "csv", StandardCharsets.UTF_8);
+        return ResponseEntity.ok()
+                .contentType(type)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fichier + "\"")
+                .body(corps);
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('MAGASINIER')")
     public ResponseEntity<PieceDetachee> update(@PathVariable Long id, @RequestBody PieceDetachee piece) {
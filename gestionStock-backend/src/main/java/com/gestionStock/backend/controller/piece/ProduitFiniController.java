@@ -1,14 +1,19 @@
 package com.gestionStock.backend.controller.piece;
 
+import com.gestionStock.backend.dto.piece.PageCurseur;
+import com.gestionStock.backend.dto.piece.ProduitResume;
 import com.gestionStock.backend.entity.piece.ProduitFini;
 import com.gestionStock.backend.service.piece.ProduitFiniService;
 import com.gestionStock.backend.service.images.ImageService;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -26,6 +31,19 @@ public class ProduitFiniController {
         return produitService.getAll();
     }
 
+    @GetMapping("/page")
+    @PreAuthorize("hasAnyRole('ADMINISTRATEUR', 'MAGASINIER')")
+    public ResponseEntity<?> getPage(@RequestParam(required = false) String curseur,
+            @RequestParam(defaultValue = "50") int taille,
+            @RequestParam(defaultValue = "id") String tri) {
+        try {
+            PageCurseur<ProduitResume> page = produitService.pageActifs(curseur, taille, "designation".equals(tri));
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PostMapping("/upload-image/{id}")
     @PreAuthorize("hasRole('MAGASINIER')")
     public ResponseEntity<?> uploadImage(@PathVariable Long id, @RequestParam("file") MultipartFile file) {
@@ -44,6 +62,28 @@ public class ProduitFiniController {
         }
     }
 
+    /** Envoi de l'image en corps brut : le flux va directement au stockage, sans fichier temporaire. */
+    @PutMapping(value = "/{id}/image", consumes = "image/*")
+    @PreAuthorize("hasRole('MAGASINIER')")
+    public ResponseEntity<?> envoyerImage(@PathVariable Long id,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType type,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, defaultValue = "-1") long longueur,
+            @RequestParam(required = false) String nom, InputStream contenu) {
+        try {
+            String nomOriginal = nom != null ? nom : "image." + type.getSubtype();
+            String imageUrl = imageService.uploadImage(nomOriginal, contenu, longueur);
+            ProduitFini updated = produitService.updateImageUrl(id, imageUrl);
+            if (updated == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(updated);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Erreur lors du stockage de l'image: " + e.getMessage());
+        }
+    }
+
     @PostMapping
     @PreAuthorize("hasRole('MAGASINIER')")
     public ResponseEntity<ProduitFini> create(@RequestBody ProduitFini produit) {
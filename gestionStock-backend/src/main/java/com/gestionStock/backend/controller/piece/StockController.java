@@ -0,0 +1,37 @@
+package com.gestionStock.backend.controller.piece;
+
+import com.gestionStock.backend.dto.piece.StockQuantiteDto;
+import com.gestionStock.backend.entity.piece.TypeStock;
+import com.gestionStock.backend.service.piece.CleStock;
+import com.gestionStock.backend.service.piece.CompteurStockService;
+import lombok.AllArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/stocks")
+@AllArgsConstructor
+@CrossOrigin(origins = "http://localhost:4200")
+public class StockController {
+
+    private final CompteurStockService compteurs;
+
+    @GetMapping("/piece/{pieceId}")
+    @PreAuthorize("hasAnyRole('ADMINISTRATEUR', 'MAGASINIER', 'RESPONSABLE_LOGISTIQUE', 'AUDITEUR')")
+    public List<StockQuantiteDto> quantites(@PathVariable Long pieceId) {
+        return compteurs.quantites(pieceId).entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(CleStock.ORDRE))
+                .map(e -> new StockQuantiteDto(pieceId, e.getKey().entrepotId(), e.getKey().type(), e.getValue()))
+                .toList();
+    }
+
+    @GetMapping("/piece/{pieceId}/entrepot/{entrepotId}")
+    @PreAuthorize("hasAnyRole('ADMINISTRATEUR', 'MAGASINIER', 'RESPONSABLE_LOGISTIQUE', 'AUDITEUR')")
+    public StockQuantiteDto quantite(@PathVariable Long pieceId, @PathVariable Long entrepotId,
+            @RequestParam(defaultValue = "DISPONIBLE") TypeStock type) {
+        return new StockQuantiteDto(pieceId, entrepotId, type, compteurs.quantite(pieceId, entrepotId, type));
+    }
+}
@@ -1,69 +1,104 @@
 package com.gestionStock.backend.controller.user;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import com.gestionStock.backend.entity.user.Role;
 import com.gestionStock.backend.service.user.KeycloakAdminService;
+import com.gestionStock.backend.service.user.SynchroUtilisateursService;
 import com.gestionStock.backend.service.user.UserService;
 
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+@Slf4j
 @RestController
 @RequestMapping("/api/admin/users")
 public class AdminController {
 
 	private final KeycloakAdminService adminService;
 	private final UserService userService;
+	private final SynchroUtilisateursService synchro;
 
-	public AdminController(KeycloakAdminService adminService, UserService userService) {
+	public AdminController(KeycloakAdminService adminService, UserService userService,
+			SynchroUtilisateursService synchro) {
 		this.adminService = adminService;
 		this.userService = userService;
+		this.synchro = synchro;
 	}
 
-	@GetMapping
-	public ResponseEntity<?> getAllUsers() {
-		try {
-			List<Map<String, Object>> keycloakUsers = adminService.getAllUsers();
-			List<com.gestionStock.backend.entity.user.User> dbUsers = userService.getAllUsersComplete();
+	/**
+	 * Utilisateurs lus dans la copie locale de Keycloak tant qu'elle est à jour
+	 * (voir {@link SynchroUtilisateursService}), sinon directement dans Keycloak.
+	 */
+	@GetMapping(produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+	public Flux<Map<String, Object>> getAllUsers() {
+		if (synchro.aJour()) {
+			return Flux.fromIterable(userService.getAllUsersComplete()).map(AdminController::representation);
+		}
+		return getAllUsersKeycloak();
+	}
 
-			Map<String, String> idToRole = new HashMap<>();
-			Map<String, String> emailToRole = new HashMap<>();
+	private static Map<String, Object> representation(com.gestionStock.backend.entity.user.User user) {
+		Map<String, Object> kcUser = new HashMap<>();
+		kcUser.put("id", user.getId());
+		kcUser.put("username", user.getUsername() != null ? user.getUsername() : user.getEmail());
+		kcUser.put("email", user.getEmail());
+		kcUser.put("firstName", user.getFirstName());
+		kcUser.put("lastName", user.getLastName());
+		kcUser.put("enabled", user.isActive());
+		kcUser.put("role", user.getRole() != null ? user.getRole().name() : "AUCUN");
+		return kcUser;
+	}
 
-			for (com.gestionStock.backend.entity.user.User dbUser : dbUsers) {
-				if (dbUser.getRole() != null) {
-					if (dbUser.getId() != null) {
-						idToRole.put(dbUser.getId(), dbUser.getRole().name());
-					}
-					if (dbUser.getEmail() != null) {
-						emailToRole.put(dbUser.getEmail(), dbUser.getRole().name());
-					}
+	/**
+	 * Utilisateurs Keycloak, lus page par page sans bloquer, avec leur rôle : celui
+	 * de la base, sinon leur rôle métier dans Keycloak, obtenu en une requête par
+	 * rôle. En {@code application/x-ndjson}, chaque utilisateur est envoyé dès sa
+	 * page reçue.
+	 */
+	private Flux<Map<String, Object>> getAllUsersKeycloak() {
+		List<com.gestionStock.backend.entity.user.User> dbUsers = userService.getAllUsersComplete();
+
+		Map<String, String> idToRole = new HashMap<>();
+		Map<String, String> emailToRole = new HashMap<>();
+
+		for (com.gestionStock.backend.entity.user.User dbUser : dbUsers) {
+			if (dbUser.getRole() != null) {
+				if (dbUser.getId() != null) {
+					idToRole.put(dbUser.getId(), dbUser.getRole().name());
 				}
-			}
-
-			for (Map<String, Object> kcUser : keycloakUsers) {
-				String id = (String) kcUser.get("id");
-				String email = (String) kcUser.get("email");
-
-				if (id != null && idToRole.containsKey(id)) {
-					kcUser.put("role", idToRole.get(id));
-				} else if (email != null && emailToRole.containsKey(email)) {
-					// Fallback to email matching if ID mismatch (e.g. recreated user)
-					kcUser.put("role", emailToRole.get(email));
-				} else {
-					kcUser.put("role", "AUCUN");
+				if (dbUser.getEmail() != null) {
+					emailToRole.put(dbUser.getEmail(), dbUser.getRole().name());
 				}
 			}
-
-			return ResponseEntity.ok(keycloakUsers);
-		} catch (Exception e) {
-			e.printStackTrace();
-			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-					.body("Erreur lors de la récupération des utilisateurs: " + e.getMessage());
 		}
+
+		return adminService.rolesParUtilisateur(KeycloakAdminService.ROLES_METIER.keySet())
+				.flatMapMany(kcRoles -> adminService.utilisateurs().map(kcUser -> {
+					String id = (String) kcUser.get("id");
+					String email = (String) kcUser.get("email");
+					Collection<String> roles = id != null ? kcRoles.get(id) : null;
+
+					if (id != null && idToRole.containsKey(id)) {
+						kcUser.put("role", idToRole.get(id));
+					} else if (email != null && emailToRole.containsKey(email)) {
+						// Fallback to email matching if ID mismatch (e.g. recreated user)
+						kcUser.put("role", emailToRole.get(email));
+					} else {
+						Role metier = KeycloakAdminService.roleMetier(roles);
+						kcUser.put("role", metier != null ? metier.name() : "AUCUN");
+					}
+					return kcUser;
+				}))
+				.doOnError(e -> log.error("Erreur lors de la récupération des utilisateurs Keycloak", e));
 	}
 
 	@PostMapping
@@ -172,6 +207,7 @@ public class AdminController {
 	public ResponseEntity<?> deleteUser(@PathVariable String id) {
 		try {
 			adminService.deleteUser(id);
+			userService.supprimerMiroir(List.of(id));
 			return ResponseEntity.ok().build();
 		} catch (Exception e) {
 			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -210,13 +246,10 @@ public class AdminController {
 			try {
 				// Get all current roles
 				List<Map<String, Object>> currentRoles = adminService.getUserRoles(id);
-				List<String> businessRoles = List.of("Administrateur", "Auditeur", "Magasinier",
-						"Responsable logistique");
-
 				if (currentRoles != null) {
 					for (Map<String, Object> roleMap : currentRoles) {
 						String name = (String) roleMap.get("name");
-						if (businessRoles.contains(name)) {
+						if (KeycloakAdminService.ROLES_METIER.containsKey(name)) {
 							adminService.removeRole(id, name);
 							System.out.println("AdminController: Ancien rôle Keycloak retiré: " + name);
 						}
@@ -0,0 +1,10 @@
+package com.gestionStock.backend.dto.piece;
+
+import java.time.Instant;
+
+/**
+ * Pièce sous son seuil. {@code entrepotId} est nul pour le seuil global,
+ * comparé au stock disponible tous entrepôts confondus.
+ */
+public record AlerteStockDto(Long pieceId, Long entrepotId, long quantite, int seuilMinimum, Instant depuis) {
+}
@@ -0,0 +1,4 @@
+package com.gestionStock.backend.dto.piece;
+
+public record CategorieResume(Long id, String code, String nom, String description, boolean archivee) {
+}
@@ -0,0 +1,18 @@
+package com.gestionStock.backend.dto.piece;
+
+import java.util.List;
+
+/**
+ * Une pièce à importer. Les associations sont exprimées par codes (catégorie,
+ * produits finis) afin d'être résolues en masse côté serveur.
+ */
+public record LigneImportPiece(
+        String codeBarre,
+        String reference,
+        String designation,
+        Double prixVente,
+        Integer seuilMinimum,
+        Double tauxTVA,
+        String categorieCode,
+        List<String> produits) {
+}
@@ -0,0 +1,34 @@
+package com.gestionStock.backend.dto.piece;
+
+import com.gestionStock.backend.entity.piece.MouvementStock;
+import com.gestionStock.backend.entity.piece.TypeMouvement;
+import com.gestionStock.backend.entity.piece.TypeStock;
+
+import java.time.Instant;
+
+public record MouvementStockDto(
+        Long id,
+        TypeMouvement typeMouvement,
+        Long pieceId,
+        Long entrepotId,
+        Long entrepotDestinationId,
+        TypeStock type,
+        int quantite,
+        Instant dateMouvement,
+        String auteur,
+        String commentaire) {
+
+    public static MouvementStockDto de(MouvementStock m) {
+        return new MouvementStockDto(
+                m.getId(),
+                m.getTypeMouvement(),
+                m.getPiece().getId(),
+                m.getEntrepot().getId(),
+                m.getEntrepotDestination() != null ? m.getEntrepotDestination().getId() : null,
+                m.getType(),
+                m.getQuantite(),
+                m.getDateMouvement(),
+                m.getAuteur(),
+                m.getCommentaire());
+    }
+}
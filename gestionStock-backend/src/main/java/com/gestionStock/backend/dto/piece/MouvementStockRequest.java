@@ -0,0 +1,18 @@
+package com.gestionStock.backend.dto.piece;
+
+import com.gestionStock.backend.entity.piece.TypeMouvement;
+import com.gestionStock.backend.entity.piece.TypeStock;
+
+/**
+ * Mouvement tel qu'envoyé par les scanners : uniquement des identifiants, pour
+ * que l'ingestion n'ait jamais à charger les entités référencées.
+ */
+public record MouvementStockRequest(
+        TypeMouvement typeMouvement,
+        Long pieceId,
+        Long entrepotId,
+        Long entrepotDestinationId,
+        TypeStock type,
+        int quantite,
+        String commentaire) {
+}
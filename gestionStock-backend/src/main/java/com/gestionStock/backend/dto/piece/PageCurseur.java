@@ -0,0 +1,10 @@
+package com.gestionStock.backend.dto.piece;
+
+import java.util.List;
+
+/**
+ * Page d'une liste parcourue par curseur. {@code curseurSuivant} est à renvoyer
+ * tel quel pour obtenir la page suivante ; il vaut {@code null} sur la dernière.
+ */
+public record PageCurseur<T>(List<T> elements, String curseurSuivant) {
+}
@@ -0,0 +1,33 @@
+package com.gestionStock.backend.dto.piece;
+
+/**
+ * Ligne de l'export catalogue : la pièce, sa catégorie, son stock disponible
+ * (type {@code DISPONIBLE}) tous entrepôts confondus et les codes des produits
+ * finis associés (séparés par |). Les stocks réservés ou en
+ * réapprovisionnement ne sont pas comptés.
+ */
+public record PieceExportLigne(
+        Long id,
+        String codeBarre,
+        String reference,
+        String designation,
+        Double prixVente,
+        int seuilMinimum,
+        double tauxTVA,
+        String categorieCode,
+        String categorieNom,
+        Long quantiteTotale,
+        String produits) {
+
+    /** Ligne lue en base, avant que la quantité ne soit renseignée. */
+    public PieceExportLigne(Long id, String codeBarre, String reference, String designation, Double prixVente,
+            int seuilMinimum, double tauxTVA, String categorieCode, String categorieNom, String produits) {
+        this(id, codeBarre, reference, designation, prixVente, seuilMinimum, tauxTVA, categorieCode, categorieNom,
+                null, produits);
+    }
+
+    public PieceExportLigne avecQuantite(long quantite) {
+        return new PieceExportLigne(id, codeBarre, reference, designation, prixVente, seuilMinimum, tauxTVA,
+                categorieCode, categorieNom, quantite, produits);
+    }
+}
@@ -0,0 +1,14 @@
+package com.gestionStock.backend.dto.piece;
+
+public record PieceResume(
+        Long id,
+        String codeBarre,
+        String reference,
+        String designation,
+        Double prixVente,
+        int seuilMinimum,
+        double tauxTVA,
+        String imageUrl,
+        Long categorieId,
+        String categorieNom) {
+}
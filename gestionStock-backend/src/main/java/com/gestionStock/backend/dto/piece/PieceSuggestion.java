@@ -0,0 +1,5 @@
+package com.gestionStock.backend.dto.piece;
+
+/** Résultat de recherche rapide (saisie semi-automatique) sur les pièces actives. */
+public record PieceSuggestion(Long id, String codeBarre, String reference, String designation) {
+}
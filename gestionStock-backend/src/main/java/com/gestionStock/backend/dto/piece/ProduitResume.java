@@ -0,0 +1,4 @@
+package com.gestionStock.backend.dto.piece;
+
+public record ProduitResume(Long id, String code, String designation, String imageUrl) {
+}
@@ -0,0 +1,13 @@
+package com.gestionStock.backend.dto.piece;
+
+import java.util.List;
+
+/**
+ * Bilan d'un import. Seules les premières erreurs sont détaillées ;
+ * {@code nbErreurs} donne le total.
+ */
+public record RapportImport(long lignesLues, long importees, long nbErreurs, List<Erreur> erreurs) {
+
+    public record Erreur(long ligne, String message) {
+    }
+}
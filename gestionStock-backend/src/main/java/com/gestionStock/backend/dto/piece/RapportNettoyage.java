@@ -0,0 +1,13 @@
+package com.gestionStock.backend.dto.piece;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Bilan d'un passage du ramasse-miettes d'images. En simulation rien n'est
+ * supprimé : {@code orphelines} compte ce qui l'aurait été. Seuls les premiers
+ * noms sont listés dans {@code exemples}.
+ */
+public record RapportNettoyage(boolean simulation, Instant debut, Instant fin, long referencees, long examinees,
+        long recentes, long orphelines, long supprimees, long octetsLiberes, long echecs, List<String> exemples) {
+}
@@ -0,0 +1,6 @@
+package com.gestionStock.backend.dto.piece;
+
+import com.gestionStock.backend.entity.piece.TypeStock;
+
+public record StockQuantiteDto(Long pieceId, Long entrepotId, TypeStock type, long quantite) {
+}
@@ -16,6 +16,7 @@ import java.util.HashSet;
 @EqualsAndHashCode(of = "code")
 @ToString
 @Entity
+@Table(indexes = @Index(columnList = "nom, id"))
 public class Categorie {
     public Categorie() {
     }
@@ -0,0 +1,29 @@
+package com.gestionStock.backend.entity.piece;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Dernier mouvement du journal dont les variations sont reportées dans une
+ * projection. Au redémarrage, les mouvements postérieurs sont rejoués.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+public class CurseurProjection {
+	public CurseurProjection() {
+	}
+
+	public CurseurProjection(String nom, long dernierMouvementId) {
+		this.nom = nom;
+		this.dernierMouvementId = dernierMouvementId;
+	}
+
+	@Id
+	private String nom;
+	private long dernierMouvementId;
+}
@@ -0,0 +1,75 @@
+package com.gestionStock.backend.entity.piece;
+
+import jakarta.persistence.CollectionTable;
+import jakarta.persistence.Column;
+import jakarta.persistence.ElementCollection;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Avancement d'une copie des images d'un stockage vers un autre. Les images
+ * sont parcourues dans l'ordre des références : {@code curseur} est le point de
+ * reprise (voir {@code ImagesReferencees}), toutes les images avant lui ayant
+ * été traitées. Celles dont la copie a échoué sont gardées dans
+ * {@code enEchec} et retentées à la reprise suivante.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+public class MigrationImages {
+
+	public enum Statut {
+		EN_COURS, INTERROMPUE, TERMINEE, ECHOUEE
+	}
+
+	public MigrationImages(String source, String cible) {
+		this.id = source + "->" + cible;
+		this.source = source;
+		this.cible = cible;
+	}
+
+	@Id
+	private String id;
+	private String source;
+	private String cible;
+
+	@Enumerated(EnumType.STRING)
+	private Statut statut;
+
+	private String curseur;
+	private long copiees;
+	private long dejaPresentes;
+	private long absentes;
+	/** Nombre d'images dans {@code enEchec}. */
+	private long echecs;
+	private long octets;
+	private Instant debut;
+	private Instant fin;
+
+	@ElementCollection(fetch = FetchType.EAGER)
+	@CollectionTable(name = "migration_images_echec", joinColumns = @JoinColumn(name = "migration_id"))
+	@Column(name = "nom")
+	private Set<String> enEchec = new HashSet<>();
+
+	/** Débit moyen depuis le dernier démarrage (ou la dernière reprise). */
+	public long getOctetsParSeconde() {
+		if (debut == null) {
+			return 0;
+		}
+		long secondes = Duration.between(debut, fin != null ? fin : Instant.now()).toSeconds();
+		return secondes > 0 ? octets / secondes : octets;
+	}
+}
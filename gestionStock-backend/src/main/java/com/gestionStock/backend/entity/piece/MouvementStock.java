@@ -0,0 +1,76 @@
+package com.gestionStock.backend.entity.piece;
+
+import java.time.Instant;
+
+import org.hibernate.annotations.Immutable;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Ligne du journal des mouvements de stock. Le journal est en ajout seul : une
+ * correction se fait par un nouveau mouvement d'ajustement, jamais par une mise
+ * à jour. Les lignes {@link Stock} en sont la projection matérialisée.
+ */
+@Entity
+@Immutable
+@Table(indexes = { @Index(columnList = "piece_id, entrepot_id"), @Index(columnList = "date_mouvement") })
+@Getter
+@Setter
+@ToString(exclude = { "piece", "entrepot", "entrepotDestination" })
+public class MouvementStock {
+	public MouvementStock() {
+	}
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	private Long id;
+
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false)
+	private TypeMouvement typeMouvement;
+
+	@JsonIgnore
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "piece_id", nullable = false)
+	private PieceDetachee piece;
+
+	@JsonIgnore
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "entrepot_id", nullable = false)
+	private Entrepot entrepot;
+
+	/** Entrepôt d'arrivée, renseigné uniquement pour un transfert. */
+	@JsonIgnore
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "entrepot_destination_id")
+	private Entrepot entrepotDestination;
+
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false)
+	private TypeStock type = TypeStock.DISPONIBLE;
+
+	/** Positive sauf pour un ajustement, qui porte son propre signe. */
+	private int quantite;
+
+	@Column(nullable = false)
+	private Instant dateMouvement;
+
+	private String auteur;
+	private String commentaire;
+}
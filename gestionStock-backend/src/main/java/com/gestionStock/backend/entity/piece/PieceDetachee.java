@@ -13,6 +13,7 @@ import lombok.*;
 @Setter
 @EqualsAndHashCode(of = "codeBarre")
 @Entity
+@Table(indexes = { @Index(columnList = "designation, id"), @Index(columnList = "imageUrl") })
 public class PieceDetachee {
 	public PieceDetachee() {
 	}
@@ -8,6 +8,7 @@ import lombok.*;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 @Entity
+@Table(indexes = { @Index(columnList = "designation, id"), @Index(columnList = "imageUrl") })
 @Getter
 @Setter
 public class ProduitFini {
@@ -27,7 +28,11 @@ public class ProduitFini {
 
 	private String imageUrl;
 
+	// Noms explicites (identiques à ceux générés par défaut) : l'import en masse écrit
+	// directement dans cette table.
 	@JsonIgnoreProperties("produitsAssocies")
 	@ManyToMany(cascade = { CascadeType.PERSIST, CascadeType.MERGE })
+	@JoinTable(name = "produit_fini_pieces", joinColumns = @JoinColumn(name = "produits_associes_id"),
+			inverseJoinColumns = @JoinColumn(name = "pieces_id"))
 	private Set<PieceDetachee> pieces = new HashSet<>();
 }
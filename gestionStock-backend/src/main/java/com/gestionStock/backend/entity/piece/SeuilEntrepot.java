@@ -0,0 +1,29 @@
+package com.gestionStock.backend.entity.piece;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/** Seuil d'alerte d'une pièce propre à un entrepôt, en complément du seuil global de la pièce. */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "piece_id", "entrepot_id" }))
+public class SeuilEntrepot {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.AUTO)
+	private Long id;
+
+	@ManyToOne(fetch = FetchType.LAZY, optional = false)
+	@JoinColumn(name = "piece_id")
+	private PieceDetachee piece;
+
+	@ManyToOne(fetch = FetchType.LAZY, optional = false)
+	@JoinColumn(name = "entrepot_id")
+	private Entrepot entrepot;
+
+	private int seuilMinimum;
+}
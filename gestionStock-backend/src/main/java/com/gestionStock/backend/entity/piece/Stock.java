@@ -1,6 +1,7 @@
 package com.gestionStock.backend.entity.piece;
 
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
@@ -19,12 +20,15 @@ import lombok.Setter;
 import lombok.ToString;
 
 @Entity
-@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "PieceDetachee_id", "entrepot_id" }))
+@Table(uniqueConstraints = @UniqueConstraint(name = Stock.CLE_UNIQUE, columnNames = { "PieceDetachee_id", "entrepot_id", "type" }))
 @Getter
 @Setter
 @ToString
-@EqualsAndHashCode(of = { "piece", "entrepot" })
+@EqualsAndHashCode(of = { "piece", "entrepot", "type" })
 public class Stock {
+	/** Une ligne par (pièce, entrepôt, type) ; voir {@code MigrationStock} pour les bases antérieures. */
+	public static final String CLE_UNIQUE = "uk_stock_piece_entrepot_type";
+
 	public Stock() {
 	}
 
@@ -43,5 +47,6 @@ public class Stock {
 	private int quantite;
 
 	@Enumerated(EnumType.STRING)
+	@Column(nullable = false)
 	private TypeStock type;
 }
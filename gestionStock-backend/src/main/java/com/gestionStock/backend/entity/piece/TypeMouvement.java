@@ -0,0 +1,5 @@
+package com.gestionStock.backend.entity.piece;
+
+public enum TypeMouvement {
+	ENTREE, SORTIE, AJUSTEMENT, TRANSFERT
+}
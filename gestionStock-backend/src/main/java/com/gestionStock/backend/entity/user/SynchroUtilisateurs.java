@@ -0,0 +1,33 @@
+package com.gestionStock.backend.entity.user;
+
+import java.time.Instant;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Avancement de la copie locale des utilisateurs Keycloak. Les événements
+ * d'administration sont relus à partir de {@code dernierEvenement} (horodatage
+ * Keycloak en millisecondes) ; {@code derniereSynchro} est la date de la
+ * dernière synchronisation réussie, complète ou non.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+public class SynchroUtilisateurs {
+
+	public SynchroUtilisateurs(String id) {
+		this.id = id;
+	}
+
+	@Id
+	private String id;
+	private long dernierEvenement;
+	private Instant derniereSynchro;
+	private Instant derniereComplete;
+	private long utilisateurs;
+}
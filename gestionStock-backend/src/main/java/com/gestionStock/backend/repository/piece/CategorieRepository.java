@@ -1,9 +1,38 @@
 package com.gestionStock.backend.repository.piece;
 
+import com.gestionStock.backend.dto.piece.CategorieResume;
 import com.gestionStock.backend.entity.piece.Categorie;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface CategorieRepository extends JpaRepository<Categorie, Long> {
     Optional<Categorie> findByCode(String code);
+
+    List<Categorie> findByCodeIn(Collection<String> codes);
+
+    @Query("""
+            select new com.gestionStock.backend.dto.piece.CategorieResume(c.id, c.code, c.nom, c.description, c.archivee)
+            from Categorie c
+            where c.id > :apresId
+            order by c.id""")
+    List<CategorieResume> findResumesApresId(Long apresId, Limit limite);
+
+    @Query("""
+            select new com.gestionStock.backend.dto.piece.CategorieResume(c.id, c.code, c.nom, c.description, c.archivee)
+            from Categorie c
+            where c.nom is not null and (c.nom > :apresNom or (c.nom = :apresNom and c.id > :apresId))
+            order by c.nom, c.id""")
+    List<CategorieResume> findResumesApresNom(String apresNom, Long apresId, Limit limite);
+
+    @Query("""
+            select new com.gestionStock.backend.dto.piece.CategorieResume(c.id, c.code, c.nom, c.description, c.archivee)
+            from Categorie c
+            where c.nom is null and c.id > :apresId
+            order by c.id""")
+    List<CategorieResume> findResumesSansNomApresId(Long apresId, Limit limite);
 }
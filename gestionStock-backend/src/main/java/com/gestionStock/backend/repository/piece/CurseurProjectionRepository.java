@@ -0,0 +1,7 @@
+package com.gestionStock.backend.repository.piece;
+
+import com.gestionStock.backend.entity.piece.CurseurProjection;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface CurseurProjectionRepository extends JpaRepository<CurseurProjection, String> {
+}
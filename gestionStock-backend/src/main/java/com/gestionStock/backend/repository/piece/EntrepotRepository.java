@@ -2,8 +2,14 @@ package com.gestionStock.backend.repository.piece;
 
 import com.gestionStock.backend.entity.piece.Entrepot;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.Set;
+
 @Repository
 public interface EntrepotRepository extends JpaRepository<Entrepot, Long> {
+    @Query("select e.id from Entrepot e where e.id in :ids")
+    Set<Long> findIdsExistants(Collection<Long> ids);
 }
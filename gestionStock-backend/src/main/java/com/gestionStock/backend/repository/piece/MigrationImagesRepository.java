@@ -0,0 +1,7 @@
+package com.gestionStock.backend.repository.piece;
+
+import com.gestionStock.backend.entity.piece.MigrationImages;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface MigrationImagesRepository extends JpaRepository<MigrationImages, String> {
+}
@@ -0,0 +1,17 @@
+package com.gestionStock.backend.repository.piece;
+
+import com.gestionStock.backend.entity.piece.MouvementStock;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface MouvementStockRepository extends JpaRepository<MouvementStock, Long> {
+    List<MouvementStock> findByPiece_IdAndIdLessThanOrderByIdDesc(Long pieceId, Long avantId, Limit limit);
+
+    List<MouvementStock> findByIdGreaterThanOrderByIdAsc(Long id);
+
+    @Query("select coalesce(max(m.id), 0) from MouvementStock m")
+    long findDernierId();
+}
@@ -1,14 +1,29 @@
 package com.gestionStock.backend.repository.piece;
 
+import com.gestionStock.backend.dto.piece.PieceExportLigne;
+import com.gestionStock.backend.dto.piece.PieceResume;
 import com.gestionStock.backend.entity.piece.PieceDetachee;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 public interface PieceDetacheeRepository extends JpaRepository<PieceDetachee, Long> {
+    @EntityGraph(attributePaths = { "categorie", "produitsAssocies" })
     public List<PieceDetachee> findByArchivee(boolean rep);
 
+    @EntityGraph(attributePaths = { "categorie", "produitsAssocies" })
+    public Optional<PieceDetachee> findDetailById(Long id);
+
     public boolean existsByCodeBarre(String code);
 
     public PieceDetachee findByCodeBarre(String code);
@@ -16,4 +31,69 @@ public interface PieceDetacheeRepository extends JpaRepository<PieceDetachee, Lo
     public boolean existsByReference(String reference);
 
     public PieceDetachee findByReference(String reference);
+
+    @Query("select p.id from PieceDetachee p where p.id in :ids")
+    public Set<Long> findIdsExistants(Collection<Long> ids);
+
+    /** Seuils globaux renseignés des pièces actives, sous la forme {id, seuilMinimum}. */
+    @Query("select p.id, p.seuilMinimum from PieceDetachee p where p.archivee = false and p.seuilMinimum > 0")
+    public List<Object[]> findSeuilsActifs();
+
+    /** Champs indexés pour la recherche, sous la forme {id, codeBarre, reference, designation}. */
+    @Query("select p.id, p.codeBarre, p.reference, p.designation from PieceDetachee p where p.archivee = false")
+    public List<Object[]> findTextesActifs();
+
+    @Query("select p.codeBarre from PieceDetachee p where p.codeBarre in :codes")
+    public Set<String> findCodesBarreExistants(Collection<String> codes);
+
+    @Query("select p.reference from PieceDetachee p where p.reference in :references")
+    public Set<String> findReferencesExistantes(Collection<String> references);
+
+    @Query("""
+            select new com.gestionStock.backend.dto.piece.PieceResume(p.id, p.codeBarre, p.reference, p.designation,
+                p.prixVente, p.seuilMinimum, p.tauxTVA, p.imageUrl, c.id, c.nom)
+            from PieceDetachee p left join p.categorie c
+            where p.archivee = false and p.id > :apresId
+            order by p.id""")
+    public List<PieceResume> findResumesApresId(Long apresId, Limit limite);
+
+    @Query("""
+            select new com.gestionStock.backend.dto.piece.PieceResume(p.id, p.codeBarre, p.reference, p.designation,
+                p.prixVente, p.seuilMinimum, p.tauxTVA, p.imageUrl, c.id, c.nom)
+            from PieceDetachee p left join p.categorie c
+            where p.archivee = false and p.designation is not null
+                and (p.designation > :apresDesignation or (p.designation = :apresDesignation and p.id > :apresId))
+            order by p.designation, p.id""")
+    public List<PieceResume> findResumesApresDesignation(String apresDesignation, Long apresId, Limit limite);
+
+    @Query("""
+            select new com.gestionStock.backend.dto.piece.PieceResume(p.id, p.codeBarre, p.reference, p.designation,
+                p.prixVente, p.seuilMinimum, p.tauxTVA, p.imageUrl, c.id, c.nom)
+            from PieceDetachee p left join p.categorie c
+            where p.archivee = false and p.designation is null and p.id > :apresId
+            order by p.id""")
+    public List<PieceResume> findResumesSansDesignationApresId(Long apresId, Limit limite);
+
+    @Query("""
+            select new com.gestionStock.backend.dto.piece.PieceResume(p.id, p.codeBarre, p.reference, p.designation,
+                p.prixVente, p.seuilMinimum, p.tauxTVA, p.imageUrl, c.id, c.nom)
+            from PieceDetachee p left join p.categorie c
+            where p.archivee = false and p.codeBarre = :codeBarre""")
+    public Optional<PieceResume> findResumeByCodeBarre(String codeBarre);
+
+    /**
+     * Catalogue actif pour l'export, lu par curseur : à consommer dans une
+     * transaction et à fermer après usage. Les quantités n'y sont pas : elles
+     * viennent des compteurs de stock.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("""
+            select new com.gestionStock.backend.dto.piece.PieceExportLigne(p.id, p.codeBarre, p.reference,
+                p.designation, p.prixVente, p.seuilMinimum, p.tauxTVA, c.code, c.nom,
+                (select listagg(pf.code, '|') within group (order by pf.code)
+                    from ProduitFini pf join pf.pieces pp where pp = p))
+            from PieceDetachee p left join p.categorie c
+            where p.archivee = false
+            order by p.id""")
+    public Stream<PieceExportLigne> streamExport();
 }
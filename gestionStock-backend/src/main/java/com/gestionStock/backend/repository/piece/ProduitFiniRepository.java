@@ -1,12 +1,49 @@
 package com.gestionStock.backend.repository.piece;
 
+import com.gestionStock.backend.dto.piece.ProduitResume;
 import com.gestionStock.backend.entity.piece.ProduitFini;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 public interface ProduitFiniRepository extends JpaRepository<ProduitFini,Long> {
+	@EntityGraph(attributePaths = { "pieces", "pieces.categorie" })
 	List<ProduitFini> findByEstArchiveeFalse();
 
+	@EntityGraph(attributePaths = { "pieces", "pieces.categorie" })
+	Optional<ProduitFini> findDetailById(Long id);
+
+	@Query("""
+			select new com.gestionStock.backend.dto.piece.ProduitResume(p.id, p.code, p.designation, p.imageUrl)
+			from ProduitFini p
+			where p.code in :codes""")
+	List<ProduitResume> findResumesParCodes(Collection<String> codes);
+
+	@Query("""
+			select new com.gestionStock.backend.dto.piece.ProduitResume(p.id, p.code, p.designation, p.imageUrl)
+			from ProduitFini p
+			where p.estArchivee = false and p.id > :apresId
+			order by p.id""")
+	List<ProduitResume> findResumesApresId(Long apresId, Limit limite);
+
+	@Query("""
+			select new com.gestionStock.backend.dto.piece.ProduitResume(p.id, p.code, p.designation, p.imageUrl)
+			from ProduitFini p
+			where p.estArchivee = false and p.designation is not null
+				and (p.designation > :apresDesignation or (p.designation = :apresDesignation and p.id > :apresId))
+			order by p.designation, p.id""")
+	List<ProduitResume> findResumesApresDesignation(String apresDesignation, Long apresId, Limit limite);
+
+	@Query("""
+			select new com.gestionStock.backend.dto.piece.ProduitResume(p.id, p.code, p.designation, p.imageUrl)
+			from ProduitFini p
+			where p.estArchivee = false and p.designation is null and p.id > :apresId
+			order by p.id""")
+	List<ProduitResume> findResumesSansDesignationApresId(Long apresId, Limit limite);
 }
@@ -0,0 +1,16 @@
+package com.gestionStock.backend.repository.piece;
+
+import com.gestionStock.backend.entity.piece.SeuilEntrepot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface SeuilEntrepotRepository extends JpaRepository<SeuilEntrepot, Long> {
+    Optional<SeuilEntrepot> findByPiece_IdAndEntrepot_Id(Long pieceId, Long entrepotId);
+
+    /** Seuils des pièces actives sous la forme {pieceId, entrepotId, seuilMinimum}. */
+    @Query("select s.piece.id, s.entrepot.id, s.seuilMinimum from SeuilEntrepot s where s.piece.archivee = false")
+    List<Object[]> findSeuilsActifs();
+}
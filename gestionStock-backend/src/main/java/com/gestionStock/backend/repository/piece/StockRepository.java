@@ -0,0 +1,20 @@
+package com.gestionStock.backend.repository.piece;
+
+import com.gestionStock.backend.entity.piece.Stock;
+import com.gestionStock.backend.entity.piece.TypeStock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface StockRepository extends JpaRepository<Stock, Long> {
+    /** Lignes de stock de plusieurs pièces sous la forme {pieceId, entrepotId, type, quantite}. */
+    @Query("select s.piece.id, s.entrepot.id, s.type, s.quantite from Stock s where s.piece.id in :pieceIds")
+    List<Object[]> findQuantitesParPieces(Collection<Long> pieceIds);
+
+    /** Total d'un type de stock par pièce, tous entrepôts confondus, sous la forme {pieceId, total}. */
+    @Query("select s.piece.id, sum(s.quantite) from Stock s where s.piece.id in :pieceIds and s.type = :type"
+            + " group by s.piece.id")
+    List<Object[]> findTotauxParPieces(Collection<Long> pieceIds, TypeStock type);
+}
@@ -0,0 +1,8 @@
+package com.gestionStock.backend.repository.user;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.gestionStock.backend.entity.user.SynchroUtilisateurs;
+
+public interface SynchroUtilisateursRepository extends JpaRepository<SynchroUtilisateurs, String> {
+}
@@ -1,8 +1,10 @@
 package com.gestionStock.backend.repository.user;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import com.gestionStock.backend.entity.user.User;
 
@@ -10,4 +12,9 @@ public interface UserRepository extends JpaRepository<User, String> {
 	List<User> findByActiveTrue();
 
 	java.util.Optional<User> findByEmail(String email);
+
+	List<User> findByEmailIn(Collection<String> emails);
+
+	@Query("select u.id from User u")
+	List<String> findAllIds();
 }
\ No newline at end of file
@@ -0,0 +1,287 @@
+package com.gestionStock.backend.service.images;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Cache disque en lecture devant un autre stockage d'images.
+ * <p>
+ * Une image lue est copiée dans un répertoire local puis servie depuis ce
+ * répertoire aux lectures suivantes. Le volume total est borné en octets : les
+ * images les moins récemment lues sont supprimées en premier. Quand plusieurs
+ * requêtes manquent la même image au même moment, un seul téléchargement a lieu
+ * et les autres l'attendent. Les images ne sont jamais réécrites sous le même
+ * nom : seule leur suppression retire leur copie du cache.
+ * <p>
+ * Métriques : {@code cache.gets{cache=images-disque, result=hit|miss}},
+ * {@code cache.evictions} et {@code cache.size} (octets).
+ */
+@Slf4j
+public class CacheDisqueStorage implements IImageStorage {
+
+    private static final String CACHE = "images-disque";
+
+    private final IImageStorage source;
+    private final Path repertoire;
+    private final long tailleMax;
+
+    /** Ordre d'accès : le premier élément est le moins récemment lu. Protégé par {@code this}. */
+    private final LinkedHashMap<String, Long> entrees = new LinkedHashMap<>(256, 0.75f, true);
+    private final AtomicLong octets = new AtomicLong();
+    private final ConcurrentHashMap<String, CompletableFuture<Boolean>> telechargements = new ConcurrentHashMap<>();
+
+    private final Counter succes;
+    private final Counter echecs;
+    private final Counter evictions;
+
+    public CacheDisqueStorage(IImageStorage source, Path repertoire, long tailleMax, MeterRegistry registry)
+            throws IOException {
+        this.source = source;
+        this.repertoire = repertoire.toAbsolutePath().normalize();
+        this.tailleMax = tailleMax;
+        this.succes = Counter.builder("cache.gets").tag("cache", CACHE).tag("result", "hit").register(registry);
+        this.echecs = Counter.builder("cache.gets").tag("cache", CACHE).tag("result", "miss").register(registry);
+        this.evictions = Counter.builder("cache.evictions").tag("cache", CACHE).register(registry);
+        Gauge.builder("cache.size", octets, AtomicLong::get).tag("cache", CACHE).baseUnit("bytes").register(registry);
+
+        Files.createDirectories(this.repertoire);
+        recharger();
+    }
+
+    @Override
+    public String uploadImage(MultipartFile file) throws Exception {
+        return source.uploadImage(file);
+    }
+
+    @Override
+    public String uploadImage(String nomOriginal, InputStream contenu, long longueur) throws Exception {
+        return source.uploadImage(nomOriginal, contenu, longueur);
+    }
+
+    @Override
+    public String saveImage(String filename, InputStream contenu) throws Exception {
+        return source.saveImage(filename, contenu);
+    }
+
+    @Override
+    public String saveImage(String filename, InputStream contenu, long longueur) throws Exception {
+        return source.saveImage(filename, contenu, longueur);
+    }
+
+    @Override
+    public void renommer(String source, String cible) throws Exception {
+        this.source.renommer(source, cible);
+    }
+
+    @Override
+    public void supprimer(String filename) throws Exception {
+        source.supprimer(filename);
+        synchronized (this) {
+            Long taille = entrees.remove(filename);
+            if (taille != null) {
+                octets.addAndGet(-taille);
+            }
+        }
+        Files.deleteIfExists(chemin(filename));
+    }
+
+    @Override
+    public String urlPublique(String filename, Integer largeur) {
+        return source.urlPublique(filename, largeur);
+    }
+
+    @Override
+    public PageImages lister(String curseur, int taille) throws Exception {
+        return source.lister(curseur, taille);
+    }
+
+    @Override
+    public boolean exists(String filename) throws Exception {
+        synchronized (this) {
+            if (entrees.containsKey(filename)) {
+                return true;
+            }
+        }
+        return source.exists(filename);
+    }
+
+    /** La copie en cache prend la même date, servie ensuite en {@code Last-Modified}. */
+    @Override
+    public boolean toucher(String filename) throws Exception {
+        if (!source.toucher(filename)) {
+            return false;
+        }
+        try {
+            Files.setLastModifiedTime(chemin(filename), FileTime.from(Instant.now()));
+        } catch (NoSuchFileException e) {
+            // Pas en cache.
+        }
+        return true;
+    }
+
+    @Override
+    public InputStream getImage(String filename) throws Exception {
+        Resource image = getImageResource(filename);
+        return image != null ? image.getInputStream() : null;
+    }
+
+    @Override
+    public Resource getImageResource(String filename) throws Exception {
+        Path fichier = chemin(filename);
+        Resource locale = lireLocale(filename, fichier);
+        if (locale != null) {
+            succes.increment();
+            return locale;
+        }
+        echecs.increment();
+
+        CompletableFuture<Boolean> attente = new CompletableFuture<>();
+        CompletableFuture<Boolean> existant = telechargements.putIfAbsent(filename, attente);
+        if (existant == null) {
+            try {
+                // Un téléchargement a pu se terminer entre la lecture manquée et l'inscription.
+                attente.complete(lireLocale(filename, fichier) != null || telecharger(filename, fichier));
+            } catch (Exception e) {
+                attente.completeExceptionally(e);
+                throw e;
+            } finally {
+                telechargements.remove(filename, attente);
+            }
+        } else {
+            try {
+                existant.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        Resource telechargee = lireLocale(filename, fichier);
+        // Image absente de la source, ou trop grande pour le cache : lecture directe.
+        return telechargee != null ? telechargee : source.getImageResource(filename);
+    }
+
+    /** @return {@code false} si l'image n'existe pas à la source ou dépasse la taille du cache. */
+    private boolean telecharger(String filename, Path fichier) throws Exception {
+        Resource image = source.getImageResource(filename);
+        if (image == null || image.contentLength() > tailleMax) {
+            return false;
+        }
+
+        Path temporaire = repertoire.resolve(".tmp-" + UUID.randomUUID());
+        try {
+            try (InputStream is = image.getInputStream()) {
+                Files.copy(is, temporaire, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (image.lastModified() > 0) {
+                Files.setLastModifiedTime(temporaire, FileTime.fromMillis(image.lastModified()));
+            }
+            long taille = Files.size(temporaire);
+            Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            ajouter(filename, taille);
+            return true;
+        } finally {
+            Files.deleteIfExists(temporaire);
+        }
+    }
+
+    /** La date du fichier en cache est celle de l'original : elle sert telle quelle de {@code Last-Modified}. */
+    private Resource lireLocale(String filename, Path fichier) {
+        boolean present;
+        synchronized (this) {
+            // get() et non containsKey() : la lecture doit remonter l'entrée dans l'ordre d'accès.
+            present = entrees.get(filename) != null;
+        }
+        return present && Files.exists(fichier) ? new FileSystemResource(fichier) : null;
+    }
+
+    private void ajouter(String filename, long taille) {
+        List<String> evincees = new ArrayList<>();
+        synchronized (this) {
+            Long ancienne = entrees.put(filename, taille);
+            octets.addAndGet(taille - (ancienne != null ? ancienne : 0L));
+            var iterateur = entrees.entrySet().iterator();
+            while (octets.get() > tailleMax && iterateur.hasNext()) {
+                Map.Entry<String, Long> plusAncienne = iterateur.next();
+                if (plusAncienne.getKey().equals(filename)) {
+                    continue;
+                }
+                iterateur.remove();
+                octets.addAndGet(-plusAncienne.getValue());
+                evincees.add(plusAncienne.getKey());
+            }
+        }
+        for (String nom : evincees) {
+            evictions.increment();
+            try {
+                Files.deleteIfExists(chemin(nom));
+            } catch (IOException e) {
+                log.warn("Impossible de supprimer {} du cache d'images", nom, e);
+            }
+        }
+    }
+
+    /** Reprend les fichiers déjà présents, du plus ancien au plus récent accès. */
+    private void recharger() throws IOException {
+        List<Path> fichiers;
+        try (Stream<Path> contenu = Files.list(repertoire)) {
+            fichiers = contenu.filter(Files::isRegularFile).toList();
+        }
+        List<Path> temporaires = fichiers.stream().filter(p -> p.getFileName().toString().startsWith(".tmp-")).toList();
+        for (Path p : temporaires) {
+            Files.deleteIfExists(p);
+        }
+        List<Path> tries = new ArrayList<>(fichiers);
+        tries.removeAll(temporaires);
+        tries.sort(Comparator.comparing(CacheDisqueStorage::dernierAcces));
+        for (Path p : tries) {
+            ajouter(p.getFileName().toString(), Files.size(p));
+        }
+        log.info("Cache d'images : {} fichiers, {} octets dans {}", entrees.size(), octets.get(), repertoire);
+    }
+
+    private Path chemin(String filename) {
+        Path fichier = repertoire.resolve(filename).normalize();
+        if (!fichier.getParent().equals(repertoire)) {
+            throw new IllegalArgumentException("Nom d'image invalide : " + filename);
+        }
+        return fichier;
+    }
+
+    private static FileTime dernierAcces(Path p) {
+        try {
+            return Files.readAttributes(p, BasicFileAttributes.class).lastAccessTime();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.gestionStock.backend.service.images;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.Transformation;
+import com.cloudinary.Url;
+import com.cloudinary.utils.ObjectUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stockage des images sur Cloudinary.
+ * <p>
+ * Un fichier plus grand qu'un morceau est envoyé par morceaux partageant le même
+ * identifiant d'envoi ; jusqu'à {@code cloudinary.morceaux.paralleles} morceaux
+ * partent en même temps et le dernier n'est envoyé qu'une fois les autres reçus,
+ * Cloudinary assemblant l'image à sa réception. La mémoire reste bornée : un
+ * morceau par envoi en vol, plus les deux en cours de lecture.
+ * <p>
+ * Les images sont servies directement par le CDN : {@link #urlPublique} renvoie
+ * l'URL de livraison, avec une transformation de redimensionnement pour les
+ * miniatures, qui ne sont donc pas générées ici. Chaque appel est chronométré
+ * dans {@code cloudinary.requetes{operation, issue}}.
+ */
+@Service
+// Aussi chargé quand il est la source d'une migration d'images.
+@ConditionalOnExpression("'${file.storage.type}' == 'cloudinary' or '${images.migration.source:}' == 'cloudinary'")
+public class CloudinaryStorage implements IImageStorage {
+
+    @FunctionalInterface
+    private interface Appel<T> {
+        T executer() throws IOException, InterruptedException;
+    }
+
+    private final Cloudinary cloudinary;
+    private final String dossier;
+    private final int tailleMorceau;
+    private final int paralleles;
+    private final Duration delaiLecture;
+    private final HttpClient http;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final MeterRegistry registry;
+
+    public CloudinaryStorage(@Value("${cloudinary.cloud-name}") String cloudName,
+            @Value("${cloudinary.api-key}") String apiKey,
+            @Value("${cloudinary.api-secret}") String apiSecret,
+            @Value("${cloudinary.dossier:pieces_images}") String dossier,
+            @Value("${cloudinary.upload-prefix:https://api.cloudinary.com}") String uploadPrefix,
+            @Value("${cloudinary.secure:true}") boolean secure,
+            @Value("${cloudinary.cname:}") String cname,
+            @Value("${cloudinary.morceaux.taille:20MB}") DataSize tailleMorceau,
+            @Value("${cloudinary.morceaux.paralleles:3}") int paralleles,
+            @Value("${cloudinary.delai.connexion:5s}") Duration delaiConnexion,
+            @Value("${cloudinary.delai.lecture:30s}") Duration delaiLecture,
+            MeterRegistry registry) {
+        Map<String, Object> config = new HashMap<>();
+        config.put("cloud_name", cloudName);
+        config.put("api_key", apiKey);
+        config.put("api_secret", apiSecret);
+        config.put("upload_prefix", uploadPrefix);
+        config.put("secure", secure);
+        if (!cname.isBlank()) {
+            config.put("cname", cname);
+        }
+        this.cloudinary = new Cloudinary(config);
+        this.dossier = dossier;
+        this.tailleMorceau = (int) tailleMorceau.toBytes();
+        this.paralleles = paralleles;
+        this.delaiLecture = delaiLecture;
+        this.http = HttpClient.newBuilder().connectTimeout(delaiConnexion).build();
+        this.registry = registry;
+    }
+
+    @PreDestroy
+    public void fermer() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public String uploadImage(MultipartFile file) throws Exception {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("Le fichier est vide ou null");
+        }
+
+        try (InputStream is = file.getInputStream()) {
+            return uploadImage(file.getOriginalFilename(), is, file.getSize());
+        }
+    }
+
+    @Override
+    public String uploadImage(String nomOriginal, InputStream contenu, long longueur) throws Exception {
+        String originalName = nomOriginal != null ? nomOriginal : "image.jpg";
+        String sanitizedName = originalName.replaceAll("[^a-zA-Z0-9.-]", "_");
+        String fileName = UUID.randomUUID().toString() + "_" + sanitizedName;
+
+        return saveImage(fileName, contenu, longueur);
+    }
+
+    @Override
+    public String saveImage(String filename, InputStream contenu) throws Exception {
+        return saveImage(filename, contenu, -1);
+    }
+
+    @Override
+    public String saveImage(String filename, InputStream contenu, long longueur) throws Exception {
+        String publicId = publicId(filename);
+        if (longueur >= 0 && longueur <= tailleMorceau) {
+            byte[] octets = contenu.readAllBytes();
+            mesurer("upload", () -> cloudinary.uploader().upload(octets, options(publicId)));
+        } else {
+            envoyerParMorceaux(publicId, contenu, longueur);
+        }
+        return "/api/images/" + filename;
+    }
+
+    private void envoyerParMorceaux(String publicId, InputStream contenu, long longueur) throws Exception {
+        String idEnvoi = UUID.randomUUID().toString().replace("-", "");
+        Semaphore places = new Semaphore(paralleles);
+        List<Future<?>> envois = new ArrayList<>();
+        try {
+            long debut = 0;
+            byte[] morceau = contenu.readNBytes(tailleMorceau);
+            if (morceau.length == 0) {
+                throw new IllegalArgumentException("Le fichier est vide ou null");
+            }
+            while (true) {
+                byte[] suivant = morceau.length < tailleMorceau ? new byte[0] : contenu.readNBytes(tailleMorceau);
+                if (suivant.length == 0) {
+                    for (Future<?> envoi : envois) {
+                        attendre(envoi);
+                    }
+                    envoyerMorceau(publicId, idEnvoi, morceau, debut, debut + morceau.length);
+                    return;
+                }
+                places.acquire();
+                byte[] courant = morceau;
+                long position = debut;
+                envois.add(executor.submit(() -> {
+                    try {
+                        envoyerMorceau(publicId, idEnvoi, courant, position, longueur);
+                        return null;
+                    } finally {
+                        places.release();
+                    }
+                }));
+                debut += morceau.length;
+                morceau = suivant;
+            }
+        } catch (Exception e) {
+            envois.forEach(envoi -> envoi.cancel(true));
+            throw e;
+        }
+    }
+
+    /** {@code total} vaut -1 tant que la taille du fichier n'est pas connue. */
+    private void envoyerMorceau(String publicId, String idEnvoi, byte[] morceau, long debut, long total)
+            throws Exception {
+        Map<String, Object> options = options(publicId);
+        options.put("extra_headers", Map.of(
+                "X-Unique-Upload-Id", idEnvoi,
+                "Content-Range", "bytes " + debut + "-" + (debut + morceau.length - 1) + "/" + total));
+        mesurer("upload-morceau", () -> cloudinary.uploader().upload(morceau, options));
+    }
+
+    @Override
+    public InputStream getImage(String filename) throws IOException, InterruptedException {
+        HttpResponse<InputStream> reponse = mesurer("get",
+                () -> http.send(requete(filename).GET().build(), HttpResponse.BodyHandlers.ofInputStream()));
+        if (reponse.statusCode() != 200) {
+            reponse.body().close();
+            if (reponse.statusCode() == 404) {
+                return null;
+            }
+            verifier(reponse, filename);
+        }
+        return reponse.body();
+    }
+
+    @Override
+    public Resource getImageResource(String filename) throws Exception {
+        HttpResponse<Void> reponse = mesurer("head", () -> http.send(
+                requete(filename).method("HEAD", HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.discarding()));
+        if (reponse.statusCode() == 404) {
+            return null;
+        }
+        verifier(reponse, filename);
+        long longueur = reponse.headers().firstValueAsLong("Content-Length").orElse(-1);
+        long modification = reponse.headers().firstValue("Last-Modified")
+                .map(date -> ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli())
+                .orElse(0L);
+        return new ImageStockee(filename, longueur, modification, () -> {
+            try {
+                return getImage(filename);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Lecture de " + filename + " interrompue");
+            }
+        });
+    }
+
+    @Override
+    public boolean exists(String filename) throws Exception {
+        return getImageResource(filename) != null;
+    }
+
+    /**
+     * Cloudinary ne permet pas de changer la date d'une image : elle est
+     * réenvoyée depuis sa propre URL de livraison, lue par Cloudinary lui-même,
+     * ce qui en crée une nouvelle version datée de maintenant.
+     */
+    @Override
+    public boolean toucher(String filename) throws Exception {
+        if (getImageResource(filename) == null) {
+            return false;
+        }
+        Map<String, Object> options = options(publicId(filename));
+        options.put("invalidate", true);
+        mesurer("upload", () -> cloudinary.uploader().upload(urlPublique(filename, null), options));
+        return true;
+    }
+
+    @Override
+    public void renommer(String source, String cible) throws Exception {
+        mesurer("rename", () -> cloudinary.uploader().rename(publicId(source), publicId(cible),
+                ObjectUtils.asMap("overwrite", true, "invalidate", true)));
+    }
+
+    @Override
+    public void supprimer(String filename) throws Exception {
+        mesurer("destroy", () -> cloudinary.uploader().destroy(publicId(filename),
+                ObjectUtils.asMap("invalidate", true)));
+    }
+
+    /**
+     * Liste paginée de l'Admin API ({@code next_cursor}), limitée au dossier des
+     * images. Chaque nom porte le format détecté par Cloudinary, qui peut
+     * différer de l'extension enregistrée : les noms listés sont comparés aux
+     * références sans leur extension.
+     */
+    @Override
+    public PageImages lister(String curseur, int taille) throws Exception {
+        Map<String, Object> options = new HashMap<>();
+        options.put("type", "upload");
+        options.put("prefix", dossier + "/");
+        options.put("max_results", taille);
+        if (curseur != null) {
+            options.put("next_cursor", curseur);
+        }
+        Map<?, ?> reponse = mesurer("resources", () -> {
+            try {
+                return cloudinary.api().resources(options);
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        });
+        List<PageImages.Fichier> fichiers = new ArrayList<>();
+        for (Object element : (List<?>) reponse.get("resources")) {
+            Map<?, ?> ressource = (Map<?, ?>) element;
+            String publicId = (String) ressource.get("public_id");
+            Object creation = ressource.get("created_at");
+            fichiers.add(new PageImages.Fichier(publicId.substring(dossier.length() + 1) + "." + ressource.get("format"),
+                    ((Number) ressource.get("bytes")).longValue(),
+                    creation != null ? Instant.parse(creation.toString()).toEpochMilli() : 0L));
+        }
+        return new PageImages(fichiers, (String) reponse.get("next_cursor"));
+    }
+
+    /** URL de livraison du CDN ; avec une largeur, l'image est redimensionnée par Cloudinary. */
+    @Override
+    public String urlPublique(String filename, Integer largeur) {
+        Url url = cloudinary.url().format(extension(filename));
+        if (largeur != null) {
+            url.transformation(new Transformation().width(largeur).crop("limit").quality("auto"));
+        }
+        return url.generate(publicId(filename));
+    }
+
+    private HttpRequest.Builder requete(String filename) {
+        return HttpRequest.newBuilder(URI.create(urlPublique(filename, null))).timeout(delaiLecture);
+    }
+
+    private Map<String, Object> options(String publicId) {
+        Map<String, Object> options = new HashMap<>();
+        options.put("public_id", publicId);
+        options.put("resource_type", "image");
+        options.put("overwrite", true);
+        return options;
+    }
+
+    private String publicId(String filename) {
+        int point = filename.lastIndexOf('.');
+        return dossier + "/" + (point > 0 ? filename.substring(0, point) : filename);
+    }
+
+    private static String extension(String filename) {
+        int point = filename.lastIndexOf('.');
+        return point > 0 ? filename.substring(point + 1) : "jpg";
+    }
+
+    private static void verifier(HttpResponse<?> reponse, String filename) throws IOException {
+        if (reponse.statusCode() >= 300) {
+            throw new IOException("Cloudinary a répondu " + reponse.statusCode() + " pour " + filename);
+        }
+    }
+
+    private static void attendre(Future<?> envoi) throws Exception {
+        try {
+            envoi.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private <T> T mesurer(String operation, Appel<T> appel) throws IOException, InterruptedException {
+        Timer.Sample debut = Timer.start(registry);
+        String issue = "succes";
+        try {
+            return appel.executer();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            issue = "erreur";
+            throw e;
+        } finally {
+            debut.stop(Timer.builder("cloudinary.requetes")
+                    .tag("operation", operation)
+                    .tag("issue", issue)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.gestionStock.backend.service.images;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Ensemble compact de noms : une empreinte de 64 bits par nom dans un tableau
+ * trié, soit 8 octets par nom au lieu d'une chaîne et d'une entrée de table.
+ * Une collision ne peut que faire croire un nom présent, jamais l'inverse.
+ */
+final class EmpreintesNoms {
+
+    private long[] empreintes = new long[1024];
+    private int taille;
+    private boolean trie;
+
+    void ajouter(String nom) {
+        if (taille == empreintes.length) {
+            empreintes = Arrays.copyOf(empreintes, taille * 2);
+        }
+        empreintes[taille++] = empreinte(nom);
+        trie = false;
+    }
+
+    boolean contient(String nom) {
+        if (!trie) {
+            Arrays.sort(empreintes, 0, taille);
+            trie = true;
+        }
+        return Arrays.binarySearch(empreintes, 0, taille, empreinte(nom)) >= 0;
+    }
+
+    int taille() {
+        return taille;
+    }
+
+    /** FNV-1a 64 bits suivi du mélange final de MurmurHash3. */
+    private static long empreinte(String nom) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : nom.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,10 +1,58 @@
 package com.gestionStock.backend.service.images;
 
 import java.io.InputStream;
+import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
 public interface IImageStorage {
     String uploadImage(MultipartFile file) throws Exception;
 
+    /** Envoi lu directement depuis le corps de la requête, sans passer par un {@code MultipartFile}. */
+    String uploadImage(String nomOriginal, InputStream contenu, long longueur) throws Exception;
+
     InputStream getImage(String filename) throws Exception;
+
+    /**
+     * Image avec sa taille et sa date, sans lire son contenu ; {@code null} si
+     * elle n'existe pas. Un fichier local est renvoyé en {@code FileSystemResource}
+     * pour être servi sans copie.
+     */
+    Resource getImageResource(String filename) throws Exception;
+
+    boolean exists(String filename) throws Exception;
+
+    /**
+     * Remet à maintenant la date de modification d'une image déjà stockée ;
+     * {@code false} si elle n'existe pas. Une image réutilisée repart ainsi pour
+     * un délai de grâce complet du ramasse-miettes.
+     */
+    boolean toucher(String filename) throws Exception;
+
+    /**
+     * URL publique sous laquelle le client peut lire l'image directement, à la
+     * largeur demandée si elle est donnée ; {@code null} si les images passent
+     * par {@code /api/images} et que les miniatures sont générées ici.
+     */
+    String urlPublique(String filename, Integer largeur);
+
+    /** Enregistre un fichier sous le nom donné (ex. une image dérivée) et renvoie son URL. */
+    String saveImage(String filename, InputStream contenu) throws Exception;
+
+    /**
+     * Écrit le flux dans le stockage au fil de sa lecture, sans copie
+     * intermédiaire : c'est la lecture du flux qui règle le débit d'envoi.
+     * {@code longueur} vaut -1 si elle est inconnue.
+     */
+    String saveImage(String filename, InputStream contenu, long longueur) throws Exception;
+
+    void renommer(String source, String cible) throws Exception;
+
+    void supprimer(String filename) throws Exception;
+
+    /**
+     * Fichiers stockés, page par page : {@code curseur} vaut {@code null} pour
+     * la première, puis le {@code curseurSuivant} de la précédente. Le curseur
+     * est opaque et l'ordre des fichiers propre à chaque stockage.
+     */
+    PageImages lister(String curseur, int taille) throws Exception;
 }
@@ -0,0 +1,189 @@
+package com.gestionStock.backend.service.images;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Génère en arrière-plan des versions réduites des images envoyées (une par
+ * largeur configurée) et les range à côté de l'original, dans le même format et
+ * sous le nom {@code w<largeur>_<original>}. Les vues en grille peuvent ainsi demander une
+ * miniature de quelques kilo-octets au lieu de l'original.
+ * <p>
+ * Chaque génération tourne sur un thread virtuel ; un sémaphore borne le nombre
+ * de décodages simultanés (coûteux en mémoire) et un second le nombre de
+ * générations en attente. Au-delà, la demande est abandonnée : l'image reste
+ * servie en taille d'origine.
+ * <p>
+ * Les dimensions sont lues dans l'en-tête avant tout décodage : une image de
+ * plus de {@code images.derivees.pixels-max} pixels n'est pas décodée, quelle
+ * que soit la taille de son fichier (bombe de décompression).
+ */
+@Slf4j
+@Service
+public class ImageDeriveeService {
+
+    private final IImageStorage storage;
+    private final List<Integer> largeurs;
+    private final long pixelsMax;
+    private final Semaphore enCours;
+    private final Semaphore places;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ImageDeriveeService(IImageStorage storage,
+            @Value("${images.derivees.largeurs:160,480}") List<Integer> largeurs,
+            @Value("${images.derivees.concurrence:2}") int concurrence,
+            @Value("${images.derivees.file-max:100}") int fileMax,
+            @Value("${images.derivees.pixels-max:40000000}") long pixelsMax) {
+        this.storage = storage;
+        this.largeurs = List.copyOf(largeurs);
+        this.pixelsMax = pixelsMax;
+        this.enCours = new Semaphore(concurrence);
+        this.places = new Semaphore(fileMax);
+        ImageIO.setUseCache(false);
+    }
+
+    public List<Integer> largeurs() {
+        return largeurs;
+    }
+
+    public boolean largeurConnue(int largeur) {
+        return largeurs.contains(largeur);
+    }
+
+    public static String nomDerive(String filename, int largeur) {
+        return "w" + largeur + "_" + filename;
+    }
+
+    /** Planifie la génération des dérivées d'une image déjà enregistrée ; ne bloque jamais l'appelant. */
+    public void planifier(String filename) {
+        if (!places.tryAcquire()) {
+            log.warn("File de génération des miniatures pleine, {} reste sans dérivées", filename);
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                enCours.acquire();
+                try {
+                    generer(filename);
+                } finally {
+                    enCours.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("Échec de la génération des miniatures de {}", filename, e);
+            } finally {
+                places.release();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void arreter() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private void generer(String filename) throws Exception {
+        // Image déjà connue (envoi en double d'un même contenu) : ses dérivées existent.
+        if (!largeurs.isEmpty() && storage.exists(nomDerive(filename, largeurs.get(0)))) {
+            return;
+        }
+        Decodee original;
+        try (InputStream is = storage.getImage(filename)) {
+            if (is == null) {
+                return;
+            }
+            original = decoder(ImageIO.createImageInputStream(is), filename);
+        }
+        if (original == null) {
+            return;
+        }
+
+        // Même format que l'original : la dérivée porte son nom, donc son extension.
+        BufferedImage image = original.image();
+        boolean alpha = image.getColorModel().hasAlpha();
+        for (int largeur : largeurs) {
+            if (image.getWidth() <= largeur) {
+                continue;
+            }
+            BufferedImage reduite = reduire(image, largeur, alpha);
+            ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+            if (!ImageIO.write(reduite, original.format(), sortie)) {
+                log.debug("Pas d'encodeur {} pour la miniature de {}", original.format(), filename);
+                return;
+            }
+            storage.saveImage(nomDerive(filename, largeur), new ByteArrayInputStream(sortie.toByteArray()));
+        }
+    }
+
+    private record Decodee(BufferedImage image, String format) {
+    }
+
+    /** Image décodée, ou {@code null} si son format est inconnu ou si elle dépasse {@link #pixelsMax}. */
+    private Decodee decoder(ImageInputStream entree, String filename) throws Exception {
+        try (entree) {
+            Iterator<ImageReader> lecteurs = ImageIO.getImageReaders(entree);
+            if (!lecteurs.hasNext()) {
+                log.debug("Format non décodable, pas de miniature pour {}", filename);
+                return null;
+            }
+            ImageReader lecteur = lecteurs.next();
+            try {
+                lecteur.setInput(entree, true, true);
+                long pixels = (long) lecteur.getWidth(0) * lecteur.getHeight(0);
+                if (pixels > pixelsMax) {
+                    log.warn("Image de {} pixels, au-delà de {} : pas de miniature pour {}", pixels, pixelsMax,
+                            filename);
+                    return null;
+                }
+                return new Decodee(lecteur.read(0), lecteur.getFormatName().toLowerCase(Locale.ROOT));
+            } finally {
+                lecteur.dispose();
+            }
+        }
+    }
+
+    /** Réduction par paliers de moitié puis au format exact, plus nette qu'une réduction directe. */
+    private static BufferedImage reduire(BufferedImage source, int largeur, boolean alpha) {
+        int hauteur = Math.max(1, (int) Math.round((double) source.getHeight() * largeur / source.getWidth()));
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage courante = source;
+        int l = source.getWidth();
+        int h = source.getHeight();
+        do {
+            l = Math.max(largeur, l / 2);
+            h = Math.max(hauteur, h / 2);
+            BufferedImage etape = new BufferedImage(l, h, type);
+            Graphics2D g = etape.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(courante, 0, 0, l, h, null);
+            } finally {
+                g.dispose();
+            }
+            courante = etape;
+        } while (l > largeur || h > hauteur);
+        return courante;
+    }
+}
@@ -1,8 +1,14 @@
 package com.gestionStock.backend.service.images;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 
 @Service
@@ -11,11 +17,95 @@ public class ImageService {
     @Autowired
     private IImageStorage storage;
 
+    @Autowired
+    private ImageDeriveeService derivees;
+
+    @Value("${images.envoi.taille-max:10MB}")
+    private DataSize tailleMax;
+
     public String uploadImage(MultipartFile file) throws Exception {
-        return storage.uploadImage(file);
+        return apresEnvoi(storage.uploadImage(file));
+    }
+
+    /**
+     * Envoi lu directement depuis le corps de la requête : seul un tampon de
+     * lecture est en mémoire, et le client n'envoie pas plus vite que le
+     * stockage n'écrit. {@code longueur} vaut -1 si elle est inconnue.
+     */
+    public String uploadImage(String nomOriginal, InputStream contenu, long longueur) throws Exception {
+        if (longueur == 0) {
+            throw new IllegalArgumentException("Fichier vide");
+        }
+        if (longueur > tailleMax.toBytes()) {
+            throw new IllegalArgumentException("Image trop volumineuse (maximum " + tailleMax.toMegabytes() + " Mo)");
+        }
+        return apresEnvoi(storage.uploadImage(nomOriginal, new FluxBorne(contenu, tailleMax.toBytes()), longueur));
+    }
+
+    /** Les miniatures ne sont générées que si le stockage ne sait pas redimensionner lui-même. */
+    private String apresEnvoi(String url) {
+        String filename = url.substring(url.lastIndexOf('/') + 1);
+        if (storage.urlPublique(filename, null) == null) {
+            derivees.planifier(filename);
+        }
+        return url;
     }
 
     public InputStream getImage(String filename) throws Exception {
         return storage.getImage(filename);
     }
+
+    public Resource getImageResource(String filename) throws Exception {
+        return storage.getImageResource(filename);
+    }
+
+    /** URL du CDN à laquelle rediriger le client, ou {@code null} si l'image est servie ici. */
+    public String urlPublique(String filename, Integer largeur) {
+        return storage.urlPublique(filename, largeur);
+    }
+
+    /** Nom de la version réduite d'une image à la largeur demandée. */
+    public String nomDerive(String filename, int largeur) {
+        if (!derivees.largeurConnue(largeur)) {
+            throw new IllegalArgumentException("Largeur de miniature non disponible : " + largeur);
+        }
+        return ImageDeriveeService.nomDerive(filename, largeur);
+    }
+
+    /** Interrompt la lecture dès que la taille maximale est dépassée, longueur annoncée ou non. */
+    private static final class FluxBorne extends FilterInputStream {
+
+        private final long max;
+        private long lus;
+
+        FluxBorne(InputStream flux, long max) {
+            super(flux);
+            this.max = max;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int octet = super.read();
+            if (octet >= 0) {
+                compter(1);
+            }
+            return octet;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                compter(n);
+            }
+            return n;
+        }
+
+        private void compter(int n) throws IOException {
+            lus += n;
+            if (lus > max) {
+                throw new IOException("Image trop volumineuse (plus de " + max + " octets)");
+            }
+        }
+    }
 }
@@ -0,0 +1,61 @@
+package com.gestionStock.backend.service.images;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Image lue depuis un stockage, avec sa taille et sa date de modification
+ * connues sans lire le contenu. Chaque appel à {@link #getInputStream()}
+ * ouvre un nouveau flux, ce qui permet de servir des plages d'octets.
+ */
+public class ImageStockee extends AbstractResource {
+
+    @FunctionalInterface
+    public interface Ouverture {
+        InputStream ouvrir() throws IOException;
+    }
+
+    private final String filename;
+    private final long longueur;
+    private final long dateModification;
+    private final Ouverture ouverture;
+
+    public ImageStockee(String filename, long longueur, long dateModification, Ouverture ouverture) {
+        this.filename = filename;
+        this.longueur = longueur;
+        this.dateModification = dateModification;
+        this.ouverture = ouverture;
+    }
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Image [" + filename + "]";
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return longueur;
+    }
+
+    @Override
+    public long lastModified() {
+        return dateModification;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return ouverture.ouvrir();
+    }
+}
@@ -0,0 +1,118 @@
+package com.gestionStock.backend.service.images;
+
+import lombok.AllArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Noms des images référencées par les pièces et les produits finis, lus par
+ * pages dans l'ordre des identifiants de chaque table.
+ * <p>
+ * Toute {@code image_url} non vide est ramenée à son dernier segment de chemin :
+ * en plus de {@code /api/images/<nom>}, des lignes anciennes contiennent un nom
+ * seul, un chemin {@code /uploads/...} ou une URL WebDAV
+ * {@code /remote.php/dav/files/...}, que le client sert toutes par
+ * {@code /api/images/<nom>}. Ce nom ne suivant aucun index, les pages avancent
+ * par identifiant et non par nom.
+ */
+@Component
+@AllArgsConstructor
+public class ImagesReferencees {
+
+    /** Une page de noms, sans doublon dans la page ; {@code curseurSuivant} est {@code null} sur la dernière. */
+    public record Page(List<String> noms, String curseurSuivant) {
+    }
+
+    private static final List<String> TABLES = List.of("piece_detachee", "produit_fini");
+
+    private static final String PAGE = """
+            SELECT id, image_url FROM %s
+            WHERE id > ? AND image_url IS NOT NULL AND image_url <> '' ORDER BY id LIMIT ?
+            """;
+
+    /** Même nom à l'extension près, seul ou en fin de chemin. */
+    private static final String URL_DU_NOM = """
+            image_url = ? OR image_url LIKE ? ESCAPE '!' OR image_url LIKE ? ESCAPE '!' OR image_url LIKE ? ESCAPE '!'""";
+
+    private static final String REFERENCEE = """
+            SELECT EXISTS (SELECT 1 FROM piece_detachee WHERE %1$s)
+                OR EXISTS (SELECT 1 FROM produit_fini WHERE %1$s)
+            """.formatted(URL_DU_NOM);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Noms d'images de la page qui suit {@code curseur} ({@code null} pour la
+     * première) ; une page couvre au plus {@code taille} lignes.
+     */
+    public Page page(String curseur, int taille) {
+        int table = 0;
+        long apres = 0;
+        if (curseur != null) {
+            int separateur = curseur.indexOf(':');
+            table = TABLES.indexOf(curseur.substring(0, separateur));
+            apres = Long.parseLong(curseur.substring(separateur + 1));
+        }
+
+        Set<String> noms = new LinkedHashSet<>();
+        int lues = 0;
+        for (; table < TABLES.size(); table++, apres = 0) {
+            long[] dernier = { apres };
+            int[] lignes = { 0 };
+            jdbcTemplate.query(PAGE.formatted(TABLES.get(table)), ligne -> {
+                dernier[0] = ligne.getLong(1);
+                lignes[0]++;
+                String nom = nom(ligne.getString(2));
+                if (nom != null) {
+                    noms.add(nom);
+                }
+            }, apres, taille - lues);
+            lues += lignes[0];
+            if (lues == taille) {
+                return new Page(List.copyOf(noms), TABLES.get(table) + ":" + dernier[0]);
+            }
+        }
+        return new Page(List.copyOf(noms), null);
+    }
+
+    /**
+     * Vrai si une ligne référence ce nom, sous l'une des formes d'URL acceptées
+     * et avec n'importe quelle extension (voir {@link #radical}).
+     */
+    public boolean estReferencee(String nom) {
+        String radical = radical(nom);
+        String echappe = radical.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+        Object[] parametres = { radical, echappe + ".%", "%/" + echappe, "%/" + echappe + ".%" };
+        Object[] deuxTables = new Object[parametres.length * 2];
+        System.arraycopy(parametres, 0, deuxTables, 0, parametres.length);
+        System.arraycopy(parametres, 0, deuxTables, parametres.length, parametres.length);
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(REFERENCEE, Boolean.class, deuxTables));
+    }
+
+    /**
+     * Nom sans son extension. Les références et les fichiers stockés sont
+     * comparés ainsi : Cloudinary liste chaque image sous son identifiant suivi
+     * du format qu'il a détecté, pas de l'extension du nom enregistré.
+     */
+    static String radical(String nom) {
+        int point = nom.lastIndexOf('.');
+        return point > 0 ? nom.substring(0, point) : nom;
+    }
+
+    /** Dernier segment du chemin d'une {@code image_url} ; {@code null} pour une image en ligne ({@code data:}). */
+    static String nom(String url) {
+        if (url.startsWith("data:")) {
+            return null;
+        }
+        String chemin = url;
+        while (chemin.endsWith("/")) {
+            chemin = chemin.substring(0, chemin.length() - 1);
+        }
+        String nom = chemin.substring(chemin.lastIndexOf('/') + 1);
+        return nom.isEmpty() ? null : nom;
+    }
+}
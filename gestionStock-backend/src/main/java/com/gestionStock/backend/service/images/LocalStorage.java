@@ -1,20 +1,59 @@
 package com.gestionStock.backend.service.images;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.UUID;
 
 @Service
-@ConditionalOnProperty(name = "file.storage.type", havingValue = "local")
+// Aussi chargé quand il est la source d'une migration d'images.
+@ConditionalOnExpression("'${file.storage.type}' == 'local' or '${images.migration.source:}' == 'local'")
 public class LocalStorage implements IImageStorage {
 
+    /** Délai au-delà duquel un parcours sans nouvelle page est fermé. */
+    private static final Duration ABANDON = Duration.ofMinutes(10);
+
+    private record Parcours(DirectoryStream<Path> contenu, Iterator<Path> noms) {
+    }
+
+    /** Parcours du répertoire en cours, par curseur de la page suivante. */
+    private final Cache<String, Parcours> parcours = Caffeine.newBuilder()
+            .expireAfterAccess(ABANDON)
+            .scheduler(Scheduler.systemScheduler())
+            .removalListener((String curseur, Parcours abandonne, RemovalCause cause) -> {
+                if (abandonne != null && cause.wasEvicted()) {
+                    try {
+                        abandonne.contenu().close();
+                    } catch (IOException e) {
+                        // Rien d'autre à libérer.
+                    }
+                }
+            })
+            .build();
+
     @Value("${file.local.upload-dir:uploads}")
     private String uploadDir;
 
@@ -27,23 +66,129 @@ public class LocalStorage implements IImageStorage {
             throw new IllegalArgumentException("Le fichier est vide ou null");
         }
 
+        try (InputStream is = file.getInputStream()) {
+            return uploadImage(file.getOriginalFilename(), is, file.getSize());
+        }
+    }
+
+    @Override
+    public String uploadImage(String nomOriginal, InputStream contenu, long longueur) throws Exception {
+        String originalName = nomOriginal != null ? nomOriginal : "image.jpg";
+        String sanitizedName = originalName.replaceAll("[^a-zA-Z0-9.-]", "_");
+        String fileName = UUID.randomUUID().toString() + "_" + sanitizedName;
+
+        return saveImage(fileName, contenu, longueur);
+    }
+
+    @Override
+    public Resource getImageResource(String filename) throws Exception {
+        Path targetPath = Paths.get(uploadDir).resolve(filename);
+        if (!Files.exists(targetPath)) {
+            return null;
+        }
+        return new FileSystemResource(targetPath);
+    }
+
+    @Override
+    public String urlPublique(String filename, Integer largeur) {
+        return null;
+    }
+
+    @Override
+    public boolean exists(String filename) {
+        return Files.exists(Paths.get(uploadDir).resolve(filename));
+    }
+
+    @Override
+    public boolean toucher(String filename) throws Exception {
+        try {
+            Files.setLastModifiedTime(Paths.get(uploadDir).resolve(filename), FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String saveImage(String filename, InputStream contenu) throws Exception {
+        return saveImage(filename, contenu, -1);
+    }
+
+    @Override
+    public String saveImage(String filename, InputStream contenu, long longueur) throws Exception {
         Path root = Paths.get(uploadDir);
         if (!Files.exists(root)) {
             Files.createDirectories(root);
         }
 
-        String originalName = file.getOriginalFilename() != null ? file.getOriginalFilename() : "image.jpg";
-        String sanitizedName = originalName.replaceAll("[^a-zA-Z0-9.-]", "_");
-        String fileName = UUID.randomUUID().toString() + "_" + sanitizedName;
-        Path targetPath = root.resolve(fileName);
+        Files.copy(contenu, root.resolve(filename), StandardCopyOption.REPLACE_EXISTING);
 
-        Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
+        return "/api/images/" + filename;
+    }
 
-        return "/api/images/" + fileName;
+    @Override
+    public void renommer(String source, String cible) throws Exception {
+        Path root = Paths.get(uploadDir);
+        Files.move(root.resolve(source), root.resolve(cible), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void supprimer(String filename) throws Exception {
+        Files.deleteIfExists(Paths.get(uploadDir).resolve(filename));
+    }
+
+    /**
+     * Le répertoire est lu une seule fois, dans l'ordre où le système le
+     * renvoie : le parcours ouvert est gardé entre deux pages sous le curseur
+     * renvoyé, et fermé à la dernière page ou après {@link #ABANDON} sans suite.
+     */
+    @Override
+    public PageImages lister(String curseur, int taille) throws Exception {
+        Parcours courant;
+        if (curseur == null) {
+            Path root = Paths.get(uploadDir);
+            if (!Files.isDirectory(root)) {
+                return PageImages.vide();
+            }
+            DirectoryStream<Path> contenu = Files.newDirectoryStream(root);
+            courant = new Parcours(contenu, contenu.iterator());
+        } else {
+            courant = parcours.asMap().remove(curseur);
+            if (courant == null) {
+                throw new IllegalArgumentException("Parcours d'images inconnu ou expiré : " + curseur);
+            }
+        }
+
+        List<PageImages.Fichier> fichiers = new ArrayList<>(taille);
+        try {
+            while (fichiers.size() < taille && courant.noms().hasNext()) {
+                Path p = courant.noms().next();
+                try {
+                    BasicFileAttributes attributs = Files.readAttributes(p, BasicFileAttributes.class);
+                    if (attributs.isRegularFile()) {
+                        fichiers.add(new PageImages.Fichier(p.getFileName().toString(), attributs.size(),
+                                attributs.lastModifiedTime().toMillis()));
+                    }
+                } catch (NoSuchFileException e) {
+                    // Supprimé depuis le parcours.
+                }
+            }
+            if (!courant.noms().hasNext()) {
+                courant.contenu().close();
+                return new PageImages(fichiers, null);
+            }
+        } catch (IOException | RuntimeException e) {
+            courant.contenu().close();
+            throw e;
+        }
+        String suivant = UUID.randomUUID().toString();
+        parcours.put(suivant, courant);
+        return new PageImages(fichiers, suivant);
     }
 
     @Override
-    public java.io.InputStream getImage(String filename) throws Exception {
+    public InputStream getImage(String filename) throws Exception {
         Path root = Paths.get(uploadDir);
         Path targetPath = root.resolve(filename);
         if (Files.exists(targetPath)) {
@@ -0,0 +1,295 @@
+package com.gestionStock.backend.service.images;
+
+import com.gestionStock.backend.entity.piece.MigrationImages;
+import com.gestionStock.backend.repository.piece.MigrationImagesRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copie les images référencées d'un stockage ({@code images.migration.source})
+ * vers le stockage courant ({@code file.storage.type}), application en marche.
+ * <p>
+ * Les noms sont lus par pages ; les images d'une page (et leurs miniatures) sont
+ * copiées en parallèle, au plus {@code images.migration.paralleles} à la fois,
+ * chacune en flux. Chaque copie est relue depuis la cible et sa somme SHA-256
+ * comparée à celle de l'original. Le point de reprise est enregistré à la fin de
+ * chaque page, avec les noms des images dont la copie a échoué : une reprise
+ * retente d'abord ces images puis repart du point de reprise, et une image déjà
+ * présente dans la cible avec la même taille n'est pas recopiée.
+ * <p>
+ * Métriques : {@code images.migration.fichiers{resultat}},
+ * {@code images.migration.octets} (débit) et {@code images.migration.copie}.
+ */
+@Slf4j
+@Service
+public class MigrationImagesService {
+
+    private enum Resultat {
+        COPIEE, DEJA_PRESENTE, ABSENTE
+    }
+
+    private final Map<String, IImageStorage> stockages;
+    private final String source;
+    private final String cible;
+    private final ImagesReferencees references;
+    private final ImageDeriveeService derivees;
+    private final MigrationImagesRepository migrationRepo;
+    private final int paralleles;
+    private final int taillePage;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final MeterRegistry registry;
+    private final Counter octetsCopies;
+    private final Timer dureeCopie;
+
+    private volatile Thread enCours;
+    private volatile boolean arretDemande;
+
+    public MigrationImagesService(Map<String, IImageStorage> stockages,
+            @Value("${images.migration.source:}") String source,
+            @Value("${file.storage.type}") String cible,
+            ImagesReferencees references, ImageDeriveeService derivees, MigrationImagesRepository migrationRepo,
+            @Value("${images.migration.paralleles:8}") int paralleles,
+            @Value("${images.migration.taille-page:500}") int taillePage,
+            MeterRegistry registry) {
+        this.stockages = stockages;
+        this.source = source;
+        this.cible = cible;
+        this.references = references;
+        this.derivees = derivees;
+        this.migrationRepo = migrationRepo;
+        this.paralleles = paralleles;
+        this.taillePage = taillePage;
+        this.registry = registry;
+        this.octetsCopies = Counter.builder("images.migration.octets").baseUnit("bytes").register(registry);
+        this.dureeCopie = Timer.builder("images.migration.copie").register(registry);
+    }
+
+    /**
+     * Lance la migration en arrière-plan. Avec {@code reprendre}, elle repart du
+     * dernier point de reprise enregistré ; sinon elle reprend depuis le début.
+     */
+    public synchronized MigrationImages demarrer(boolean reprendre) {
+        if (source.isBlank()) {
+            throw new IllegalArgumentException("Aucun stockage source : renseignez images.migration.source");
+        }
+        if (source.equals(cible)) {
+            throw new IllegalArgumentException("Le stockage source est déjà le stockage courant");
+        }
+        IImageStorage depuis = stockages.get(source + "Storage");
+        IImageStorage vers = stockages.get(cible + "Storage");
+        if (depuis == null || vers == null) {
+            throw new IllegalArgumentException("Stockage inconnu : " + (depuis == null ? source : cible));
+        }
+        if (enCours != null && enCours.isAlive()) {
+            throw new IllegalStateException("Une migration est déjà en cours");
+        }
+
+        MigrationImages etat = migrationRepo.findById(source + "->" + cible)
+                .filter(e -> reprendre)
+                .orElseGet(() -> new MigrationImages(source, cible));
+        etat.setStatut(MigrationImages.Statut.EN_COURS);
+        etat.setDebut(Instant.now());
+        etat.setFin(null);
+        etat.setOctets(0);
+        MigrationImages enregistre = migrationRepo.save(etat);
+
+        arretDemande = false;
+        enCours = Thread.ofVirtual().name("migration-images").start(() -> executer(enregistre, depuis, vers));
+        return enregistre;
+    }
+
+    /** Demande l'arrêt à la fin de la page en cours ; la migration pourra être reprise. */
+    public void arreter() {
+        arretDemande = true;
+    }
+
+    public Optional<MigrationImages> etat() {
+        return migrationRepo.findById(source + "->" + cible);
+    }
+
+    @PreDestroy
+    public void fermer() throws InterruptedException {
+        arretDemande = true;
+        Thread thread = enCours;
+        if (thread != null) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        executor.shutdown();
+    }
+
+    private void executer(MigrationImages etat, IImageStorage depuis, IImageStorage vers) {
+        log.info("Migration des images {} -> {} depuis {}", source, cible,
+                etat.getCurseur() != null ? etat.getCurseur() : "le début");
+        Semaphore places = new Semaphore(paralleles);
+        try {
+            List<String> reprises = List.copyOf(etat.getEnEchec());
+            if (!reprises.isEmpty()) {
+                log.info("Nouvelle tentative pour {} images en échec", reprises.size());
+                enregistrer(etat, copierTout(reprises, depuis, vers, places), reprises);
+            }
+
+            ImagesReferencees.Page page;
+            do {
+                page = references.page(etat.getCurseur(), taillePage);
+                Bilan bilan = copierTout(page.noms(), depuis, vers, places);
+                if (page.curseurSuivant() != null) {
+                    etat.setCurseur(page.curseurSuivant());
+                }
+                enregistrer(etat, bilan, List.of());
+
+                if (arretDemande && page.curseurSuivant() != null) {
+                    terminer(etat, MigrationImages.Statut.INTERROMPUE);
+                    return;
+                }
+            } while (page.curseurSuivant() != null);
+            terminer(etat, MigrationImages.Statut.TERMINEE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            terminer(etat, MigrationImages.Statut.INTERROMPUE);
+        } catch (RuntimeException e) {
+            log.error("Migration des images {} -> {} arrêtée", source, cible, e);
+            terminer(etat, MigrationImages.Statut.ECHOUEE);
+        }
+    }
+
+    /** Copie les images en parallèle, au plus {@code paralleles} à la fois, et attend la dernière. */
+    private Bilan copierTout(List<String> noms, IImageStorage depuis, IImageStorage vers, Semaphore places)
+            throws InterruptedException {
+        Bilan bilan = new Bilan();
+        List<Future<?>> copies = new ArrayList<>();
+        for (String nom : noms) {
+            places.acquire();
+            copies.add(executor.submit(() -> {
+                try {
+                    migrer(nom, depuis, vers, bilan);
+                } finally {
+                    places.release();
+                }
+            }));
+        }
+        for (Future<?> copie : copies) {
+            try {
+                copie.get();
+            } catch (ExecutionException e) {
+                log.error("Échec inattendu de la migration d'une image", e.getCause());
+            }
+        }
+        return bilan;
+    }
+
+    /** Ajoute le bilan à l'état ; les images retentées qui ont réussi sortent des échecs. */
+    private void enregistrer(MigrationImages etat, Bilan bilan, List<String> reprises) {
+        etat.setCopiees(etat.getCopiees() + bilan.copiees.get());
+        etat.setDejaPresentes(etat.getDejaPresentes() + bilan.dejaPresentes.get());
+        etat.setAbsentes(etat.getAbsentes() + bilan.absentes.get());
+        etat.setOctets(etat.getOctets() + bilan.octets.get());
+        reprises.forEach(etat.getEnEchec()::remove);
+        etat.getEnEchec().addAll(bilan.echouees);
+        etat.setEchecs(etat.getEnEchec().size());
+        migrationRepo.save(etat);
+    }
+
+    private void terminer(MigrationImages etat, MigrationImages.Statut statut) {
+        etat.setStatut(statut);
+        etat.setFin(Instant.now());
+        migrationRepo.save(etat);
+        log.info("Migration des images {} -> {} {} : {} copiées, {} déjà présentes, {} absentes, {} échecs, {} o/s",
+                source, cible, statut, etat.getCopiees(), etat.getDejaPresentes(), etat.getAbsentes(),
+                etat.getEchecs(), etat.getOctetsParSeconde());
+    }
+
+    /** Copie l'image et ses miniatures ; seule l'image elle-même est comptée. */
+    private void migrer(String nom, IImageStorage depuis, IImageStorage vers, Bilan bilan) {
+        try {
+            Resultat resultat = copier(nom, depuis, vers, bilan);
+            (switch (resultat) {
+                case COPIEE -> bilan.copiees;
+                case DEJA_PRESENTE -> bilan.dejaPresentes;
+                case ABSENTE -> bilan.absentes;
+            }).incrementAndGet();
+            compter(resultat.name().toLowerCase(Locale.ROOT).replace('_', '-'));
+            if (resultat != Resultat.ABSENTE) {
+                for (int largeur : derivees.largeurs()) {
+                    copier(ImageDeriveeService.nomDerive(nom, largeur), depuis, vers, bilan);
+                }
+            }
+        } catch (Exception e) {
+            bilan.echouees.add(nom);
+            compter("echec");
+            log.warn("Échec de la migration de l'image {}", nom, e);
+        }
+    }
+
+    private Resultat copier(String nom, IImageStorage depuis, IImageStorage vers, Bilan bilan) throws Exception {
+        Resource original = depuis.getImageResource(nom);
+        if (original == null) {
+            return Resultat.ABSENTE;
+        }
+        long longueur = original.contentLength();
+        Resource existante = vers.getImageResource(nom);
+        if (existante != null && existante.contentLength() == longueur) {
+            return Resultat.DEJA_PRESENTE;
+        }
+
+        Timer.Sample debut = Timer.start(registry);
+        MessageDigest lu = MessageDigest.getInstance("SHA-256");
+        try (InputStream is = new DigestInputStream(original.getInputStream(), lu)) {
+            vers.saveImage(nom, is, longueur);
+        }
+        MessageDigest relu = MessageDigest.getInstance("SHA-256");
+        try (InputStream is = vers.getImage(nom)) {
+            if (is == null) {
+                throw new IOException("Image absente de la cible après copie : " + nom);
+            }
+            new DigestInputStream(is, relu).transferTo(OutputStream.nullOutputStream());
+        }
+        if (!MessageDigest.isEqual(lu.digest(), relu.digest())) {
+            vers.supprimer(nom);
+            throw new IOException("Somme de contrôle différente après copie de " + nom);
+        }
+        debut.stop(dureeCopie);
+        octetsCopies.increment(longueur);
+        bilan.octets.addAndGet(longueur);
+        return Resultat.COPIEE;
+    }
+
+    private void compter(String resultat) {
+        Counter.builder("images.migration.fichiers").tag("resultat", resultat).register(registry).increment();
+    }
+
+    /** Compteurs d'une page, alimentés par les copies parallèles. */
+    private static final class Bilan {
+        final AtomicLong copiees = new AtomicLong();
+        final AtomicLong dejaPresentes = new AtomicLong();
+        final AtomicLong absentes = new AtomicLong();
+        final Set<String> echouees = ConcurrentHashMap.newKeySet();
+        final AtomicLong octets = new AtomicLong();
+    }
+}
@@ -0,0 +1,197 @@
+package com.gestionStock.backend.service.images;
+
+import com.gestionStock.backend.dto.piece.RapportNettoyage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Ramasse-miettes des images qui ne sont plus référencées (image remplacée,
+ * envoi abandonné, fichier d'envoi provisoire).
+ * <p>
+ * Marquage : tous les noms référencés par les pièces et les produits finis,
+ * quelle que soit la forme de leur URL, sont lus par pages dans un ensemble
+ * d'empreintes compact. Les noms sont comparés sans leur extension, que
+ * Cloudinary ne conserve pas. Balayage : le
+ * stockage est parcouru page par page ; un fichier non référencé (une miniature
+ * l'est si son original l'est) et plus ancien que le délai de grâce est
+ * supprimé, après une dernière vérification en base qui couvre une référence
+ * posée depuis le marquage, puis une relecture de sa date : un envoi identique
+ * réutilise l'image existante en la touchant avant d'enregistrer la pièce. Les suppressions sont limitées en débit. En
+ * simulation, rien n'est supprimé et le rapport liste ce qui l'aurait été.
+ */
+@Slf4j
+@Service
+public class NettoyageImagesService {
+
+    private static final int EXEMPLES_MAX = 100;
+    private static final Pattern DERIVEE = Pattern.compile("w(\\d{1,5})_(.+)");
+
+    private final IImageStorage storage;
+    /** Stockage sous-jacent, sans cache : la date d'une image y est relue sans la télécharger. */
+    private final IImageStorage backend;
+    private final ImagesReferencees references;
+    private final ImageDeriveeService derivees;
+    private final Duration delaiGrace;
+    private final long intervalleSuppressionNs;
+    private final int taillePage;
+    private final Counter suppressions;
+    private final Counter octetsLiberes;
+    private final AtomicBoolean enCours = new AtomicBoolean();
+    private volatile RapportNettoyage dernierRapport;
+
+    public NettoyageImagesService(IImageStorage storage, Map<String, IImageStorage> stockages,
+            @Value("${file.storage.type}") String type, ImagesReferencees references,
+            ImageDeriveeService derivees,
+            @Value("${images.nettoyage.delai-grace:7d}") Duration delaiGrace,
+            @Value("${images.nettoyage.suppressions-par-seconde:5}") double suppressionsParSeconde,
+            @Value("${images.nettoyage.taille-page:1000}") int taillePage,
+            MeterRegistry registry) {
+        this.storage = storage;
+        this.backend = stockages.getOrDefault(type + "Storage", storage);
+        this.references = references;
+        this.derivees = derivees;
+        this.delaiGrace = delaiGrace;
+        this.intervalleSuppressionNs = (long) (TimeUnit.SECONDS.toNanos(1) / suppressionsParSeconde);
+        this.taillePage = taillePage;
+        this.suppressions = Counter.builder("images.nettoyage.suppressions").register(registry);
+        this.octetsLiberes = Counter.builder("images.nettoyage.octets").baseUnit("bytes").register(registry);
+    }
+
+    /** Lance un passage en arrière-plan ; {@code false} si un passage est déjà en cours. */
+    public boolean lancer(boolean simulation) {
+        if (!enCours.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread.ofVirtual().name("nettoyage-images").start(() -> {
+            try {
+                dernierRapport = nettoyer(simulation);
+            } catch (Exception e) {
+                log.error("Échec du nettoyage des images", e);
+            } finally {
+                enCours.set(false);
+            }
+        });
+        return true;
+    }
+
+    /** Passage planifié, désactivé par défaut ({@code images.nettoyage.cron=-}). */
+    @Scheduled(cron = "${images.nettoyage.cron:-}")
+    public void planifie() {
+        lancer(false);
+    }
+
+    public Optional<RapportNettoyage> dernierRapport() {
+        return Optional.ofNullable(dernierRapport);
+    }
+
+    RapportNettoyage nettoyer(boolean simulation) throws Exception {
+        Instant debut = Instant.now();
+        EmpreintesNoms referencees = marquer();
+        long limite = debut.minus(delaiGrace).toEpochMilli();
+
+        long examinees = 0;
+        long recentes = 0;
+        long orphelines = 0;
+        long supprimees = 0;
+        long octets = 0;
+        long echecs = 0;
+        List<String> exemples = new ArrayList<>();
+        long prochaineSuppression = System.nanoTime();
+
+        String curseur = null;
+        do {
+            PageImages page = storage.lister(curseur, taillePage);
+            for (PageImages.Fichier fichier : page.fichiers()) {
+                examinees++;
+                if (referencees.contient(ImagesReferencees.radical(original(fichier.filename())))) {
+                    continue;
+                }
+                if (fichier.dateModification() > limite) {
+                    recentes++;
+                    continue;
+                }
+                orphelines++;
+                if (exemples.size() < EXEMPLES_MAX) {
+                    exemples.add(fichier.filename());
+                }
+                if (simulation) {
+                    continue;
+                }
+
+                long attente = prochaineSuppression - System.nanoTime();
+                if (attente > 0) {
+                    TimeUnit.NANOSECONDS.sleep(attente);
+                }
+                prochaineSuppression = Math.max(prochaineSuppression, System.nanoTime()) + intervalleSuppressionNs;
+                try {
+                    if (references.estReferencee(original(fichier.filename()))) {
+                        orphelines--;
+                        continue;
+                    }
+                    Resource actuelle = backend.getImageResource(fichier.filename());
+                    if (actuelle == null) {
+                        orphelines--;
+                        continue;
+                    }
+                    if (actuelle.lastModified() > limite) {
+                        // Reprise par un envoi identique depuis le listage.
+                        orphelines--;
+                        recentes++;
+                        continue;
+                    }
+                    storage.supprimer(fichier.filename());
+                    supprimees++;
+                    octets += fichier.taille();
+                    suppressions.increment();
+                    octetsLiberes.increment(fichier.taille());
+                } catch (Exception e) {
+                    echecs++;
+                    log.warn("Impossible de supprimer l'image orpheline {}", fichier.filename(), e);
+                }
+            }
+            curseur = page.curseurSuivant();
+        } while (curseur != null);
+
+        RapportNettoyage rapport = new RapportNettoyage(simulation, debut, Instant.now(), referencees.taille(),
+                examinees, recentes, orphelines, supprimees, octets, echecs, List.copyOf(exemples));
+        log.info("Nettoyage des images{} : {} examinées, {} orphelines, {} supprimées ({} octets), {} échecs",
+                simulation ? " (simulation)" : "", examinees, orphelines, supprimees, octets, echecs);
+        return rapport;
+    }
+
+    private EmpreintesNoms marquer() {
+        EmpreintesNoms noms = new EmpreintesNoms();
+        String curseur = null;
+        do {
+            ImagesReferencees.Page page = references.page(curseur, taillePage);
+            page.noms().forEach(nom -> noms.ajouter(ImagesReferencees.radical(nom)));
+            curseur = page.curseurSuivant();
+        } while (curseur != null);
+        return noms;
+    }
+
+    /** Nom de l'image d'origine d'une miniature ; le nom lui-même sinon. */
+    private String original(String filename) {
+        Matcher m = DERIVEE.matcher(filename);
+        if (m.matches() && derivees.largeurConnue(Integer.parseInt(m.group(1)))) {
+            return m.group(2);
+        }
+        return filename;
+    }
+}
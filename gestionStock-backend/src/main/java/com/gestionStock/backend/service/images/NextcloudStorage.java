@@ -1,33 +1,139 @@
 package com.gestionStock.backend.service.images;
 
-import com.github.sardine.Sardine;
-import com.github.sardine.SardineFactory;
+import com.github.sardine.DavResource;
+import com.github.sardine.impl.SardineException;
+import com.github.sardine.impl.SardineImpl;
+import com.github.sardine.impl.handler.MultiStatusResponseHandler;
+import com.github.sardine.impl.methods.HttpSearch;
+import com.github.sardine.model.Multistatus;
+import com.github.sardine.model.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.xml.namespace.QName;
 
+/**
+ * Stockage des images sur Nextcloud (WebDAV).
+ * <p>
+ * Un seul client Sardine est partagé par toutes les requêtes : ses connexions
+ * sont gardées ouvertes dans un pool borné et réutilisées, et
+ * l'authentification est envoyée d'emblée au lieu d'attendre un 401. L'existence
+ * du dossier de destination n'est vérifiée qu'au premier envoi. Chaque appel
+ * WebDAV est chronométré dans {@code nextcloud.requetes{operation, issue}}.
+ */
 @Service
-@ConditionalOnProperty(name = "file.storage.type", havingValue = "nextcloud")
+// Aussi chargé quand il est la source d'une migration d'images.
+@ConditionalOnExpression("'${file.storage.type}' == 'nextcloud' or '${images.migration.source:}' == 'nextcloud'")
 public class NextcloudStorage implements IImageStorage {
 
-    @Value("${nextcloud.url}")
-    private String nextcloudUrl;
+    @FunctionalInterface
+    private interface Appel<T> {
+        T executer() throws IOException;
+    }
+
+    private static final QName DERNIERE_MODIFICATION = new QName("DAV:", "lastmodified", "d");
+    private static final QName IDENTIFIANT = new QName("http://owncloud.org/ns", "fileid", "oc");
+
+    private static final String RECHERCHE = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <d:searchrequest xmlns:d="DAV:" xmlns:oc="http://owncloud.org/ns">
+              <d:basicsearch>
+                <d:select><d:prop>
+                  <oc:fileid/><d:getcontentlength/><d:getlastmodified/><d:resourcetype/>
+                </d:prop></d:select>
+                <d:from><d:scope><d:href>%s</d:href><d:depth>1</d:depth></d:scope></d:from>
+                <d:where>
+                  <d:gt><d:prop><oc:fileid/></d:prop><d:literal>%d</d:literal></d:gt>
+                </d:where>
+                <d:orderby><d:order><d:prop><oc:fileid/></d:prop><d:ascending/></d:order></d:orderby>
+                <d:limit><d:nresults>%d</d:nresults></d:limit>
+              </d:basicsearch>
+            </d:searchrequest>
+            """;
+
+    private final String folderUrl;
+    /** Racine WebDAV ({@code /remote.php/dav}), où s'envoient les requêtes {@code SEARCH}. */
+    private final String racineDav;
+    /** Dossier des images relativement à {@link #racineDav}, ex. {@code /files/admin/pieces_images}. */
+    private final String portee;
+    private final ClientWebDav sardine;
+    private final PoolingHttpClientConnectionManager pool;
+    private final MeterRegistry registry;
+    private volatile boolean dossierPret;
 
-    @Value("${nextcloud.username}")
-    private String username;
+    public NextcloudStorage(@Value("${nextcloud.url}") String nextcloudUrl,
+            @Value("${nextcloud.username}") String username,
+            @Value("${nextcloud.password}") String password,
+            @Value("${nextcloud.base-path}") String basePath,
+            @Value("${nextcloud.documents-folder}") String documentsFolder,
+            @Value("${nextcloud.pool.connexions-max:20}") int connexionsMax,
+            @Value("${nextcloud.delai.connexion:5s}") Duration delaiConnexion,
+            @Value("${nextcloud.delai.lecture:30s}") Duration delaiLecture,
+            @Value("${nextcloud.keep-alive:60s}") Duration keepAlive,
+            MeterRegistry registry) {
+        this.folderUrl = nextcloudUrl + basePath + "/" + documentsFolder + "/";
+        int fichiers = basePath.indexOf("/files/");
+        this.racineDav = nextcloudUrl + basePath.substring(0, Math.max(fichiers, 0)) + "/";
+        this.portee = basePath.substring(Math.max(fichiers, 0)) + "/" + documentsFolder;
+        this.registry = registry;
 
-    @Value("${nextcloud.password}")
-    private String password;
+        this.pool = new PoolingHttpClientConnectionManager(keepAlive.toMillis(), TimeUnit.MILLISECONDS);
+        pool.setMaxTotal(connexionsMax);
+        pool.setDefaultMaxPerRoute(connexionsMax);
+        pool.setValidateAfterInactivity(2000);
 
-    @Value("${nextcloud.base-path}")
-    private String basePath;
+        RequestConfig delais = RequestConfig.custom()
+                .setConnectTimeout((int) delaiConnexion.toMillis())
+                .setConnectionRequestTimeout((int) delaiConnexion.toMillis())
+                .setSocketTimeout((int) delaiLecture.toMillis())
+                .build();
+        long keepAliveMs = keepAlive.toMillis();
+        HttpClientBuilder client = HttpClientBuilder.create()
+                .setConnectionManager(pool)
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(delais)
+                .setKeepAliveStrategy((reponse, contexte) -> {
+                    long serveur = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(reponse, contexte);
+                    return serveur > 0 ? Math.min(serveur, keepAliveMs) : keepAliveMs;
+                })
+                .evictIdleConnections(keepAliveMs, TimeUnit.MILLISECONDS);
 
-    @Value("${nextcloud.documents-folder}")
-    private String documentsFolder;
+        ClientWebDav impl = new ClientWebDav(client, username, password);
+        URI serveur = URI.create(nextcloudUrl);
+        int port = serveur.getPort();
+        impl.enablePreemptiveAuthentication(serveur.getHost(), port > 0 ? port : 80, port > 0 ? port : 443);
+        this.sardine = impl;
+    }
+
+    @PreDestroy
+    public void fermer() throws IOException {
+        sardine.shutdown();
+        pool.shutdown();
+    }
 
     @Override
     public String uploadImage(MultipartFile file) throws Exception {
@@ -35,32 +141,203 @@ public class NextcloudStorage implements IImageStorage {
             throw new IllegalArgumentException("Le fichier est vide ou null");
         }
 
-        Sardine sardine = SardineFactory.begin(username, password);
+        try (InputStream is = file.getInputStream()) {
+            return uploadImage(file.getOriginalFilename(), is, file.getSize());
+        }
+    }
 
-        String originalName = file.getOriginalFilename() != null ? file.getOriginalFilename() : "image.jpg";
+    @Override
+    public String uploadImage(String nomOriginal, InputStream contenu, long longueur) throws Exception {
+        String originalName = nomOriginal != null ? nomOriginal : "image.jpg";
         String sanitizedName = originalName.replaceAll("[^a-zA-Z0-9.-]", "_");
         String fileName = UUID.randomUUID().toString() + "_" + sanitizedName;
-        String fullUrl = nextcloudUrl + basePath + "/" + documentsFolder + "/" + fileName;
 
-        String folderUrl = nextcloudUrl + basePath + "/" + documentsFolder + "/";
-        if (!sardine.exists(folderUrl)) {
-            sardine.createDirectory(folderUrl);
+        return saveImage(fileName, contenu, longueur);
+    }
+
+    @Override
+    public InputStream getImage(String filename) throws Exception {
+        String fullUrl = folderUrl + filename;
+        try {
+            return mesurer("get", () -> sardine.get(fullUrl));
+        } catch (SardineException e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            throw e;
         }
+    }
 
-        try (InputStream is = file.getInputStream()) {
-            sardine.put(fullUrl, is);
+    /** Une seule requête PROPFIND fournit existence, taille et date ; le contenu n'est lu qu'à la demande. */
+    @Override
+    public Resource getImageResource(String filename) throws Exception {
+        String fullUrl = folderUrl + filename;
+        List<DavResource> proprietes;
+        try {
+            proprietes = mesurer("propfind", () -> sardine.list(fullUrl, 0));
+        } catch (SardineException e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+        if (proprietes.isEmpty()) {
+            return null;
         }
+        DavResource fichier = proprietes.get(0);
+        long modification = fichier.getModified() != null ? fichier.getModified().getTime() : 0L;
+        return new ImageStockee(filename, fichier.getContentLength(), modification,
+                () -> mesurer("get", () -> sardine.get(fullUrl)));
+    }
 
-        return "/api/images/" + fileName;
+    @Override
+    public String urlPublique(String filename, Integer largeur) {
+        return null;
     }
 
     @Override
-    public InputStream getImage(String filename) throws Exception {
-        Sardine sardine = SardineFactory.begin(username, password);
-        String fullUrl = nextcloudUrl + basePath + "/" + documentsFolder + "/" + filename;
-        if (sardine.exists(fullUrl)) {
-            return sardine.get(fullUrl);
+    public boolean exists(String filename) throws Exception {
+        return mesurer("exists", () -> sardine.exists(folderUrl + filename));
+    }
+
+    /** {@code PROPPATCH} de {@code d:lastmodified}, que Nextcloud accepte en secondes depuis l'époque. */
+    @Override
+    public boolean toucher(String filename) throws Exception {
+        try {
+            mesurer("proppatch", () -> sardine.patch(folderUrl + filename,
+                    Map.of(DERNIERE_MODIFICATION, String.valueOf(Instant.now().getEpochSecond()))));
+            return true;
+        } catch (SardineException e) {
+            if (e.getStatusCode() == 404) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public String saveImage(String filename, InputStream contenu) throws Exception {
+        return saveImage(filename, contenu, -1);
+    }
+
+    /** Le flux est relayé tel quel vers Nextcloud ; sans longueur connue, l'envoi se fait par morceaux. */
+    @Override
+    public String saveImage(String filename, InputStream contenu, long longueur) throws Exception {
+        preparerDossier();
+        try {
+            mesurer("put", () -> {
+                sardine.put(folderUrl + filename, contenu, null, false, longueur);
+                return null;
+            });
+        } catch (SardineException e) {
+            // Dossier supprimé entre-temps : il sera recréé au prochain envoi.
+            if (e.getStatusCode() == 404 || e.getStatusCode() == 409) {
+                dossierPret = false;
+            }
+            throw e;
+        }
+
+        return "/api/images/" + filename;
+    }
+
+    @Override
+    public void renommer(String source, String cible) throws Exception {
+        mesurer("move", () -> {
+            sardine.move(folderUrl + source, folderUrl + cible, true);
+            return null;
+        });
+    }
+
+    @Override
+    public void supprimer(String filename) throws Exception {
+        try {
+            mesurer("delete", () -> {
+                sardine.delete(folderUrl + filename);
+                return null;
+            });
+        } catch (SardineException e) {
+            if (e.getStatusCode() != 404) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Requête WebDAV {@code SEARCH} de Nextcloud, par pages de {@code taille}
+     * fichiers triés par identifiant : le curseur est le dernier identifiant
+     * renvoyé. Un décalage ({@code firstresult}) sauterait des fichiers chaque
+     * fois que le ramasse-miettes en supprime d'une page déjà lue.
+     */
+    @Override
+    public PageImages lister(String curseur, int taille) throws Exception {
+        String requete = RECHERCHE.formatted(portee, curseur != null ? Long.parseLong(curseur) : 0, taille);
+        List<DavResource> resultats = mesurer("search", () -> sardine.chercher(racineDav, requete));
+        List<PageImages.Fichier> fichiers = new ArrayList<>(resultats.size());
+        String dernier = null;
+        for (DavResource r : resultats) {
+            dernier = r.getCustomPropsNS().get(IDENTIFIANT);
+            if (!r.isDirectory()) {
+                fichiers.add(new PageImages.Fichier(r.getName(), r.getContentLength(),
+                        r.getModified() != null ? r.getModified().getTime() : 0L));
+            }
+        }
+        return new PageImages(fichiers, resultats.size() < taille ? null : dernier);
+    }
+
+    private void preparerDossier() throws IOException {
+        if (dossierPret) {
+            return;
+        }
+        synchronized (this) {
+            if (!dossierPret) {
+                if (!mesurer("exists", () -> sardine.exists(folderUrl))) {
+                    mesurer("mkcol", () -> {
+                        sardine.createDirectory(folderUrl);
+                        return null;
+                    });
+                }
+                dossierPret = true;
+            }
+        }
+    }
+
+    /** Client Sardine capable d'envoyer une requête {@code SEARCH} ({@code d:basicsearch}). */
+    private static final class ClientWebDav extends SardineImpl {
+
+        ClientWebDav(HttpClientBuilder client, String username, String password) {
+            super(client, username, password);
+        }
+
+        List<DavResource> chercher(String url, String requete) throws IOException {
+            HttpSearch search = new HttpSearch(url);
+            search.setEntity(new StringEntity(requete, ContentType.create("text/xml", StandardCharsets.UTF_8)));
+            Multistatus reponse = execute(search, new MultiStatusResponseHandler());
+            List<DavResource> resultats = new ArrayList<>(reponse.getResponse().size());
+            for (Response r : reponse.getResponse()) {
+                try {
+                    resultats.add(new DavResource(r));
+                } catch (URISyntaxException e) {
+                    throw new IOException("Réponse SEARCH illisible : " + r.getHref(), e);
+                }
+            }
+            return resultats;
+        }
+    }
+
+    private <T> T mesurer(String operation, Appel<T> appel) throws IOException {
+        Timer.Sample debut = Timer.start(registry);
+        String issue = "succes";
+        try {
+            return appel.executer();
+        } catch (IOException | RuntimeException e) {
+            issue = "erreur";
+            throw e;
+        } finally {
+            debut.stop(Timer.builder("nextcloud.requetes")
+                    .tag("operation", operation)
+                    .tag("issue", issue)
+                    .publishPercentileHistogram()
+                    .register(registry));
         }
-        return null;
     }
 }
@@ -0,0 +1,14 @@
+package com.gestionStock.backend.service.images;
+
+import java.util.List;
+
+/** Une page de la liste des fichiers d'un stockage ; {@code curseurSuivant} est {@code null} sur la dernière. */
+public record PageImages(List<Fichier> fichiers, String curseurSuivant) {
+
+    public record Fichier(String filename, long taille, long dateModification) {
+    }
+
+    static PageImages vide() {
+        return new PageImages(List.of(), null);
+    }
+}
@@ -0,0 +1,161 @@
+package com.gestionStock.backend.service.images;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Nomme chaque image envoyée d'après le condensat SHA-256 de son contenu
+ * ({@code <sha256>.<extension>}). Une même photo envoyée pour plusieurs pièces
+ * n'est stockée qu'une fois : si le nom existe déjà, l'écriture est sautée et
+ * l'URL existante est renvoyée. L'image existante est alors touchée
+ * ({@link IImageStorage#toucher}) : orpheline depuis longtemps, elle ne doit pas
+ * être supprimée par le ramasse-miettes avant que la pièce qui la reprend soit
+ * enregistrée. Le nom étant l'empreinte du contenu, l'ETag qui en découle est
+ * fort par construction.
+ * <p>
+ * Un envoi en flux ne peut pas être lu deux fois : il est écrit au fil de l'eau
+ * sous un nom provisoire tout en étant haché, puis renommé d'après son
+ * condensat, ou supprimé si ce contenu était déjà stocké.
+ * <p>
+ * Les envois sont comptés dans {@code images.envois{resultat=nouveau|doublon}}.
+ */
+@Slf4j
+public class StockageParContenu implements IImageStorage {
+
+    private final IImageStorage stockage;
+    private final Counter nouveaux;
+    private final Counter doublons;
+
+    public StockageParContenu(IImageStorage stockage, MeterRegistry registry) {
+        this.stockage = stockage;
+        this.nouveaux = Counter.builder("images.envois").tag("resultat", "nouveau").register(registry);
+        this.doublons = Counter.builder("images.envois").tag("resultat", "doublon").register(registry);
+    }
+
+    @Override
+    public String uploadImage(MultipartFile file) throws Exception {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("Le fichier est vide ou null");
+        }
+
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        try (InputStream is = new DigestInputStream(file.getInputStream(), sha256)) {
+            is.transferTo(OutputStream.nullOutputStream());
+        }
+        String filename = nom(sha256, file.getOriginalFilename());
+
+        if (stockage.toucher(filename)) {
+            doublons.increment();
+            return "/api/images/" + filename;
+        }
+        nouveaux.increment();
+        try (InputStream is = file.getInputStream()) {
+            return stockage.saveImage(filename, is);
+        }
+    }
+
+    @Override
+    public String uploadImage(String nomOriginal, InputStream contenu, long longueur) throws Exception {
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        String provisoire = "envoi-" + UUID.randomUUID() + ".tmp";
+        try {
+            stockage.saveImage(provisoire, new DigestInputStream(contenu, sha256), longueur);
+        } catch (Exception e) {
+            supprimerProvisoire(provisoire);
+            throw e;
+        }
+        String filename = nom(sha256, nomOriginal);
+
+        if (stockage.toucher(filename)) {
+            doublons.increment();
+            supprimerProvisoire(provisoire);
+        } else {
+            nouveaux.increment();
+            stockage.renommer(provisoire, filename);
+        }
+        return "/api/images/" + filename;
+    }
+
+    @Override
+    public InputStream getImage(String filename) throws Exception {
+        return stockage.getImage(filename);
+    }
+
+    @Override
+    public Resource getImageResource(String filename) throws Exception {
+        return stockage.getImageResource(filename);
+    }
+
+    @Override
+    public String urlPublique(String filename, Integer largeur) {
+        return stockage.urlPublique(filename, largeur);
+    }
+
+    @Override
+    public PageImages lister(String curseur, int taille) throws Exception {
+        return stockage.lister(curseur, taille);
+    }
+
+    @Override
+    public boolean exists(String filename) throws Exception {
+        return stockage.exists(filename);
+    }
+
+    @Override
+    public boolean toucher(String filename) throws Exception {
+        return stockage.toucher(filename);
+    }
+
+    @Override
+    public String saveImage(String filename, InputStream contenu) throws Exception {
+        return stockage.saveImage(filename, contenu);
+    }
+
+    @Override
+    public String saveImage(String filename, InputStream contenu, long longueur) throws Exception {
+        return stockage.saveImage(filename, contenu, longueur);
+    }
+
+    @Override
+    public void renommer(String source, String cible) throws Exception {
+        stockage.renommer(source, cible);
+    }
+
+    @Override
+    public void supprimer(String filename) throws Exception {
+        stockage.supprimer(filename);
+    }
+
+    private void supprimerProvisoire(String provisoire) {
+        try {
+            stockage.supprimer(provisoire);
+        } catch (Exception e) {
+            log.warn("Fichier d'envoi provisoire {} non supprimé", provisoire, e);
+        }
+    }
+
+    static String nom(MessageDigest condensat, String nomOriginal) {
+        return HexFormat.of().formatHex(condensat.digest()) + "." + extension(nomOriginal);
+    }
+
+    private static String extension(String nomOriginal) {
+        String nom = nomOriginal != null ? nomOriginal : "";
+        int point = nom.lastIndexOf('.');
+        String extension = point >= 0 ? nom.substring(point + 1).toLowerCase(Locale.ROOT) : "";
+        if (!extension.matches("[a-z0-9]{1,5}")) {
+            return "jpg";
+        }
+        return "jpeg".equals(extension) ? "jpg" : extension;
+    }
+}
@@ -0,0 +1,10 @@
+package com.gestionStock.backend.service.piece;
+
+import com.gestionStock.backend.dto.piece.AlerteStockDto;
+
+/**
+ * Notification d'alerte de stock, publiée uniquement au franchissement du seuil
+ * (ouverture) et au retour au-dessus (levée), jamais à chaque mouvement.
+ */
+public record AlerteStockEvent(AlerteStockDto alerte, boolean ouverte) {
+}
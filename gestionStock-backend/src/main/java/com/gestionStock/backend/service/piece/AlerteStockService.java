@@ -0,0 +1,231 @@
+package com.gestionStock.backend.service.piece;
+
+import com.gestionStock.backend.dto.piece.AlerteStockDto;
+import com.gestionStock.backend.entity.piece.SeuilEntrepot;
+import com.gestionStock.backend.entity.piece.TypeStock;
+import com.gestionStock.backend.repository.piece.EntrepotRepository;
+import com.gestionStock.backend.repository.piece.PieceDetacheeRepository;
+import com.gestionStock.backend.repository.piece.SeuilEntrepotRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Alertes de stock bas, tenues à jour de façon incrémentale.
+ * <p>
+ * Les seuils (global par pièce, et éventuellement par entrepôt) sont gardés en
+ * mémoire. À chaque lot de mouvements, seules les pièces touchées sont
+ * réévaluées à partir des compteurs, et l'ensemble des pièces sous seuil est
+ * lu sans parcourir le catalogue. Le seuil global porte sur le stock disponible
+ * tous entrepôts confondus ; un seuil d'entrepôt sur le disponible de cet
+ * entrepôt. Une notification {@link AlerteStockEvent} n'est publiée qu'au
+ * franchissement du seuil, pas à chaque mouvement sous le seuil.
+ */
+@Slf4j
+@Service
+public class AlerteStockService {
+
+    private static final Comparator<AlerteStockDto> ORDRE = Comparator.comparing(AlerteStockDto::pieceId)
+            .thenComparing(AlerteStockDto::entrepotId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final PieceDetacheeRepository pieceRepo;
+    private final EntrepotRepository entrepotRepo;
+    private final SeuilEntrepotRepository seuilRepo;
+    private final CompteurStockService compteurs;
+    private final ApplicationEventPublisher evenements;
+
+    private final ConcurrentHashMap<Long, Integer> seuilsGlobaux = new ConcurrentHashMap<>();
+    /** Par pièce : seuil par entrepôt. Les valeurs sont immuables et remplacées en bloc. */
+    private final ConcurrentHashMap<Long, Map<Long, Integer>> seuilsEntrepot = new ConcurrentHashMap<>();
+    /** Par pièce : alertes ouvertes, indexées par entrepôt (clé nulle pour le seuil global). */
+    private final ConcurrentHashMap<Long, Map<Long, AlerteStockDto>> alertes = new ConcurrentHashMap<>();
+
+    public AlerteStockService(PieceDetacheeRepository pieceRepo, EntrepotRepository entrepotRepo,
+            SeuilEntrepotRepository seuilRepo, CompteurStockService compteurs,
+            ApplicationEventPublisher evenements) {
+        this.pieceRepo = pieceRepo;
+        this.entrepotRepo = entrepotRepo;
+        this.seuilRepo = seuilRepo;
+        this.compteurs = compteurs;
+        this.evenements = evenements;
+    }
+
+    @PostConstruct
+    void initialiser() {
+        for (Object[] ligne : pieceRepo.findSeuilsActifs()) {
+            seuilsGlobaux.put((Long) ligne[0], ((Number) ligne[1]).intValue());
+        }
+        Map<Long, Map<Long, Integer>> parPiece = new HashMap<>();
+        for (Object[] ligne : seuilRepo.findSeuilsActifs()) {
+            parPiece.computeIfAbsent((Long) ligne[0], id -> new HashMap<>())
+                    .put((Long) ligne[1], ((Number) ligne[2]).intValue());
+        }
+        parPiece.forEach((pieceId, seuils) -> seuilsEntrepot.put(pieceId, Map.copyOf(seuils)));
+
+        Set<Long> pieces = new HashSet<>(seuilsGlobaux.keySet());
+        pieces.addAll(seuilsEntrepot.keySet());
+        compteurs.charger(pieces);
+        pieces.forEach(this::evaluer);
+        log.info("{} pièces surveillées, {} en alerte de stock", pieces.size(), alertes.size());
+    }
+
+    public List<AlerteStockDto> alertes() {
+        List<AlerteStockDto> resultat = new ArrayList<>();
+        alertes.values().forEach(parEntrepot -> resultat.addAll(parEntrepot.values()));
+        resultat.sort(ORDRE);
+        return resultat;
+    }
+
+    public List<AlerteStockDto> alertes(Long pieceId) {
+        List<AlerteStockDto> resultat = new ArrayList<>(alertes.getOrDefault(pieceId, Map.of()).values());
+        resultat.sort(ORDRE);
+        return resultat;
+    }
+
+    /** Définit le seuil d'une pièce dans un entrepôt ; un seuil nul le supprime. */
+    @Transactional
+    public void definirSeuilEntrepot(Long pieceId, Long entrepotId, int seuil) {
+        if (seuil < 0) {
+            throw new IllegalArgumentException("Le seuil doit être positif ou nul");
+        }
+        if (!pieceRepo.existsById(pieceId)) {
+            throw new IllegalArgumentException("Pièce non trouvée avec l'id : " + pieceId);
+        }
+        if (!entrepotRepo.existsById(entrepotId)) {
+            throw new IllegalArgumentException("Entrepot non trouvé");
+        }
+
+        SeuilEntrepot existant = seuilRepo.findByPiece_IdAndEntrepot_Id(pieceId, entrepotId).orElse(null);
+        if (seuil == 0) {
+            if (existant != null) {
+                seuilRepo.delete(existant);
+                seuilRepo.flush();
+            }
+        } else {
+            SeuilEntrepot s = existant != null ? existant : new SeuilEntrepot();
+            s.setPiece(pieceRepo.getReferenceById(pieceId));
+            s.setEntrepot(entrepotRepo.getReferenceById(entrepotId));
+            s.setSeuilMinimum(seuil);
+            seuilRepo.saveAndFlush(s);
+        }
+
+        synchronized (this) {
+            Map<Long, Integer> seuils = new HashMap<>(seuilsEntrepot.getOrDefault(pieceId, Map.of()));
+            if (seuil == 0) {
+                seuils.remove(entrepotId);
+            } else {
+                seuils.put(entrepotId, seuil);
+            }
+            if (seuils.isEmpty()) {
+                seuilsEntrepot.remove(pieceId);
+            } else {
+                seuilsEntrepot.put(pieceId, Map.copyOf(seuils));
+            }
+            evaluer(pieceId);
+        }
+    }
+
+    @EventListener
+    public void surStockModifie(StockModifie evenement) {
+        for (Long pieceId : evenement.pieceIds()) {
+            if (seuilsGlobaux.containsKey(pieceId) || seuilsEntrepot.containsKey(pieceId)) {
+                evaluer(pieceId);
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void surPieceModifiee(PieceDetacheeModifiee evenement) {
+        Long pieceId = evenement.id();
+        if (evenement.archivee()) {
+            seuilsGlobaux.remove(pieceId);
+            seuilsEntrepot.remove(pieceId);
+        } else if (evenement.seuilMinimum() > 0) {
+            Integer ancien = seuilsGlobaux.put(pieceId, evenement.seuilMinimum());
+            if (ancien != null && ancien == evenement.seuilMinimum()) {
+                return;
+            }
+        } else if (seuilsGlobaux.remove(pieceId) == null) {
+            return;
+        }
+        evaluer(pieceId);
+    }
+
+    /** Recalcule les alertes d'une pièce et notifie les seules transitions. */
+    private synchronized void evaluer(Long pieceId) {
+        Integer seuilGlobal = seuilsGlobaux.get(pieceId);
+        Map<Long, Integer> seuilsParEntrepot = seuilsEntrepot.getOrDefault(pieceId, Map.of());
+        Map<Long, AlerteStockDto> avant = alertes.getOrDefault(pieceId, Map.of());
+        Map<Long, AlerteStockDto> apres = new HashMap<>();
+
+        if (seuilGlobal != null || !seuilsParEntrepot.isEmpty()) {
+            Map<Long, Long> disponibleParEntrepot = new HashMap<>();
+            long total = 0;
+            for (Map.Entry<CleStock, Long> e : compteurs.quantites(pieceId).entrySet()) {
+                if (e.getKey().type() == TypeStock.DISPONIBLE) {
+                    disponibleParEntrepot.merge(e.getKey().entrepotId(), e.getValue(), Long::sum);
+                    total += e.getValue();
+                }
+            }
+            Instant maintenant = Instant.now();
+            if (seuilGlobal != null && total < seuilGlobal) {
+                apres.put(null, alerte(pieceId, null, total, seuilGlobal, avant.get(null), maintenant));
+            }
+            for (Map.Entry<Long, Integer> s : seuilsParEntrepot.entrySet()) {
+                long quantite = disponibleParEntrepot.getOrDefault(s.getKey(), 0L);
+                if (quantite < s.getValue()) {
+                    apres.put(s.getKey(),
+                            alerte(pieceId, s.getKey(), quantite, s.getValue(), avant.get(s.getKey()), maintenant));
+                }
+            }
+        }
+
+        if (apres.isEmpty()) {
+            alertes.remove(pieceId);
+        } else {
+            alertes.put(pieceId, Collections.unmodifiableMap(apres));
+        }
+        avant.forEach((entrepotId, a) -> {
+            if (!apres.containsKey(entrepotId)) {
+                notifier(a, false);
+            }
+        });
+        apres.forEach((entrepotId, a) -> {
+            if (!avant.containsKey(entrepotId)) {
+                notifier(a, true);
+            }
+        });
+    }
+
+    private static AlerteStockDto alerte(Long pieceId, Long entrepotId, long quantite, int seuil,
+            AlerteStockDto precedente, Instant maintenant) {
+        return new AlerteStockDto(pieceId, entrepotId, quantite, seuil,
+                precedente != null ? precedente.depuis() : maintenant);
+    }
+
+    private void notifier(AlerteStockDto alerte, boolean ouverte) {
+        if (ouverte) {
+            log.warn("Stock bas : pièce {} {} à {} pour un seuil de {}", alerte.pieceId(),
+                    alerte.entrepotId() != null ? "dans l'entrepôt " + alerte.entrepotId() : "(tous entrepôts)",
+                    alerte.quantite(), alerte.seuilMinimum());
+        } else {
+            log.info("Fin d'alerte de stock : pièce {} entrepôt {}", alerte.pieceId(), alerte.entrepotId());
+        }
+        evenements.publishEvent(new AlerteStockEvent(alerte, ouverte));
+    }
+}
@@ -1,5 +1,7 @@
 package com.gestionStock.backend.service.piece;
 
+import com.gestionStock.backend.dto.piece.CategorieResume;
+import com.gestionStock.backend.dto.piece.PageCurseur;
 import com.gestionStock.backend.entity.piece.Categorie;
 import com.gestionStock.backend.repository.piece.CategorieRepository;
 import lombok.AllArgsConstructor;
@@ -19,6 +21,14 @@ public class CategorieService {
         return categorieRepo.findAll();
     }
 
+    public PageCurseur<CategorieResume> page(String curseur, int taille, boolean parNom) {
+        if (parNom) {
+            return PaginationCurseur.parTexte(curseur, taille, categorieRepo::findResumesApresNom,
+                    categorieRepo::findResumesSansNomApresId, CategorieResume::id, CategorieResume::nom);
+        }
+        return PaginationCurseur.parId(curseur, taille, categorieRepo::findResumesApresId, CategorieResume::id);
+    }
+
     public Categorie create(Categorie categorie) {
         if (categorie.getCode() == null || categorie.getCode().isEmpty()) {
             categorie.setCode("CAT_" + categorie.getNom().toUpperCase().replace(" ", "_"));
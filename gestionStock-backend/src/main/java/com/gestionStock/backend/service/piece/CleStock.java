@@ -0,0 +1,38 @@
+package com.gestionStock.backend.service.piece;
+
+import com.gestionStock.backend.entity.piece.MouvementStock;
+import com.gestionStock.backend.entity.piece.TypeMouvement;
+import com.gestionStock.backend.entity.piece.TypeStock;
+
+import java.util.Comparator;
+import java.util.function.BiConsumer;
+
+/**
+ * Identifie une ligne {@code Stock} : une pièce, un entrepôt, un type de stock.
+ */
+public record CleStock(Long pieceId, Long entrepotId, TypeStock type) {
+
+    /** Ordre stable utilisé pour verrouiller les lignes toujours dans le même sens. */
+    public static final Comparator<CleStock> ORDRE = Comparator.comparing(CleStock::pieceId)
+            .thenComparing(CleStock::entrepotId)
+            .thenComparing(CleStock::type);
+
+    /**
+     * Décompose un mouvement en variations signées par ligne de stock. Un
+     * transfert produit deux variations, les autres mouvements une seule.
+     */
+    public static void deltas(MouvementStock m, BiConsumer<CleStock, Integer> consommateur) {
+        Long pieceId = m.getPiece().getId();
+        CleStock source = new CleStock(pieceId, m.getEntrepot().getId(), m.getType());
+        TypeMouvement typeMouvement = m.getTypeMouvement();
+        switch (typeMouvement) {
+            case ENTREE, AJUSTEMENT -> consommateur.accept(source, m.getQuantite());
+            case SORTIE -> consommateur.accept(source, -m.getQuantite());
+            case TRANSFERT -> {
+                consommateur.accept(source, -m.getQuantite());
+                consommateur.accept(new CleStock(pieceId, m.getEntrepotDestination().getId(), m.getType()),
+                        m.getQuantite());
+            }
+        }
+    }
+}
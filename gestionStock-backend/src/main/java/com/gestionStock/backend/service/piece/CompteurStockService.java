@@ -0,0 +1,379 @@
+package com.gestionStock.backend.service.piece;
+
+import com.gestionStock.backend.entity.piece.CurseurProjection;
+import com.gestionStock.backend.entity.piece.MouvementStock;
+import com.gestionStock.backend.entity.piece.TypeStock;
+import com.gestionStock.backend.repository.piece.CurseurProjectionRepository;
+import com.gestionStock.backend.repository.piece.MouvementStockRepository;
+import com.gestionStock.backend.repository.piece.StockRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Quantités en stock tenues en mémoire, par (pièce, entrepôt, type).
+ * <p>
+ * Les compteurs d'une pièce sont lus ensemble depuis ses lignes {@code Stock}
+ * au premier accès, puis ne changent plus qu'au travers des mouvements appliqués
+ * ici : les lectures voient donc immédiatement les mouvements validés, sans
+ * attendre leur report en base. Les variations non reportées sont agrégées par
+ * clé et écrites périodiquement en un seul lot. Le curseur de projection
+ * garantit qu'après un arrêt brutal, les mouvements du journal non encore
+ * reportés sont rejoués.
+ * <p>
+ * Au plus {@code stock.compteurs.pieces-max} pièces restent en mémoire ; les
+ * moins utilisées sont évincées et relues en base au besoin. Une pièce qui porte
+ * des variations non reportées n'est jamais évincée : elle ne rejoint le cache
+ * qu'une fois ces variations écrites.
+ * <p>
+ * Suppose une seule instance applicative : c'est elle qui possède la projection.
+ * Le rejeu attend {@code MigrationStock}, pour ne lire que des lignes typées.
+ */
+@Slf4j
+@Service
+@DependsOn("migrationStock")
+public class CompteurStockService {
+
+    private static final class Compteur {
+        final LongAdder quantite = new LongAdder();
+        final LongAdder nonReporte = new LongAdder();
+
+        Compteur(long initiale) {
+            quantite.add(initiale);
+        }
+    }
+
+    /** Compteurs d'une pièce, un par ligne {@code Stock} existante ou créée par un mouvement. */
+    private static final class StockPiece {
+        final ConcurrentHashMap<CleStock, Compteur> compteurs = new ConcurrentHashMap<>();
+
+        boolean reportee() {
+            return compteurs.values().stream().allMatch(c -> c.nonReporte.sum() == 0);
+        }
+    }
+
+    private static final int TAILLE_CHARGEMENT = 1000;
+
+    private final StockRepository stockRepo;
+    private final MouvementStockRepository mouvementRepo;
+    private final CurseurProjectionRepository curseurRepo;
+    private final StockProjectionWriter projectionWriter;
+    private final ApplicationEventPublisher evenements;
+
+    /**
+     * Pièces sans variation en attente, ou en cours de lecture : la lecture est
+     * terminée une fois tous les compteurs de la pièce initialisés.
+     */
+    private final Cache<Long, CompletableFuture<StockPiece>> pieces;
+    /** Pièces dont des variations restent à reporter, retenues hors du cache jusque-là. */
+    private final ConcurrentHashMap<Long, StockPiece> nonReportees = new ConcurrentHashMap<>();
+
+    /**
+     * Les applications de mouvements prennent le verrou en lecture (elles ne
+     * s'excluent pas entre elles) ; le report le prend en écriture, le temps de
+     * relever les variations, pour que le curseur corresponde exactement à ce qui
+     * est écrit, puis le temps de rendre au cache les pièces reportées.
+     */
+    private final ReentrantReadWriteLock verrou = new ReentrantReadWriteLock();
+    private final AtomicLong dernierMouvementApplique = new AtomicLong();
+    private volatile long dernierMouvementReporte;
+
+    public CompteurStockService(StockRepository stockRepo, MouvementStockRepository mouvementRepo,
+            CurseurProjectionRepository curseurRepo, StockProjectionWriter projectionWriter,
+            ApplicationEventPublisher evenements, MeterRegistry registry,
+            @Value("${stock.compteurs.pieces-max:100000}") long piecesMax) {
+        this.stockRepo = stockRepo;
+        this.mouvementRepo = mouvementRepo;
+        this.curseurRepo = curseurRepo;
+        this.projectionWriter = projectionWriter;
+        this.evenements = evenements;
+        this.pieces = Caffeine.newBuilder()
+                .maximumSize(piecesMax)
+                // Éviction sur le thread appelant : sans écouteur, elle ne coûte presque rien.
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, pieces, "stock.compteurs");
+    }
+
+    @PostConstruct
+    void rejouer() {
+        CurseurProjection curseur = curseurRepo.findById(StockProjectionWriter.CURSEUR_STOCK).orElse(null);
+        if (curseur == null) {
+            // Première initialisation : le journal existant est déjà reflété dans Stock.
+            curseur = curseurRepo.save(
+                    new CurseurProjection(StockProjectionWriter.CURSEUR_STOCK, mouvementRepo.findDernierId()));
+        }
+        dernierMouvementApplique.set(curseur.getDernierMouvementId());
+        dernierMouvementReporte = curseur.getDernierMouvementId();
+
+        List<MouvementStock> nonReportes = mouvementRepo.findByIdGreaterThanOrderByIdAsc(curseur.getDernierMouvementId());
+        if (!nonReportes.isEmpty()) {
+            log.info("Rejeu de {} mouvements non reportés dans Stock", nonReportes.size());
+            appliquer(nonReportes);
+        }
+    }
+
+    /**
+     * Applique des mouvements validés en base, dans l'ordre de leurs identifiants,
+     * puis publie {@link StockModifie} pour les pièces touchées.
+     */
+    public void appliquer(List<MouvementStock> mouvements) {
+        Set<Long> touchees = new HashSet<>();
+        verrou.readLock().lock();
+        try {
+            long max = 0;
+            for (MouvementStock m : mouvements) {
+                CleStock.deltas(m, (cle, delta) -> {
+                    // Sans ligne Stock à la lecture de la pièce, la quantité de départ est nulle.
+                    Compteur c = aReporter(cle.pieceId()).compteurs.computeIfAbsent(cle, k -> new Compteur(0));
+                    c.quantite.add(delta);
+                    c.nonReporte.add(delta);
+                    touchees.add(cle.pieceId());
+                });
+                max = Math.max(max, m.getId());
+            }
+            // Des appels simultanés ne doivent pas faire reculer le curseur.
+            dernierMouvementApplique.accumulateAndGet(max, Math::max);
+        } finally {
+            verrou.readLock().unlock();
+        }
+        if (!touchees.isEmpty()) {
+            evenements.publishEvent(new StockModifie(touchees));
+        }
+    }
+
+    /** Quantité d'une ligne de stock ; une ligne inconnue vaut zéro et ne crée pas de compteur. */
+    public long quantite(Long pieceId, Long entrepotId, TypeStock type) {
+        Compteur c = piece(pieceId).compteurs.get(new CleStock(pieceId, entrepotId, type));
+        return c != null ? c.quantite.sum() : 0;
+    }
+
+    /** Toutes les quantités connues d'une pièce, chargées depuis la base au premier appel. */
+    public Map<CleStock, Long> quantites(Long pieceId) {
+        Map<CleStock, Long> resultat = new HashMap<>();
+        piece(pieceId).compteurs.forEach((cle, c) -> resultat.put(cle, c.quantite.sum()));
+        return resultat;
+    }
+
+    /**
+     * Quantité {@code DISPONIBLE} de chaque pièce, tous entrepôts confondus, sans
+     * mettre ces pièces en cache : total lu en base, sauf pour les pièces aux
+     * variations non reportées, dont les compteurs font foi. Une pièce retenue
+     * avant ou après la requête est lue en mémoire : son report a pu être écrit
+     * pendant la requête, qui l'aurait alors manqué.
+     */
+    public Map<Long, Long> disponibles(Collection<Long> pieceIds) {
+        Map<Long, StockPiece> retenues = new HashMap<>();
+        for (Long id : pieceIds) {
+            StockPiece piece = nonReportees.get(id);
+            if (piece != null) {
+                retenues.put(id, piece);
+            }
+        }
+        Map<Long, Long> totaux = new HashMap<>();
+        for (Object[] ligne : stockRepo.findTotauxParPieces(pieceIds, TypeStock.DISPONIBLE)) {
+            totaux.put((Long) ligne[0], ((Number) ligne[1]).longValue());
+        }
+        for (Long id : pieceIds) {
+            StockPiece piece = retenues.getOrDefault(id, nonReportees.get(id));
+            if (piece != null) {
+                totaux.put(id, piece.compteurs.entrySet().stream()
+                        .filter(e -> e.getKey().type() == TypeStock.DISPONIBLE)
+                        .mapToLong(e -> e.getValue().quantite.sum()).sum());
+            }
+        }
+        return totaux;
+    }
+
+    /**
+     * Précharge en quelques requêtes les compteurs de nombreuses pièces, avant des
+     * appels à {@link #quantites}. Une pièce déjà en cours de lecture par un autre
+     * appel n'est pas relue : son chargement est attendu, pour ne jamais rendre
+     * une partie seulement de ses lignes.
+     */
+    public void charger(Collection<Long> pieceIds) {
+        lire(pieceIds);
+    }
+
+    @Scheduled(fixedDelayString = "${stock.compteurs.intervalle-report-ms:1000}")
+    public synchronized void reporter() {
+        Map<CleStock, Long> deltas = new HashMap<>();
+        long jusquA;
+        verrou.writeLock().lock();
+        try {
+            jusquA = dernierMouvementApplique.get();
+            for (StockPiece piece : nonReportees.values()) {
+                piece.compteurs.forEach((cle, c) -> {
+                    long delta = c.nonReporte.sumThenReset();
+                    if (delta != 0) {
+                        deltas.put(cle, delta);
+                    }
+                });
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+
+        if (!deltas.isEmpty() || jusquA != dernierMouvementReporte) {
+            try {
+                projectionWriter.ecrire(deltas, jusquA);
+                dernierMouvementReporte = jusquA;
+            } catch (RuntimeException e) {
+                log.error("Échec du report de {} variations de stock, nouvel essai au prochain cycle", deltas.size(), e);
+                verrou.readLock().lock();
+                try {
+                    deltas.forEach((cle, delta) -> nonReportees.get(cle.pieceId()).compteurs.get(cle).nonReporte.add(delta));
+                } finally {
+                    verrou.readLock().unlock();
+                }
+                return;
+            }
+        }
+        liberer();
+    }
+
+    @PreDestroy
+    public void arreter() {
+        reporter();
+    }
+
+    /**
+     * Repart du journal après un échec d'application, qui a pu laisser une
+     * partie d'un lot dans les compteurs : tout est oublié, puis les mouvements
+     * postérieurs au curseur de projection sont rejoués sur les lignes
+     * {@code Stock}. Le report est exclu le temps de l'opération : le curseur
+     * en base correspond alors exactement à ce que {@code Stock} reflète.
+     */
+    public synchronized void reconstruire() {
+        verrou.writeLock().lock();
+        try {
+            nonReportees.clear();
+            pieces.invalidateAll();
+            long curseur = curseurRepo.findById(StockProjectionWriter.CURSEUR_STOCK)
+                    .map(CurseurProjection::getDernierMouvementId).orElse(dernierMouvementReporte);
+            dernierMouvementApplique.set(curseur);
+            dernierMouvementReporte = curseur;
+            List<MouvementStock> nonReportes = mouvementRepo.findByIdGreaterThanOrderByIdAsc(curseur);
+            log.warn("Reconstruction des compteurs de stock : {} mouvements rejoués", nonReportes.size());
+            // Le verrou en lecture pris par appliquer() reste accessible au détenteur du verrou en écriture.
+            appliquer(nonReportes);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /** Rend au cache les pièces sans variation en attente : {@code Stock} les reflète à nouveau. */
+    private void liberer() {
+        verrou.writeLock().lock();
+        try {
+            for (Map.Entry<Long, StockPiece> e : List.copyOf(nonReportees.entrySet())) {
+                if (e.getValue().reportee()) {
+                    nonReportees.remove(e.getKey());
+                    pieces.put(e.getKey(), CompletableFuture.completedFuture(e.getValue()));
+                }
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /** Pièce retenue jusqu'au report de ses variations. Appelé sous le verrou en lecture. */
+    private StockPiece aReporter(Long pieceId) {
+        StockPiece piece = nonReportees.get(pieceId);
+        if (piece != null) {
+            return piece;
+        }
+        StockPiece lue = lire(List.of(pieceId)).get(pieceId);
+        // Deux appels peuvent lire deux copies si la pièce est évincée entre-temps : la première retenue l'emporte.
+        return Objects.requireNonNullElse(nonReportees.putIfAbsent(pieceId, lue), lue);
+    }
+
+    private StockPiece piece(Long pieceId) {
+        StockPiece piece = nonReportees.get(pieceId);
+        return piece != null ? piece : lire(List.of(pieceId)).get(pieceId);
+    }
+
+    /**
+     * Compteurs de ces pièces, lus en base pour celles qui ne sont pas en mémoire.
+     * La lecture se fait hors de tout calcul atomique du cache, qui bloquerait
+     * sinon d'autres pièces le temps de la requête. La ligne {@code Stock} ne
+     * change pas entre-temps : seul le report y écrit, et il ne reporte que des
+     * pièces retenues dans {@code nonReportees}.
+     */
+    private Map<Long, StockPiece> lire(Collection<Long> pieceIds) {
+        Map<Long, StockPiece> lues = new HashMap<>();
+        List<Long> aLire = new ArrayList<>();
+        Map<Long, CompletableFuture<StockPiece>> lectures = new HashMap<>();
+        Map<Long, CompletableFuture<StockPiece>> autres = new HashMap<>();
+        for (Long id : pieceIds) {
+            StockPiece retenue = nonReportees.get(id);
+            if (retenue != null) {
+                lues.put(id, retenue);
+                continue;
+            }
+            CompletableFuture<StockPiece> lecture = new CompletableFuture<>();
+            CompletableFuture<StockPiece> existante = pieces.asMap().putIfAbsent(id, lecture);
+            if (existante == null) {
+                aLire.add(id);
+                lectures.put(id, lecture);
+            } else {
+                autres.put(id, existante);
+            }
+        }
+        try {
+            for (int debut = 0; debut < aLire.size(); debut += TAILLE_CHARGEMENT) {
+                List<Long> tranche = aLire.subList(debut, Math.min(debut + TAILLE_CHARGEMENT, aLire.size()));
+                Map<Long, StockPiece> nouvelles = new HashMap<>();
+                tranche.forEach(id -> nouvelles.put(id, new StockPiece()));
+                for (Object[] ligne : stockRepo.findQuantitesParPieces(tranche)) {
+                    CleStock cle = new CleStock((Long) ligne[0], (Long) ligne[1], (TypeStock) ligne[2]);
+                    nouvelles.get(cle.pieceId()).compteurs.put(cle, new Compteur(((Number) ligne[3]).longValue()));
+                }
+                nouvelles.forEach((id, piece) -> {
+                    lectures.remove(id).complete(piece);
+                    lues.put(id, piece);
+                });
+            }
+        } catch (RuntimeException e) {
+            // Les pièces non lues pourront l'être par un prochain appel.
+            lectures.forEach((id, lecture) -> {
+                pieces.asMap().remove(id, lecture);
+                lecture.completeExceptionally(e);
+            });
+            throw e;
+        }
+        autres.forEach((id, lecture) -> {
+            try {
+                lues.put(id, lecture.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        });
+        return lues;
+    }
+}
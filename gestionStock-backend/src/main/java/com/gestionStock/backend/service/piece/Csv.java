@@ -0,0 +1,64 @@
+package com.gestionStock.backend.service.piece;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lecture et écriture CSV ligne à ligne (RFC 4180, sans champ multi-lignes).
+ * Le séparateur est la virgule ou le point-virgule des exports Excel français.
+ */
+final class Csv {
+
+    private Csv() {
+    }
+
+    static char detecterSeparateur(String entete) {
+        return entete.indexOf(';') >= 0 && entete.indexOf(',') < 0 ? ';' : ',';
+    }
+
+    static List<String> decouper(String ligne, char separateur) {
+        List<String> champs = new ArrayList<>();
+        StringBuilder champ = new StringBuilder();
+        boolean entreGuillemets = false;
+        for (int i = 0; i < ligne.length(); i++) {
+            char c = ligne.charAt(i);
+            if (entreGuillemets) {
+                if (c == '"') {
+                    if (i + 1 < ligne.length() && ligne.charAt(i + 1) == '"') {
+                        champ.append('"');
+                        i++;
+                    } else {
+                        entreGuillemets = false;
+                    }
+                } else {
+                    champ.append(c);
+                }
+            } else if (c == '"') {
+                entreGuillemets = true;
+            } else if (c == separateur) {
+                champs.add(champ.toString().trim());
+                champ.setLength(0);
+            } else {
+                champ.append(c);
+            }
+        }
+        if (entreGuillemets) {
+            throw new IllegalArgumentException("Guillemet non fermé");
+        }
+        champs.add(champ.toString().trim());
+        return champs;
+    }
+
+    static void ecrire(StringBuilder sortie, String valeur, char separateur) {
+        if (valeur == null) {
+            return;
+        }
+        boolean aProteger = valeur.indexOf(separateur) >= 0 || valeur.indexOf('"') >= 0
+                || valeur.indexOf('\n') >= 0 || valeur.indexOf('\r') >= 0;
+        if (!aProteger) {
+            sortie.append(valeur);
+            return;
+        }
+        sortie.append('"').append(valeur.replace("\"", "\"\"")).append('"');
+    }
+}
@@ -0,0 +1,15 @@
+package com.gestionStock.backend.service.piece;
+
+import com.gestionStock.backend.dto.piece.MouvementStockDto;
+import com.gestionStock.backend.dto.piece.MouvementStockRequest;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Mouvement accepté mais pas encore écrit. Le futur est complété une fois le lot
+ * qui le contient validé en base.
+ */
+record MouvementEnAttente(MouvementStockRequest demande, String auteur, Instant date,
+        CompletableFuture<MouvementStockDto> resultat) {
+}
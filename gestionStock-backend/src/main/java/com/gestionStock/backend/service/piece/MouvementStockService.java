@@ -0,0 +1,199 @@
+package com.gestionStock.backend.service.piece;
+
+import com.gestionStock.backend.dto.piece.MouvementStockDto;
+import com.gestionStock.backend.dto.piece.MouvementStockRequest;
+import com.gestionStock.backend.entity.piece.MouvementStock;
+import com.gestionStock.backend.entity.piece.TypeMouvement;
+import com.gestionStock.backend.repository.piece.EntrepotRepository;
+import com.gestionStock.backend.repository.piece.MouvementStockRepository;
+import com.gestionStock.backend.repository.piece.PieceDetacheeRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point d'entrée du journal des mouvements. Les mouvements reçus sont placés
+ * dans une file bornée puis écrits par lots (validation de groupe) : l'appelant
+ * obtient un futur complété quand son mouvement est réellement en base.
+ */
+@Slf4j
+@Service
+public class MouvementStockService {
+
+    private final BlockingQueue<List<MouvementEnAttente>> file;
+    private final MouvementStockWriter writer;
+    private final CompteurStockService compteurs;
+    private final MouvementStockRepository mouvementRepo;
+    private final PieceDetacheeRepository pieceRepo;
+    private final EntrepotRepository entrepotRepo;
+    private final int tailleLot;
+    private final long attenteMaxMs;
+
+    public MouvementStockService(MouvementStockWriter writer, CompteurStockService compteurs,
+            MouvementStockRepository mouvementRepo,
+            PieceDetacheeRepository pieceRepo, EntrepotRepository entrepotRepo,
+            @Value("${stock.mouvements.capacite-file:10000}") int capaciteFile,
+            @Value("${stock.mouvements.taille-lot:500}") int tailleLot,
+            @Value("${stock.mouvements.attente-max-ms:2000}") long attenteMaxMs) {
+        this.file = new ArrayBlockingQueue<>(capaciteFile);
+        this.writer = writer;
+        this.compteurs = compteurs;
+        this.mouvementRepo = mouvementRepo;
+        this.pieceRepo = pieceRepo;
+        this.entrepotRepo = entrepotRepo;
+        this.tailleLot = tailleLot;
+        this.attenteMaxMs = attenteMaxMs;
+    }
+
+    /**
+     * Accepte un ensemble de mouvements. Ils sont mis en file en une seule fois :
+     * soit tous sont acceptés, soit aucun (file saturée).
+     */
+    public CompletableFuture<List<MouvementStockDto>> enregistrer(List<MouvementStockRequest> demandes,
+            String auteur) {
+        if (demandes == null || demandes.isEmpty()) {
+            throw new IllegalArgumentException("Aucun mouvement à enregistrer");
+        }
+        demandes.forEach(this::valider);
+
+        Instant maintenant = Instant.now();
+        List<MouvementEnAttente> enAttente = new ArrayList<>(demandes.size());
+        for (MouvementStockRequest demande : demandes) {
+            enAttente.add(new MouvementEnAttente(demande, auteur, maintenant, new CompletableFuture<>()));
+        }
+
+        try {
+            if (!file.offer(enAttente, attenteMaxMs, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("File des mouvements saturée, réessayez plus tard");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Enregistrement des mouvements interrompu", e);
+        }
+
+        CompletableFuture<?>[] futurs = enAttente.stream().map(MouvementEnAttente::resultat)
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futurs)
+                .thenApply(v -> enAttente.stream().map(m -> m.resultat().join()).toList());
+    }
+
+    public List<MouvementStockDto> historique(Long pieceId, Long avantId, int taille) {
+        long borne = avantId != null ? avantId : Long.MAX_VALUE;
+        return mouvementRepo.findByPiece_IdAndIdLessThanOrderByIdDesc(pieceId, borne, Limit.of(taille)).stream()
+                .map(MouvementStockDto::de)
+                .toList();
+    }
+
+    @Scheduled(fixedDelayString = "${stock.mouvements.intervalle-ms:50}")
+    public synchronized void vider() {
+        List<MouvementEnAttente> lot = new ArrayList<>(tailleLot);
+        while (true) {
+            while (lot.size() < tailleLot) {
+                List<MouvementEnAttente> demande = file.poll();
+                if (demande == null) {
+                    break;
+                }
+                lot.addAll(demande);
+            }
+            if (lot.isEmpty()) {
+                return;
+            }
+            traiter(lot);
+            lot.clear();
+        }
+    }
+
+    @PreDestroy
+    public void arreter() {
+        vider();
+    }
+
+    private void traiter(List<MouvementEnAttente> lot) {
+        Set<Long> pieceIds = new HashSet<>();
+        Set<Long> entrepotIds = new HashSet<>();
+        for (MouvementEnAttente m : lot) {
+            pieceIds.add(m.demande().pieceId());
+            entrepotIds.add(m.demande().entrepotId());
+            if (m.demande().entrepotDestinationId() != null) {
+                entrepotIds.add(m.demande().entrepotDestinationId());
+            }
+        }
+        Set<Long> piecesConnues = pieceRepo.findIdsExistants(pieceIds);
+        Set<Long> entrepotsConnus = entrepotRepo.findIdsExistants(entrepotIds);
+
+        List<MouvementEnAttente> valides = new ArrayList<>(lot.size());
+        for (MouvementEnAttente m : lot) {
+            MouvementStockRequest d = m.demande();
+            if (!piecesConnues.contains(d.pieceId())) {
+                m.resultat().completeExceptionally(
+                        new IllegalArgumentException("Pièce non trouvée avec l'id : " + d.pieceId()));
+            } else if (!entrepotsConnus.contains(d.entrepotId()) || (d.entrepotDestinationId() != null
+                    && !entrepotsConnus.contains(d.entrepotDestinationId()))) {
+                m.resultat().completeExceptionally(new IllegalArgumentException("Entrepot non trouvé"));
+            } else {
+                valides.add(m);
+            }
+        }
+        if (valides.isEmpty()) {
+            return;
+        }
+
+        List<MouvementStock> enregistres;
+        try {
+            enregistres = writer.ecrireLot(valides);
+        } catch (RuntimeException e) {
+            log.error("Échec de l'écriture d'un lot de {} mouvements", valides.size(), e);
+            valides.forEach(m -> m.resultat().completeExceptionally(e));
+            return;
+        }
+
+        // Le lot est validé : les mouvements sont acquis, même si les compteurs ne les reflètent pas encore.
+        try {
+            compteurs.appliquer(enregistres);
+        } catch (RuntimeException e) {
+            log.error("Échec de l'application de {} mouvements aux compteurs, reconstruction depuis le journal",
+                    enregistres.size(), e);
+            try {
+                compteurs.reconstruire();
+            } catch (RuntimeException echec) {
+                log.error("Échec de la reconstruction des compteurs de stock", echec);
+            }
+        }
+        for (int i = 0; i < valides.size(); i++) {
+            valides.get(i).resultat().complete(MouvementStockDto.de(enregistres.get(i)));
+        }
+    }
+
+    private void valider(MouvementStockRequest d) {
+        if (d.typeMouvement() == null || d.pieceId() == null || d.entrepotId() == null) {
+            throw new IllegalArgumentException("Type de mouvement, pièce et entrepôt sont obligatoires");
+        }
+        if (d.typeMouvement() == TypeMouvement.AJUSTEMENT) {
+            if (d.quantite() == 0) {
+                throw new IllegalArgumentException("Un ajustement doit avoir une quantité non nulle");
+            }
+        } else if (d.quantite() <= 0) {
+            throw new IllegalArgumentException("La quantité doit être strictement positive");
+        }
+        if (d.typeMouvement() == TypeMouvement.TRANSFERT) {
+            if (d.entrepotDestinationId() == null || d.entrepotDestinationId().equals(d.entrepotId())) {
+                throw new IllegalArgumentException("Un transfert exige un entrepôt de destination différent");
+            }
+        } else if (d.entrepotDestinationId() != null) {
+            throw new IllegalArgumentException("Seul un transfert peut avoir un entrepôt de destination");
+        }
+    }
+}
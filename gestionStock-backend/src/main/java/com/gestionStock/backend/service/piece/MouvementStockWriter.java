@@ -0,0 +1,50 @@
+package com.gestionStock.backend.service.piece;
+
+import com.gestionStock.backend.entity.piece.MouvementStock;
+import com.gestionStock.backend.entity.piece.TypeStock;
+import com.gestionStock.backend.repository.piece.EntrepotRepository;
+import com.gestionStock.backend.repository.piece.MouvementStockRepository;
+import com.gestionStock.backend.repository.piece.PieceDetacheeRepository;
+import jakarta.transaction.Transactional;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Écrit un lot de mouvements dans une seule transaction, en une insertion
+ * groupée. Le report sur {@code Stock} est l'affaire de
+ * {@link CompteurStockService}.
+ */
+@Service
+@AllArgsConstructor
+@Transactional
+public class MouvementStockWriter {
+
+    private final MouvementStockRepository mouvementRepo;
+    private final PieceDetacheeRepository pieceRepo;
+    private final EntrepotRepository entrepotRepo;
+
+    public List<MouvementStock> ecrireLot(List<MouvementEnAttente> lot) {
+        List<MouvementStock> mouvements = new ArrayList<>(lot.size());
+        for (MouvementEnAttente enAttente : lot) {
+            var demande = enAttente.demande();
+            MouvementStock m = new MouvementStock();
+            m.setTypeMouvement(demande.typeMouvement());
+            m.setPiece(pieceRepo.getReferenceById(demande.pieceId()));
+            m.setEntrepot(entrepotRepo.getReferenceById(demande.entrepotId()));
+            if (demande.entrepotDestinationId() != null) {
+                m.setEntrepotDestination(entrepotRepo.getReferenceById(demande.entrepotDestinationId()));
+            }
+            m.setType(demande.type() != null ? demande.type() : TypeStock.DISPONIBLE);
+            m.setQuantite(demande.quantite());
+            m.setAuteur(enAttente.auteur());
+            m.setCommentaire(demande.commentaire());
+            m.setDateMouvement(enAttente.date());
+            mouvements.add(m);
+        }
+
+        return mouvementRepo.saveAll(mouvements);
+    }
+}
@@ -0,0 +1,106 @@
+package com.gestionStock.backend.service.piece;
+
+import com.gestionStock.backend.dto.piece.PageCurseur;
+import org.springframework.data.domain.Limit;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Pagination par clé : chaque page reprend strictement après le dernier élément
+ * de la précédente, au lieu d'un décalage qui obligerait la base à relire toutes
+ * les lignes sautées. Le curseur transmis au client est opaque (base64) et
+ * encode le tri, la dernière clé lue et l'identifiant qui la départage.
+ * <p>
+ * Pour un tri sur un libellé nullable, les lignes sans libellé viennent en fin
+ * de parcours, triées par identifiant.
+ */
+final class PaginationCurseur {
+
+    static final int TAILLE_MAX = 500;
+
+    @FunctionalInterface
+    interface RequeteParId<T> {
+        List<T> page(Long apresId, Limit limite);
+    }
+
+    @FunctionalInterface
+    interface RequeteParTexte<T> {
+        List<T> page(String apresTexte, Long apresId, Limit limite);
+    }
+
+    private PaginationCurseur() {
+    }
+
+    static <T> PageCurseur<T> parId(String curseur, int taille, RequeteParId<T> requete, Function<T, Long> id) {
+        int n = borner(taille);
+        Position position = curseur == null ? new Position('i', 0L, null) : decoder(curseur);
+        if (position.phase() != 'i') {
+            throw new IllegalArgumentException("Curseur invalide pour un tri par identifiant");
+        }
+        List<T> lignes = requete.page(position.id(), Limit.of(n + 1));
+        return page(lignes, n, dernier -> encoder('i', id.apply(dernier), null));
+    }
+
+    static <T> PageCurseur<T> parTexte(String curseur, int taille, RequeteParTexte<T> avecTexte,
+            RequeteParId<T> sansTexte, Function<T, Long> id, Function<T, String> texte) {
+        int n = borner(taille);
+        Position position = curseur == null ? new Position('t', 0L, "") : decoder(curseur);
+
+        List<T> lignes;
+        if (position.phase() == 't') {
+            lignes = new ArrayList<>(avecTexte.page(position.texte(), position.id(), Limit.of(n + 1)));
+            if (lignes.size() <= n) {
+                lignes.addAll(sansTexte.page(0L, Limit.of(n + 1 - lignes.size())));
+            }
+        } else if (position.phase() == 'n') {
+            lignes = sansTexte.page(position.id(), Limit.of(n + 1));
+        } else {
+            throw new IllegalArgumentException("Curseur invalide pour un tri par libellé");
+        }
+
+        return page(lignes, n, dernier -> {
+            String t = texte.apply(dernier);
+            return t != null ? encoder('t', id.apply(dernier), t) : encoder('n', id.apply(dernier), null);
+        });
+    }
+
+    private static <T> PageCurseur<T> page(List<T> lignes, int n, Function<T, String> curseurApres) {
+        if (lignes.size() <= n) {
+            return new PageCurseur<>(lignes, null);
+        }
+        List<T> elements = lignes.subList(0, n);
+        return new PageCurseur<>(List.copyOf(elements), curseurApres.apply(elements.get(n - 1)));
+    }
+
+    private static int borner(int taille) {
+        return Math.min(Math.max(taille, 1), TAILLE_MAX);
+    }
+
+    private record Position(char phase, Long id, String texte) {
+    }
+
+    private static String encoder(char phase, Long id, String texte) {
+        String brut = phase + ":" + id + (texte != null ? ":" + texte : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(brut.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Position decoder(String curseur) {
+        try {
+            String brut = new String(Base64.getUrlDecoder().decode(curseur), StandardCharsets.UTF_8);
+            String[] parties = brut.split(":", 3);
+            char phase = parties[0].charAt(0);
+            Long id = Long.valueOf(parties[1]);
+            String texte = parties.length > 2 ? parties[2] : null;
+            if (phase == 't' && texte == null) {
+                throw new IllegalArgumentException("Curseur invalide");
+            }
+            return new Position(phase, id, texte);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Curseur invalide", e);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.gestionStock.backend.service.piece;
+
+import com.gestionStock.backend.dto.piece.LigneImportPiece;
+
+import java.util.Set;
+
+/** Ligne d'import validée, avec ses associations déjà résolues en identifiants. */
+record PieceAImporter(LigneImportPiece ligne, Long categorieId, Set<Long> produitIds) {
+}
@@ -0,0 +1,23 @@
+package com.gestionStock.backend.service.piece;
+
+import com.gestionStock.backend.entity.piece.PieceDetachee;
+
+/**
+ * Publié après création, modification ou archivage d'une pièce, pour les
+ * structures en mémoire qui dépendent de ses attributs (seuils, recherche,
+ * cache par code barre). {@code ancienCodeBarre} n'est renseigné que si la
+ * modification a changé le code barre.
+ */
+public record PieceDetacheeModifiee(Long id, String codeBarre, String ancienCodeBarre, String reference,
+        String designation, int seuilMinimum, boolean archivee) {
+
+    public static PieceDetacheeModifiee de(PieceDetachee p) {
+        return de(p, null);
+    }
+
+    public static PieceDetacheeModifiee de(PieceDetachee p, String codeBarreAvant) {
+        String ancien = codeBarreAvant != null && !codeBarreAvant.equals(p.getCodeBarre()) ? codeBarreAvant : null;
+        return new PieceDetacheeModifiee(p.getId(), p.getCodeBarre(), ancien, p.getReference(), p.getDesignation(),
+                p.getSeuilMinimum(), p.isArchivee());
+    }
+}
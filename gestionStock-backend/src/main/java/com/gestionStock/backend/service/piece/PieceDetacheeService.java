@@ -1,5 +1,7 @@
 package com.gestionStock.backend.service.piece;
 
+import com.gestionStock.backend.dto.piece.PageCurseur;
+import com.gestionStock.backend.dto.piece.PieceResume;
 import com.gestionStock.backend.entity.piece.PieceDetachee;
 import com.gestionStock.backend.entity.piece.Categorie;
 import com.gestionStock.backend.entity.piece.ProduitFini;
@@ -8,6 +10,7 @@ import com.gestionStock.backend.repository.piece.CategorieRepository;
 import com.gestionStock.backend.repository.piece.ProduitFiniRepository;
 import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.HashSet;
@@ -23,6 +26,7 @@ public class PieceDetacheeService {
     private final PieceDetacheeRepository pieceRepo;
     private final CategorieRepository categorieRepo;
     private final ProduitFiniRepository produitRepo;
+    private final ApplicationEventPublisher evenements;
 
     public List<PieceDetachee> getAll() {
         return pieceRepo.findAll();
@@ -32,6 +36,14 @@ public class PieceDetacheeService {
         return this.pieceRepo.findByArchivee(false);
     }
 
+    public PageCurseur<PieceResume> pageActives(String curseur, int taille, boolean parDesignation) {
+        if (parDesignation) {
+            return PaginationCurseur.parTexte(curseur, taille, pieceRepo::findResumesApresDesignation,
+                    pieceRepo::findResumesSansDesignationApresId, PieceResume::id, PieceResume::designation);
+        }
+        return PaginationCurseur.parId(curseur, taille, pieceRepo::findResumesApresId, PieceResume::id);
+    }
+
     public PieceDetachee addPiece(PieceDetachee piece) {
         if (this.pieceRepo.existsByCodeBarre(piece.getCodeBarre())) {
             throw new RuntimeException("Une pièce avec ce code barre existe déjà.");
@@ -47,15 +59,18 @@ public class PieceDetacheeService {
 
         PieceDetachee savedPiece = this.pieceRepo.save(piece);
         handleProductAssociations(savedPiece, produitsToAssociate);
+        evenements.publishEvent(PieceDetacheeModifiee.de(savedPiece));
 
         return savedPiece;
     }
 
     public PieceDetachee updateImageUrl(Long id, String imageUrl) {
-        return pieceRepo.findById(id)
+        return pieceRepo.findDetailById(id)
                 .map(p -> {
                     p.setImageUrl(imageUrl);
-                    return pieceRepo.save(p);
+                    PieceDetachee saved = pieceRepo.save(p);
+                    evenements.publishEvent(PieceDetacheeModifiee.de(saved));
+                    return saved;
                 })
                 .orElse(null);
     }
@@ -65,6 +80,7 @@ public class PieceDetacheeService {
         if (p != null) {
             p.setArchivee(true);
             this.pieceRepo.save(p);
+            evenements.publishEvent(PieceDetacheeModifiee.de(p));
         }
     }
 
@@ -72,6 +88,7 @@ public class PieceDetacheeService {
         PieceDetachee existingPiece = pieceRepo.findById(id).orElse(null);
         if (existingPiece == null)
             return null;
+        String ancienCodeBarre = existingPiece.getCodeBarre();
 
         piece.setId(id);
 
@@ -100,8 +117,9 @@ public class PieceDetacheeService {
 
         PieceDetachee savedPiece = pieceRepo.save(piece);
         handleProductAssociations(savedPiece, produitsToAssociate);
+        evenements.publishEvent(PieceDetacheeModifiee.de(savedPiece, ancienCodeBarre));
 
-        return pieceRepo.findById(id).orElse(savedPiece);
+        return pieceRepo.findDetailById(id).orElse(savedPiece);
     }
 
     private void handleCategory(PieceDetachee piece) {
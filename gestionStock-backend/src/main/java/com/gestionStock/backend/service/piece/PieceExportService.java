@@ -0,0 +1,117 @@
+package com.gestionStock.backend.service.piece;
+
+import com.gestionStock.backend.dto.piece.PieceExportLigne;
+import com.gestionStock.backend.repository.piece.PieceDetacheeRepository;
+import jakarta.transaction.Transactional;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Export du catalogue actif, écrit au fil de la lecture du curseur base : la
+ * mémoire utilisée ne dépend pas de la taille du catalogue. Les quantités sont
+ * lues par tranches de {@value #TAILLE_TRANCHE} pièces : totaux en base, plus
+ * les mouvements que les compteurs de stock n'y ont pas encore reportés. Le
+ * cache des compteurs n'est pas rempli par l'export.
+ */
+@Service
+@AllArgsConstructor
+@Transactional
+public class PieceExportService {
+
+    private static final String ENTETE_CSV = "id;codeBarre;reference;designation;prixVente;seuilMinimum;tauxTVA;"
+            + "categorieCode;categorieNom;quantiteTotale;produits";
+    private static final char SEPARATEUR = ';';
+    private static final int TAILLE_TRANCHE = 500;
+
+    private final PieceDetacheeRepository pieceRepo;
+    private final CompteurStockService compteurs;
+    private final ObjectMapper objectMapper;
+
+    public void exporterCsv(OutputStream sortie) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(sortie, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(ENTETE_CSV);
+        writer.write('\n');
+        StringBuilder ligne = new StringBuilder(256);
+        try {
+            parcourir(p -> {
+                ligne.setLength(0);
+                ligne.append(p.id()).append(SEPARATEUR);
+                Csv.ecrire(ligne, p.codeBarre(), SEPARATEUR);
+                ligne.append(SEPARATEUR);
+                Csv.ecrire(ligne, p.reference(), SEPARATEUR);
+                ligne.append(SEPARATEUR);
+                Csv.ecrire(ligne, p.designation(), SEPARATEUR);
+                ligne.append(SEPARATEUR).append(p.prixVente())
+                        .append(SEPARATEUR).append(p.seuilMinimum())
+                        .append(SEPARATEUR).append(p.tauxTVA()).append(SEPARATEUR);
+                Csv.ecrire(ligne, p.categorieCode(), SEPARATEUR);
+                ligne.append(SEPARATEUR);
+                Csv.ecrire(ligne, p.categorieNom(), SEPARATEUR);
+                ligne.append(SEPARATEUR).append(p.quantiteTotale()).append(SEPARATEUR);
+                Csv.ecrire(ligne, p.produits(), SEPARATEUR);
+                ligne.append('\n');
+                try {
+                    writer.append(ligne);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    public void exporterNdjson(OutputStream sortie) throws IOException {
+        OutputStream tampon = new BufferedOutputStream(sortie, 64 * 1024);
+        try {
+            parcourir(p -> {
+                try {
+                    tampon.write(objectMapper.writeValueAsBytes(p));
+                    tampon.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        tampon.flush();
+    }
+
+    private void parcourir(Consumer<PieceExportLigne> ecrire) {
+        List<PieceExportLigne> tranche = new ArrayList<>(TAILLE_TRANCHE);
+        try (Stream<PieceExportLigne> lignes = pieceRepo.streamExport()) {
+            lignes.forEach(p -> {
+                tranche.add(p);
+                if (tranche.size() == TAILLE_TRANCHE) {
+                    completer(tranche, ecrire);
+                }
+            });
+        }
+        completer(tranche, ecrire);
+    }
+
+    private void completer(List<PieceExportLigne> tranche, Consumer<PieceExportLigne> ecrire) {
+        Map<Long, Long> disponibles = compteurs.disponibles(tranche.stream().map(PieceExportLigne::id).toList());
+        for (PieceExportLigne p : tranche) {
+            ecrire.accept(p.avecQuantite(disponibles.getOrDefault(p.id(), 0L)));
+        }
+        tranche.clear();
+    }
+}
@@ -0,0 +1,281 @@
+package com.gestionStock.backend.service.piece;
+
+import com.gestionStock.backend.dto.piece.LigneImportPiece;
+import com.gestionStock.backend.dto.piece.ProduitResume;
+import com.gestionStock.backend.dto.piece.RapportImport;
+import com.gestionStock.backend.entity.piece.Categorie;
+import com.gestionStock.backend.repository.piece.CategorieRepository;
+import com.gestionStock.backend.repository.piece.PieceDetacheeRepository;
+import com.gestionStock.backend.repository.piece.ProduitFiniRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Import en masse de pièces détachées depuis un flux CSV ou NDJSON.
+ * <p>
+ * Le flux est lu ligne à ligne et traité par lots : pour chaque lot, les
+ * doublons sont cherchés dans le lot lui-même puis en base, en une requête par
+ * colonne unique. Les lots précédents étant déjà validés, la base couvre aussi
+ * les doublons d'un lot à l'autre : aucune clé n'est gardée en mémoire d'un lot
+ * au suivant. Catégories et produits sont résolus en une requête (puis gardés
+ * en cache pour la suite du fichier), et les insertions sont groupées. Chaque
+ * lot est validé dans sa propre transaction ; une ligne invalide est rapportée
+ * sans bloquer les autres.
+ */
+@Slf4j
+@Service
+public class PieceImportService {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private static final int ERREURS_DETAILLEES_MAX = 1000;
+
+    private final PieceDetacheeRepository pieceRepo;
+    private final CategorieRepository categorieRepo;
+    private final ProduitFiniRepository produitRepo;
+    private final PieceImportWriter writer;
+    private final ObjectMapper objectMapper;
+    private final int tailleLot;
+
+    public PieceImportService(PieceDetacheeRepository pieceRepo, CategorieRepository categorieRepo,
+            ProduitFiniRepository produitRepo, PieceImportWriter writer, ObjectMapper objectMapper,
+            @Value("${pieces.import.taille-lot:1000}") int tailleLot) {
+        this.pieceRepo = pieceRepo;
+        this.categorieRepo = categorieRepo;
+        this.produitRepo = produitRepo;
+        this.writer = writer;
+        this.objectMapper = objectMapper;
+        this.tailleLot = tailleLot;
+    }
+
+    private record LigneNumerotee(long numero, LigneImportPiece ligne) {
+    }
+
+    public RapportImport importer(InputStream flux, String contentType) throws IOException {
+        boolean ndjson = contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith(NDJSON);
+        Import session = new Import();
+
+        try (BufferedReader lecteur = new BufferedReader(new InputStreamReader(flux, StandardCharsets.UTF_8))) {
+            List<LigneNumerotee> lot = new ArrayList<>(tailleLot);
+            Map<String, Integer> colonnes = null;
+            char separateur = ',';
+            long numero = 0;
+            String brute;
+            while ((brute = lecteur.readLine()) != null) {
+                numero++;
+                if (brute.isBlank()) {
+                    continue;
+                }
+                if (!ndjson && colonnes == null) {
+                    separateur = Csv.detecterSeparateur(brute);
+                    colonnes = lireEntete(brute, separateur);
+                    continue;
+                }
+                session.lignesLues++;
+                try {
+                    LigneImportPiece ligne = ndjson ? objectMapper.readValue(brute, LigneImportPiece.class)
+                            : lireCsv(Csv.decouper(brute, separateur), colonnes);
+                    lot.add(new LigneNumerotee(numero, ligne));
+                } catch (RuntimeException e) {
+                    session.erreur(numero, "Ligne illisible: " + e.getMessage());
+                }
+                if (lot.size() >= tailleLot) {
+                    traiterLot(lot, session);
+                    lot.clear();
+                }
+            }
+            if (!lot.isEmpty()) {
+                traiterLot(lot, session);
+            }
+        }
+
+        log.info("Import de pièces terminé : {} lignes lues, {} importées, {} en erreur", session.lignesLues,
+                session.importees, session.nbErreurs);
+        return new RapportImport(session.lignesLues, session.importees, session.nbErreurs, session.erreurs);
+    }
+
+    private void traiterLot(List<LigneNumerotee> lot, Import session) {
+        Set<String> codes = new HashSet<>();
+        Set<String> references = new HashSet<>();
+        Set<String> categoriesInconnues = new HashSet<>();
+        Set<String> produitsInconnus = new HashSet<>();
+        for (LigneNumerotee l : lot) {
+            LigneImportPiece ligne = l.ligne();
+            if (ligne.codeBarre() != null) {
+                codes.add(ligne.codeBarre());
+            }
+            if (ligne.reference() != null) {
+                references.add(ligne.reference());
+            }
+            if (ligne.categorieCode() != null && !session.categories.containsKey(ligne.categorieCode())) {
+                categoriesInconnues.add(ligne.categorieCode());
+            }
+            if (ligne.produits() != null) {
+                for (String code : ligne.produits()) {
+                    if (!session.produits.containsKey(code)) {
+                        produitsInconnus.add(code);
+                    }
+                }
+            }
+        }
+
+        Set<String> codesExistants = codes.isEmpty() ? Set.of() : pieceRepo.findCodesBarreExistants(codes);
+        Set<String> referencesExistantes = references.isEmpty() ? Set.of()
+                : pieceRepo.findReferencesExistantes(references);
+        if (!categoriesInconnues.isEmpty()) {
+            for (Categorie c : categorieRepo.findByCodeIn(categoriesInconnues)) {
+                session.categories.put(c.getCode(), c.getId());
+            }
+        }
+        if (!produitsInconnus.isEmpty()) {
+            for (ProduitResume p : produitRepo.findResumesParCodes(produitsInconnus)) {
+                session.produits.put(p.code(), p.id());
+            }
+        }
+
+        Set<String> codesDuLot = new HashSet<>();
+        Set<String> referencesDuLot = new HashSet<>();
+        List<PieceAImporter> valides = new ArrayList<>(lot.size());
+        List<Long> numeros = new ArrayList<>(lot.size());
+        for (LigneNumerotee l : lot) {
+            String erreur = valider(l.ligne(), session, codesExistants, referencesExistantes, codesDuLot,
+                    referencesDuLot);
+            if (erreur != null) {
+                session.erreur(l.numero(), erreur);
+                continue;
+            }
+            LigneImportPiece ligne = l.ligne();
+            Set<Long> produitIds = new HashSet<>();
+            if (ligne.produits() != null) {
+                ligne.produits().forEach(code -> produitIds.add(session.produits.get(code)));
+            }
+            valides.add(new PieceAImporter(ligne,
+                    ligne.categorieCode() != null ? session.categories.get(ligne.categorieCode()) : null, produitIds));
+            numeros.add(l.numero());
+        }
+        if (valides.isEmpty()) {
+            return;
+        }
+
+        try {
+            writer.ecrire(valides);
+            session.importees += valides.size();
+        } catch (RuntimeException e) {
+            log.warn("Échec de l'insertion d'un lot d'import de {} pièces", valides.size(), e);
+            for (Long numero : numeros) {
+                session.erreur(numero, "Lot rejeté par la base: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Les clés d'une ligne valide sont ajoutées à {@code codesDuLot} et {@code referencesDuLot}. */
+    private String valider(LigneImportPiece ligne, Import session, Set<String> codesExistants,
+            Set<String> referencesExistantes, Set<String> codesDuLot, Set<String> referencesDuLot) {
+        if (ligne.codeBarre() == null || ligne.codeBarre().isBlank()) {
+            return "Code barre obligatoire";
+        }
+        if (codesExistants.contains(ligne.codeBarre()) || codesDuLot.contains(ligne.codeBarre())) {
+            return "Une pièce avec ce code barre existe déjà: " + ligne.codeBarre();
+        }
+        if (ligne.reference() != null
+                && (referencesExistantes.contains(ligne.reference()) || referencesDuLot.contains(ligne.reference()))) {
+            return "Une pièce avec cette référence existe déjà: " + ligne.reference();
+        }
+        String erreur = null;
+        if (ligne.categorieCode() != null && !session.categories.containsKey(ligne.categorieCode())) {
+            erreur = "Catégorie inconnue: " + ligne.categorieCode();
+        } else if (ligne.produits() != null) {
+            for (String code : ligne.produits()) {
+                if (!session.produits.containsKey(code)) {
+                    erreur = "Produit fini inconnu: " + code;
+                    break;
+                }
+            }
+        }
+        if (erreur == null) {
+            codesDuLot.add(ligne.codeBarre());
+            if (ligne.reference() != null) {
+                referencesDuLot.add(ligne.reference());
+            }
+        }
+        return erreur;
+    }
+
+    private static Map<String, Integer> lireEntete(String entete, char separateur) {
+        Map<String, Integer> colonnes = new HashMap<>();
+        List<String> noms = Csv.decouper(entete.startsWith("\uFEFF") ? entete.substring(1) : entete, separateur);
+        for (int i = 0; i < noms.size(); i++) {
+            colonnes.put(noms.get(i).toLowerCase(Locale.ROOT), i);
+        }
+        if (!colonnes.containsKey("codebarre")) {
+            throw new IllegalArgumentException("Colonne codeBarre absente de l'en-tête CSV");
+        }
+        return colonnes;
+    }
+
+    private static LigneImportPiece lireCsv(List<String> champs, Map<String, Integer> colonnes) {
+        String produits = champ(champs, colonnes, "produits");
+        String categorie = champ(champs, colonnes, "categoriecode");
+        return new LigneImportPiece(
+                champ(champs, colonnes, "codebarre"),
+                champ(champs, colonnes, "reference"),
+                champ(champs, colonnes, "designation"),
+                decimal(champ(champs, colonnes, "prixvente")),
+                entier(champ(champs, colonnes, "seuilminimum")),
+                decimal(champ(champs, colonnes, "tauxtva")),
+                categorie != null ? categorie : champ(champs, colonnes, "categorie"),
+                produits == null ? null
+                        : List.copyOf(new LinkedHashSet<>(Arrays.stream(produits.split("\\|"))
+                                .map(String::trim).filter(s -> !s.isEmpty()).toList())));
+    }
+
+    private static String champ(List<String> champs, Map<String, Integer> colonnes, String nom) {
+        Integer index = colonnes.get(nom);
+        if (index == null || index >= champs.size() || champs.get(index).isEmpty()) {
+            return null;
+        }
+        return champs.get(index);
+    }
+
+    private static Double decimal(String valeur) {
+        return valeur == null ? null : Double.valueOf(valeur.replace(',', '.'));
+    }
+
+    private static Integer entier(String valeur) {
+        return valeur == null ? null : Integer.valueOf(valeur);
+    }
+
+    /** État d'un import en cours : catégories et produits résolus, compteurs et erreurs. */
+    private static final class Import {
+        final Map<String, Long> categories = new HashMap<>();
+        final Map<String, Long> produits = new HashMap<>();
+        final List<RapportImport.Erreur> erreurs = new ArrayList<>();
+        long lignesLues;
+        long importees;
+        long nbErreurs;
+
+        void erreur(long ligne, String message) {
+            nbErreurs++;
+            if (erreurs.size() < ERREURS_DETAILLEES_MAX) {
+                erreurs.add(new RapportImport.Erreur(ligne, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.gestionStock.backend.service.piece;
+
+import com.gestionStock.backend.dto.piece.LigneImportPiece;
+import com.gestionStock.backend.entity.piece.PieceDetachee;
+import com.gestionStock.backend.repository.piece.CategorieRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Insère un lot de pièces importées dans une transaction : les pièces passent
+ * par les insertions groupées d'Hibernate, les associations aux produits finis
+ * par un lot JDBC direct sur la table de jointure.
+ */
+@Service
+@AllArgsConstructor
+@Transactional
+public class PieceImportWriter {
+
+    private static final String INSERT_ASSOCIATION = "INSERT INTO produit_fini_pieces (produits_associes_id, pieces_id) VALUES (?, ?)";
+
+    private final CategorieRepository categorieRepo;
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher evenements;
+
+    public List<PieceDetachee> ecrire(List<PieceAImporter> lot) {
+        List<PieceDetachee> pieces = new ArrayList<>(lot.size());
+        for (PieceAImporter aImporter : lot) {
+            LigneImportPiece ligne = aImporter.ligne();
+            PieceDetachee piece = new PieceDetachee();
+            piece.setCodeBarre(ligne.codeBarre());
+            piece.setReference(ligne.reference());
+            piece.setDesignation(ligne.designation());
+            piece.setPrixVente(ligne.prixVente() != null ? ligne.prixVente() : 0.0);
+            piece.setSeuilMinimum(ligne.seuilMinimum() != null ? ligne.seuilMinimum() : 0);
+            piece.setTauxTVA(ligne.tauxTVA() != null ? ligne.tauxTVA() : 0.0);
+            if (aImporter.categorieId() != null) {
+                piece.setCategorie(categorieRepo.getReferenceById(aImporter.categorieId()));
+            }
+            entityManager.persist(piece);
+            pieces.add(piece);
+        }
+        entityManager.flush();
+
+        List<Object[]> associations = new ArrayList<>();
+        for (int i = 0; i < lot.size(); i++) {
+            Long pieceId = pieces.get(i).getId();
+            for (Long produitId : lot.get(i).produitIds()) {
+                associations.add(new Object[] { produitId, pieceId });
+            }
+        }
+        if (!associations.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ASSOCIATION, associations);
+        }
+        pieces.forEach(p -> evenements.publishEvent(PieceDetacheeModifiee.de(p)));
+
+        // Libère le contexte de persistance : la mémoire reste constante quel que soit le volume importé.
+        entityManager.clear();
+        return pieces;
+    }
+}
@@ -0,0 +1,57 @@
+package com.gestionStock.backend.service.piece;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.gestionStock.backend.dto.piece.PieceResume;
+import com.gestionStock.backend.repository.piece.PieceDetacheeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Lecture d'une pièce par code barre (scan en réception), devant un cache
+ * local borné en taille et en durée de vie.
+ * <p>
+ * Les codes inconnus sont aussi mis en cache. Chaque création, modification,
+ * archivage ou changement d'image retire l'entrée du code concerné et, si le
+ * code barre de la pièce a changé, l'entrée de son ancien code. Le renommage
+ * d'une catégorie n'invalide rien : la durée de vie borne ce décalage.
+ * Les succès et échecs du cache sont publiés sous {@code cache.gets{cache=pieces.par-code}}.
+ */
+@Service
+public class PieceParCodeService {
+
+    private final PieceDetacheeRepository pieceRepo;
+    private final Cache<String, Optional<PieceResume>> cache;
+
+    public PieceParCodeService(PieceDetacheeRepository pieceRepo, MeterRegistry registry,
+            @Value("${pieces.cache-code.taille-max:10000}") long tailleMax,
+            @Value("${pieces.cache-code.duree-vie:10m}") Duration dureeVie) {
+        this.pieceRepo = pieceRepo;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(tailleMax)
+                .expireAfterWrite(dureeVie)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "pieces.par-code");
+    }
+
+    public Optional<PieceResume> parCode(String codeBarre) {
+        return cache.get(codeBarre, pieceRepo::findResumeByCodeBarre);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void surPieceModifiee(PieceDetacheeModifiee evenement) {
+        if (evenement.codeBarre() != null) {
+            cache.invalidate(evenement.codeBarre());
+        }
+        if (evenement.ancienCodeBarre() != null) {
+            cache.invalidate(evenement.ancienCodeBarre());
+        }
+    }
+}
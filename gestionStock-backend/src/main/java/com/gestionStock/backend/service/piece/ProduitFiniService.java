@@ -1,5 +1,7 @@
 package com.gestionStock.backend.service.piece;
 
+import com.gestionStock.backend.dto.piece.PageCurseur;
+import com.gestionStock.backend.dto.piece.ProduitResume;
 import com.gestionStock.backend.entity.piece.ProduitFini;
 import com.gestionStock.backend.repository.piece.ProduitFiniRepository;
 
@@ -21,6 +23,14 @@ public class ProduitFiniService {
         return produitRepo.findByEstArchiveeFalse();
     }
 
+    public PageCurseur<ProduitResume> pageActifs(String curseur, int taille, boolean parDesignation) {
+        if (parDesignation) {
+            return PaginationCurseur.parTexte(curseur, taille, produitRepo::findResumesApresDesignation,
+                    produitRepo::findResumesSansDesignationApresId, ProduitResume::id, ProduitResume::designation);
+        }
+        return PaginationCurseur.parId(curseur, taille, produitRepo::findResumesApresId, ProduitResume::id);
+    }
+
     public ProduitFini save(ProduitFini produit) {
         return produitRepo.save(produit);
     }
@@ -47,7 +57,7 @@ public class ProduitFiniService {
     }
 
     public ProduitFini updateImageUrl(Long id, String imageUrl) {
-        return produitRepo.findById(id)
+        return produitRepo.findDetailById(id)
                 .map(p -> {
                     p.setImageUrl(imageUrl);
                     return produitRepo.save(p);
@@ -0,0 +1,229 @@
+package com.gestionStock.backend.service.piece;
+
+import com.gestionStock.backend.dto.piece.PieceSuggestion;
+import com.gestionStock.backend.repository.piece.PieceDetacheeRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Index de recherche en mémoire sur la désignation, la référence et le code
+ * barre des pièces actives.
+ * <p>
+ * Chaque champ est normalisé (minuscules, sans accents) et découpé en mots ;
+ * l'index associe chaque mot aux pièces qui le contiennent, dans une table
+ * triée qui permet de retrouver tous les mots commençant par un préfixe. Une
+ * recherche part du mot saisi le plus long, puis vérifie les autres mots sur
+ * les candidats. L'index est tenu à jour à chaque création, modification ou
+ * archivage de pièce.
+ */
+@Slf4j
+@Service
+public class RecherchePieceService {
+
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATEURS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int LIMITE_MAX = 50;
+
+    private record Document(PieceSuggestion piece, String codeBarre, String reference, String designation,
+            Set<String> mots) {
+    }
+
+    private record Resultat(Document document, int score) {
+    }
+
+    private static final Comparator<Resultat> CLASSEMENT = Comparator.comparingInt(Resultat::score)
+            .thenComparingInt(r -> -longueur(r.document().designation()))
+            .thenComparingLong(r -> -r.document().piece().id());
+
+    private final PieceDetacheeRepository pieceRepo;
+    private final int candidatsMax;
+
+    private final ConcurrentSkipListMap<String, Set<Long>> index = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, Document> documents = new ConcurrentHashMap<>();
+
+    public RecherchePieceService(PieceDetacheeRepository pieceRepo,
+            @Value("${pieces.recherche.candidats-max:5000}") int candidatsMax) {
+        this.pieceRepo = pieceRepo;
+        this.candidatsMax = candidatsMax;
+    }
+
+    @PostConstruct
+    void indexer() {
+        for (Object[] ligne : pieceRepo.findTextesActifs()) {
+            indexer(new PieceSuggestion((Long) ligne[0], (String) ligne[1], (String) ligne[2], (String) ligne[3]));
+        }
+        log.info("Index de recherche : {} pièces, {} mots", documents.size(), index.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void surPieceModifiee(PieceDetacheeModifiee evenement) {
+        if (evenement.archivee()) {
+            retirer(evenement.id());
+        } else {
+            indexer(new PieceSuggestion(evenement.id(), evenement.codeBarre(), evenement.reference(),
+                    evenement.designation()));
+        }
+    }
+
+    /**
+     * Pièces dont chaque mot de la recherche préfixe un mot indexé, classées :
+     * code barre exact, référence exacte, code barre puis référence commençant
+     * par la saisie, désignation commençant par la saisie, puis le reste.
+     */
+    public List<PieceSuggestion> rechercher(String saisie, int limite) {
+        String requete = normaliser(saisie);
+        List<String> mots = decouper(requete);
+        if (mots.isEmpty()) {
+            return List.of();
+        }
+        int n = Math.min(Math.max(limite, 1), LIMITE_MAX);
+
+        String pivot = mots.get(0);
+        for (String mot : mots) {
+            if (mot.length() > pivot.length()) {
+                pivot = mot;
+            }
+        }
+
+        PriorityQueue<Resultat> meilleurs = new PriorityQueue<>(n + 1, CLASSEMENT);
+        Set<Long> vus = new HashSet<>();
+        int examines = 0;
+        for (Map.Entry<String, Set<Long>> entree : index.subMap(pivot, true, pivot + Character.MAX_VALUE, false)
+                .entrySet()) {
+            for (Long id : entree.getValue()) {
+                if (!vus.add(id)) {
+                    continue;
+                }
+                Document d = documents.get(id);
+                if (d == null || !correspond(d, mots)) {
+                    continue;
+                }
+                meilleurs.add(new Resultat(d, score(d, requete)));
+                if (meilleurs.size() > n) {
+                    meilleurs.poll();
+                }
+            }
+            examines += entree.getValue().size();
+            if (examines >= candidatsMax) {
+                break;
+            }
+        }
+
+        List<Resultat> tries = new ArrayList<>(meilleurs);
+        tries.sort(CLASSEMENT.reversed());
+        return tries.stream().map(r -> r.document().piece()).toList();
+    }
+
+    private synchronized void indexer(PieceSuggestion piece) {
+        retirer(piece.id());
+        String code = normaliser(piece.codeBarre());
+        String reference = normaliser(piece.reference());
+        String designation = normaliser(piece.designation());
+
+        Set<String> mots = new LinkedHashSet<>();
+        ajouterChamp(mots, code);
+        ajouterChamp(mots, reference);
+        mots.addAll(decouper(designation));
+
+        documents.put(piece.id(), new Document(piece, code, reference, designation, Set.copyOf(mots)));
+        for (String mot : mots) {
+            index.computeIfAbsent(mot, m -> ConcurrentHashMap.newKeySet()).add(piece.id());
+        }
+    }
+
+    private synchronized void retirer(Long id) {
+        Document ancien = documents.remove(id);
+        if (ancien == null) {
+            return;
+        }
+        for (String mot : ancien.mots()) {
+            index.computeIfPresent(mot, (m, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /** Un code se cherche aussi bien en entier que par ses segments (ex. « ab-12 », « ab », « 12 »). */
+    private static void ajouterChamp(Set<String> mots, String valeur) {
+        String compact = SEPARATEURS.matcher(valeur).replaceAll("");
+        if (!compact.isEmpty()) {
+            mots.add(compact);
+        }
+        mots.addAll(decouper(valeur));
+    }
+
+    private static boolean correspond(Document d, List<String> mots) {
+        for (String mot : mots) {
+            boolean trouve = false;
+            for (String indexe : d.mots()) {
+                if (indexe.startsWith(mot)) {
+                    trouve = true;
+                    break;
+                }
+            }
+            if (!trouve) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int score(Document d, String requete) {
+        if (d.codeBarre().equals(requete)) {
+            return 100;
+        }
+        if (d.reference().equals(requete)) {
+            return 90;
+        }
+        if (!d.codeBarre().isEmpty() && d.codeBarre().startsWith(requete)) {
+            return 80;
+        }
+        if (!d.reference().isEmpty() && d.reference().startsWith(requete)) {
+            return 70;
+        }
+        if (d.designation().startsWith(requete)) {
+            return 50;
+        }
+        return 30;
+    }
+
+    private static String normaliser(String valeur) {
+        if (valeur == null) {
+            return "";
+        }
+        String sansAccents = ACCENTS.matcher(Normalizer.normalize(valeur, Normalizer.Form.NFD)).replaceAll("");
+        return sansAccents.toLowerCase(Locale.ROOT).trim();
+    }
+
+    private static List<String> decouper(String valeur) {
+        List<String> mots = new ArrayList<>();
+        for (String mot : SEPARATEURS.split(valeur)) {
+            if (!mot.isEmpty()) {
+                mots.add(mot);
+            }
+        }
+        return mots;
+    }
+
+    private static int longueur(String valeur) {
+        return valeur == null ? 0 : valeur.length();
+    }
+}
@@ -0,0 +1,7 @@
+package com.gestionStock.backend.service.piece;
+
+import java.util.Set;
+
+/** Publié par les compteurs après application d'un lot de mouvements : pièces dont le stock a changé. */
+public record StockModifie(Set<Long> pieceIds) {
+}
@@ -0,0 +1,80 @@
+package com.gestionStock.backend.service.piece;
+
+import com.gestionStock.backend.entity.piece.CurseurProjection;
+import com.gestionStock.backend.entity.piece.Stock;
+import com.gestionStock.backend.repository.piece.CurseurProjectionRepository;
+import com.gestionStock.backend.repository.piece.EntrepotRepository;
+import com.gestionStock.backend.repository.piece.PieceDetacheeRepository;
+import com.gestionStock.backend.repository.piece.StockRepository;
+import jakarta.transaction.Transactional;
+import lombok.AllArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reporte des variations agrégées sur les lignes {@code Stock} et avance le
+ * curseur de projection dans la même transaction.
+ * <p>
+ * Les lignes existantes sont mises à jour par un lot JDBC ; celles qu'aucune
+ * mise à jour n'a touchées sont créées par Hibernate, qui tire leurs
+ * identifiants de {@code stock_seq} par plages comme pour toute entité. Seul
+ * {@link CompteurStockService#reporter()} écrit dans {@code Stock}, une fois à
+ * la fois : deux reports ne peuvent pas créer la même ligne.
+ */
+@Service
+@AllArgsConstructor
+@Transactional
+public class StockProjectionWriter {
+
+    static final String CURSEUR_STOCK = "stock";
+
+    private static final String UPDATE_STOCK = """
+            UPDATE stock SET quantite = quantite + ?
+            WHERE piece_detachee_id = ? AND entrepot_id = ? AND type = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CurseurProjectionRepository curseurRepo;
+    private final StockRepository stockRepo;
+    private final PieceDetacheeRepository pieceRepo;
+    private final EntrepotRepository entrepotRepo;
+
+    public void ecrire(Map<CleStock, Long> deltas, long dernierMouvementId) {
+        Map<CleStock, Long> ordonnes = new TreeMap<>(CleStock.ORDRE);
+        ordonnes.putAll(deltas);
+
+        List<CleStock> cles = new ArrayList<>(ordonnes.size());
+        List<Object[]> lignes = new ArrayList<>(ordonnes.size());
+        ordonnes.forEach((cle, delta) -> {
+            if (delta != 0) {
+                cles.add(cle);
+                lignes.add(new Object[] { delta, cle.pieceId(), cle.entrepotId(), cle.type().name() });
+            }
+        });
+        if (!lignes.isEmpty()) {
+            int[] modifiees = jdbcTemplate.batchUpdate(UPDATE_STOCK, lignes);
+            List<Stock> nouvelles = new ArrayList<>();
+            for (int i = 0; i < cles.size(); i++) {
+                if (modifiees[i] == 0) {
+                    nouvelles.add(nouvelle(cles.get(i), ordonnes.get(cles.get(i))));
+                }
+            }
+            stockRepo.saveAll(nouvelles);
+        }
+        curseurRepo.save(new CurseurProjection(CURSEUR_STOCK, dernierMouvementId));
+    }
+
+    private Stock nouvelle(CleStock cle, long quantite) {
+        Stock stock = new Stock();
+        stock.setPiece(pieceRepo.getReferenceById(cle.pieceId()));
+        stock.setEntrepot(entrepotRepo.getReferenceById(cle.entrepotId()));
+        stock.setType(cle.type());
+        stock.setQuantite(Math.toIntExact(quantite));
+        return stock;
+    }
+}
@@ -0,0 +1,170 @@
+package com.gestionStock.backend.service.user;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Jeton d'accès à l'API d'administration de Keycloak.
+ * <p>
+ * Le jeton est renouvelé avant son expiration : passé {@code expires_in} moins
+ * {@code keycloak.admin.jeton.marge}, l'appelant reçoit encore le jeton courant
+ * et le renouvellement part en arrière-plan, avec le refresh token tant qu'il
+ * est valide, sinon avec les identifiants. Les demandes simultanées partagent
+ * un seul appel à Keycloak. Métriques :
+ * {@code keycloak.admin.jeton{type=rafraichissement|identifiants, resultat=succes|echec}}.
+ */
+@Slf4j
+@Component
+public class JetonAdminKeycloak {
+
+	private record Jeton(String acces, Instant expiration, String rafraichissement, Instant finRafraichissement) {
+	}
+
+	private final WebClient webClient;
+	private final String tokenUrl;
+	private final String clientId;
+	private final String username;
+	private final String password;
+	private final Duration marge;
+	private final MeterRegistry registry;
+
+	private volatile Jeton courant;
+	private final AtomicReference<CompletableFuture<Jeton>> enCours = new AtomicReference<>();
+
+	public JetonAdminKeycloak(WebClient.Builder webClientBuilder,
+			@Value("${keycloak.admin.server-url}") String serverUrl,
+			@Value("${keycloak.admin.realm}") String realm,
+			@Value("${keycloak.admin.client-id}") String clientId,
+			@Value("${keycloak.admin.username}") String username,
+			@Value("${keycloak.admin.password}") String password,
+			@Value("${keycloak.admin.jeton.marge:30s}") Duration marge,
+			MeterRegistry registry) {
+		this.webClient = webClientBuilder.build();
+		this.tokenUrl = serverUrl + "/realms/" + realm + "/protocol/openid-connect/token";
+		this.clientId = clientId;
+		this.username = username;
+		this.password = password;
+		this.marge = marge;
+		this.registry = registry;
+	}
+
+	public Mono<String> jeton() {
+		Jeton j = courant;
+		Instant maintenant = Instant.now();
+		if (j != null && maintenant.isBefore(j.expiration().minus(marge))) {
+			return Mono.just(j.acces());
+		}
+		CompletableFuture<Jeton> renouvellement = renouveler(j);
+		if (j != null && maintenant.isBefore(j.expiration())) {
+			return Mono.just(j.acces());
+		}
+		return Mono.fromFuture(renouvellement, true).map(Jeton::acces);
+	}
+
+	/** Pour les appels encore bloquants : n'attend que si aucun jeton valide n'est disponible. */
+	public String jetonBloquant() {
+		return jeton().block();
+	}
+
+	/** Oublie le jeton {@code acces} refusé par Keycloak ; un jeton plus récent est conservé. */
+	public void invalider(String acces) {
+		Jeton j = courant;
+		if (j != null && j.acces().equals(acces)) {
+			courant = null;
+		}
+	}
+
+	private CompletableFuture<Jeton> renouveler(Jeton ancien) {
+		CompletableFuture<Jeton> attente = new CompletableFuture<>();
+		CompletableFuture<Jeton> existant = enCours.compareAndExchange(null, attente);
+		if (existant != null) {
+			return existant;
+		}
+		obtenir(ancien).subscribe(j -> {
+			courant = j;
+			enCours.set(null);
+			attente.complete(j);
+		}, e -> {
+			log.warn("Impossible d'obtenir un jeton d'administration Keycloak : {}", e.getMessage());
+			enCours.set(null);
+			attente.completeExceptionally(e);
+		});
+		return attente;
+	}
+
+	private Mono<Jeton> obtenir(Jeton ancien) {
+		if (ancien != null && ancien.rafraichissement() != null
+				&& Instant.now().isBefore(ancien.finRafraichissement())) {
+			MultiValueMap<String, String> formulaire = new LinkedMultiValueMap<>();
+			formulaire.add("grant_type", "refresh_token");
+			formulaire.add("client_id", clientId);
+			formulaire.add("refresh_token", ancien.rafraichissement());
+			return demander("rafraichissement", formulaire).onErrorResume(e -> {
+				log.debug("Refresh token admin refusé, nouvelle connexion : {}", e.getMessage());
+				return parIdentifiants();
+			});
+		}
+		return parIdentifiants();
+	}
+
+	private Mono<Jeton> parIdentifiants() {
+		MultiValueMap<String, String> formulaire = new LinkedMultiValueMap<>();
+		formulaire.add("grant_type", "password");
+		formulaire.add("client_id", clientId);
+		formulaire.add("username", username);
+		formulaire.add("password", password);
+		return demander("identifiants", formulaire);
+	}
+
+	private Mono<Jeton> demander(String type, MultiValueMap<String, String> formulaire) {
+		return Mono.defer(() -> {
+			long debut = System.nanoTime();
+			return webClient.post().uri(tokenUrl)
+					.contentType(MediaType.APPLICATION_FORM_URLENCODED).body(BodyInserters.fromFormData(formulaire))
+					.retrieve()
+					.bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {
+					})
+					.map(JetonAdminKeycloak::lire)
+					.doOnSuccess(j -> mesurer(type, "succes", debut))
+					.doOnError(e -> mesurer(type, "echec", debut));
+		});
+	}
+
+	private void mesurer(String type, String resultat, long debut) {
+		Timer.builder("keycloak.admin.jeton").tag("type", type).tag("resultat", resultat).register(registry)
+				.record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+	}
+
+	private static Jeton lire(Map<String, Object> reponse) {
+		Object acces = reponse.get("access_token");
+		if (acces == null) {
+			throw new IllegalStateException("Réponse de Keycloak sans access_token");
+		}
+		Instant maintenant = Instant.now();
+		long duree = reponse.get("expires_in") instanceof Number n ? n.longValue() : 60;
+		long dureeRafraichissement = reponse.get("refresh_expires_in") instanceof Number n ? n.longValue() : 0;
+		// refresh_expires_in vaut 0 pour un refresh token sans expiration propre.
+		Instant finRafraichissement = dureeRafraichissement > 0 ? maintenant.plusSeconds(dureeRafraichissement)
+				: Instant.MAX;
+		return new Jeton(acces.toString(), maintenant.plusSeconds(duree), (String) reponse.get("refresh_token"),
+				finRafraichissement);
+	}
+}
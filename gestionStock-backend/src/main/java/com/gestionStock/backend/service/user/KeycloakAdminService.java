@@ -1,55 +1,167 @@
 package com.gestionStock.backend.service.user;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
-import org.springframework.http.MediaType;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import com.gestionStock.backend.entity.user.Role;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
+@Slf4j
 @Service
 public class KeycloakAdminService {
 
+	/** Rôles de realm Keycloak correspondant aux rôles de l'application. */
+	public static final Map<String, Role> ROLES_METIER = Map.of(
+			"Administrateur", Role.ADMINISTRATEUR,
+			"Auditeur", Role.AUDITEUR,
+			"Magasinier", Role.MAGASINIER,
+			"Responsable logistique", Role.RESPONSABL_LOGISTIQUE);
+
+	/** Rôle métier le plus élevé parmi des rôles de realm Keycloak ; {@code null} s'il n'y en a aucun. */
+	public static Role roleMetier(Collection<?> roles) {
+		if (roles == null) {
+			return null;
+		}
+		return roles.stream().map(ROLES_METIER::get).filter(Objects::nonNull)
+				.min(Comparator.naturalOrder()).orElse(null);
+	}
+
+	private static final ParameterizedTypeReference<List<Map<String, Object>>> LISTE = new ParameterizedTypeReference<>() {
+	};
+
 	private final WebClient webClient;
+	private final JetonAdminKeycloak jetons;
+	private final String keycloakServerUrl;
+	private final String targetRealm;
+	private final int taillePage;
+	private final int paralleles;
+
+	public KeycloakAdminService(WebClient.Builder webClientBuilder, JetonAdminKeycloak jetons,
+			@Value("${keycloak.admin.server-url}") String keycloakServerUrl,
+			@Value("${keycloak.target-realm}") String targetRealm,
+			@Value("${keycloak.admin.taille-page:100}") int taillePage,
+			@Value("${keycloak.admin.paralleles:4}") int paralleles) {
+		this.webClient = webClientBuilder.build();
+		this.jetons = jetons;
+		this.keycloakServerUrl = keycloakServerUrl;
+		this.targetRealm = targetRealm;
+		this.taillePage = taillePage;
+		this.paralleles = paralleles;
+	}
 
-	@Value("${keycloak.admin.server-url}")
-	private String keycloakServerUrl;
+	/**
+	 * Tous les utilisateurs du realm, sans bloquer : le total est lu d'abord, puis
+	 * les pages ({@code first}/{@code max}) sont demandées en parallèle, au plus
+	 * {@code keycloak.admin.paralleles} à la fois, et émises dans l'ordre.
+	 */
+	public Flux<Map<String, Object>> utilisateurs() {
+		return lire("/users/count", new ParameterizedTypeReference<Integer>() {
+		}).flatMapMany(total -> Flux.range(0, (total + taillePage - 1) / taillePage))
+				.flatMapSequential(page -> lire("/users?first=" + page * taillePage + "&max=" + taillePage, LISTE),
+						paralleles)
+				.flatMapIterable(Function.identity());
+	}
 
-	@Value("${keycloak.admin.realm}")
-	private String adminRealm;
+	/**
+	 * Rôles de realm de chaque utilisateur, limités aux rôles donnés : une liste
+	 * paginée des membres par rôle plutôt qu'un appel par utilisateur.
+	 */
+	public Mono<Map<String, Collection<String>>> rolesParUtilisateur(Collection<String> roles) {
+		return Flux.fromIterable(roles)
+				.flatMap(role -> membres(role).map(id -> Map.entry(id, role)), paralleles)
+				.collectMultimap(Map.Entry::getKey, Map.Entry::getValue);
+	}
 
-	@Value("${keycloak.admin.username}")
-	private String adminUsername;
+	/** Identifiants des membres du rôle, page par page jusqu'à une page incomplète. */
+	private Flux<String> membres(String role) {
+		return pageMembres(role, 0)
+				.expand(page -> page.elements().size() < taillePage ? Mono.empty()
+						: pageMembres(role, page.first() + taillePage))
+				.flatMapIterable(Page::elements)
+				.map(u -> (String) u.get("id"));
+	}
 
-	@Value("${keycloak.admin.password}")
-	private String adminPassword;
+	private Mono<Page> pageMembres(String role, int first) {
+		return lire("/roles/{role}/users?first=" + first + "&max=" + taillePage + "&briefRepresentation=true", LISTE,
+				role).map(membres -> new Page(first, membres));
+	}
 
-	@Value("${keycloak.admin.client-id}")
-	private String adminClientId;
+	/**
+	 * Événements d'administration sur les utilisateurs et leurs rôles survenus
+	 * depuis {@code depuis} (millisecondes, inclus). Keycloak les renvoie du plus
+	 * récent au plus ancien ; la lecture s'arrête à la première page qui remonte
+	 * avant {@code depuis}. Les événements doivent être activés sur le realm.
+	 */
+	public Flux<Map<String, Object>> evenementsAdmin(long depuis) {
+		String jour = LocalDate.ofInstant(Instant.ofEpochMilli(depuis), ZoneOffset.UTC).toString();
+		return pageEvenements(jour, 0)
+				.expand(page -> page.elements().size() < taillePage
+						|| temps(page.elements().get(page.elements().size() - 1)) < depuis ? Mono.empty()
+								: pageEvenements(jour, page.first() + taillePage))
+				.flatMapIterable(Page::elements)
+				.filter(evenement -> temps(evenement) >= depuis);
+	}
 
-	@Value("${keycloak.target-realm}")
-	private String targetRealm;
+	private Mono<Page> pageEvenements(String jour, int first) {
+		return lire("/admin-events?resourceTypes=USER&resourceTypes=REALM_ROLE_MAPPING&dateFrom=" + jour + "&first="
+				+ first + "&max=" + taillePage, LISTE).map(evenements -> new Page(first, evenements));
+	}
 
-	private String adminToken;
+	/** Vrai si le realm enregistre les événements d'administration. */
+	public Mono<Boolean> evenementsAdminActives() {
+		return lire("/events/config", new ParameterizedTypeReference<Map<String, Object>>() {
+		}).map(config -> Boolean.TRUE.equals(config.get("adminEventsEnabled")));
+	}
 
-	public KeycloakAdminService(WebClient.Builder webClientBuilder) {
-		this.webClient = webClientBuilder.build();
+	public static long temps(Map<String, Object> evenement) {
+		return evenement.get("time") instanceof Number n ? n.longValue() : 0;
+	}
 
+	/** Représentation de l'utilisateur, vide s'il n'existe plus. */
+	public Mono<Map<String, Object>> utilisateur(String id) {
+		return lire("/users/{id}", new ParameterizedTypeReference<Map<String, Object>>() {
+		}, id).onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.empty());
 	}
 
-	public List<Map<String, Object>> getAllUsers() {
-		return executeWithRetry(() -> webClient.get().uri(keycloakServerUrl + "/admin/realms/" + targetRealm + "/users")
-				.headers(h -> h.setBearerAuth(getAdminToken())).retrieve()
-				.bodyToMono(new org.springframework.core.ParameterizedTypeReference<List<Map<String, Object>>>() {
-				}).block());
+	/** Noms des rôles de realm attribués directement à l'utilisateur. */
+	public Mono<List<String>> rolesRealm(String id) {
+		return lire("/users/{id}/role-mappings/realm", LISTE, id)
+				.map(roles -> roles.stream().map(r -> (String) r.get("name")).toList());
+	}
+
+	private record Page(int first, List<Map<String, Object>> elements) {
+	}
+
+	/** GET sur l'API d'administration du realm ; un 401 invalide le jeton et la requête est rejouée une fois. */
+	private <T> Mono<T> lire(String chemin, ParameterizedTypeReference<T> type, Object... variables) {
+		return jetons.jeton().flatMap(jeton -> lire(jeton, chemin, type, variables)
+				.onErrorResume(WebClientResponseException.Unauthorized.class, e -> {
+					jetons.invalider(jeton);
+					return jetons.jeton().flatMap(nouveau -> lire(nouveau, chemin, type, variables));
+				}));
+	}
+
+	private <T> Mono<T> lire(String jeton, String chemin, ParameterizedTypeReference<T> type, Object... variables) {
+		return webClient.get().uri(keycloakServerUrl + "/admin/realms/" + targetRealm + chemin, variables)
+				.headers(h -> h.setBearerAuth(jeton)).retrieve().bodyToMono(type);
 	}
 
 	public String createUser(Map<String, Object> user) {
@@ -79,15 +191,16 @@ public class KeycloakAdminService {
 		});
 	}
 
+	/** Le jeton est renouvelé avant expiration ; un 401 signifie qu'il a été révoqué côté Keycloak. */
 	private <T> T executeWithRetry(Supplier<T> action) {
+		String jeton = getAdminToken();
 		try {
 			return action.get();
 		} catch (Exception e) {
 			String msg = e.getMessage() != null ? e.getMessage() : "";
 			if (msg.contains("401") || msg.contains("Unauthorized")) {
-				System.out.println(
-						"KeycloakAdminService: Token expiré (401). Tentative de rafraîchissement et réessai...");
-				this.adminToken = null;
+				log.info("Jeton d'administration Keycloak refusé (401), nouvel essai avec un nouveau jeton");
+				jetons.invalider(jeton);
 				return action.get();
 			}
 			throw e;
@@ -193,35 +306,6 @@ public class KeycloakAdminService {
 	}
 
 	private String getAdminToken() {
-		if (adminToken == null) {
-
-			MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
-			formData.add("grant_type", "password");
-			formData.add("client_id", adminClientId);
-			formData.add("username", adminUsername);
-			formData.add("password", adminPassword);
-
-			try {
-				Map<String, Object> tokenResponse = webClient.post()
-						.uri(keycloakServerUrl + "/realms/" + adminRealm + "/protocol/openid-connect/token")
-						.contentType(MediaType.APPLICATION_FORM_URLENCODED).body(BodyInserters.fromFormData(formData))
-						.retrieve()
-						.bodyToMono(new org.springframework.core.ParameterizedTypeReference<Map<String, Object>>() {
-						}).block();
-
-				adminToken = (String) tokenResponse.get("access_token");
-				if (adminToken != null) {
-					System.out.println("KeycloakAdminService: Token admin récupéré avec succès. (Début: "
-							+ adminToken.substring(0, 10) + "...)");
-				} else {
-					System.out
-							.println("KeycloakAdminService: ERREUR - Le token est null dans la réponse de Keycloak !");
-				}
-			} catch (Exception e) {
-				System.out.println("KeycloakAdminService: ERREUR lors de la récupération du token: " + e.getMessage());
-				throw e;
-			}
-		}
-		return adminToken;
+		return jetons.jetonBloquant();
 	}
 }
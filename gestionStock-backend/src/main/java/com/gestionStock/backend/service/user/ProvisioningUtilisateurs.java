@@ -0,0 +1,90 @@
+package com.gestionStock.backend.service.user;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.gestionStock.backend.entity.user.Role;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Recopie en base des utilisateurs vus dans les jetons, sans requête SQL tant
+ * que rien ne change.
+ * <p>
+ * Pour chaque sujet, le cache garde le dernier profil connu en base (noms,
+ * email, rôle). Un jeton identique ne coûte qu'une comparaison. Un profil
+ * nouveau ou modifié est mis en attente ; plusieurs requêtes du même
+ * utilisateur avant l'écriture n'en font qu'une, et les écritures sont
+ * groupées par lot en arrière-plan. La durée de vie du cache borne le temps
+ * pendant lequel une modification faite directement en base n'est pas
+ * revérifiée. Métriques : {@code cache.gets{cache=utilisateurs.provisioning}}.
+ */
+@Slf4j
+@Service
+public class ProvisioningUtilisateurs {
+
+	/** Champs du jeton recopiés dans la table {@code users} ; {@code role} est nul sans rôle métier. */
+	public record Profil(String id, String prenom, String nom, String email, Role role) {
+	}
+
+	private final UserService userService;
+	private final Cache<String, Profil> enBase;
+	private final ConcurrentHashMap<String, Profil> enAttente = new ConcurrentHashMap<>();
+
+	public ProvisioningUtilisateurs(UserService userService, MeterRegistry registry,
+			@Value("${utilisateurs.provisioning.taille-max:10000}") long tailleMax,
+			@Value("${utilisateurs.provisioning.duree-vie:1h}") Duration dureeVie) {
+		this.userService = userService;
+		this.enBase = Caffeine.newBuilder()
+				.maximumSize(tailleMax)
+				.expireAfterWrite(dureeVie)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(registry, enBase, "utilisateurs.provisioning");
+	}
+
+	public void signaler(Profil profil) {
+		if (profil.equals(enBase.getIfPresent(profil.id()))) {
+			return;
+		}
+		enAttente.put(profil.id(), profil);
+	}
+
+	@Scheduled(fixedDelayString = "${utilisateurs.provisioning.intervalle-ms:500}")
+	public synchronized void vider() {
+		if (enAttente.isEmpty()) {
+			return;
+		}
+		List<Profil> lot = new ArrayList<>(enAttente.size());
+		for (String id : List.copyOf(enAttente.keySet())) {
+			Profil profil = enAttente.remove(id);
+			if (profil != null) {
+				lot.add(profil);
+			}
+		}
+		try {
+			int ecrits = userService.provisionner(lot);
+			lot.forEach(profil -> enBase.put(profil.id(), profil));
+			log.debug("Provisioning : {} profils vérifiés, {} écrits", lot.size(), ecrits);
+		} catch (RuntimeException e) {
+			log.warn("Échec du provisioning de {} utilisateurs, nouvel essai au prochain passage", lot.size(), e);
+			lot.forEach(profil -> enAttente.putIfAbsent(profil.id(), profil));
+		}
+	}
+
+	@PreDestroy
+	public void arreter() {
+		vider();
+	}
+}
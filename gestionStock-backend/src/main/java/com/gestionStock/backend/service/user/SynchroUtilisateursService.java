@@ -0,0 +1,241 @@
+package com.gestionStock.backend.service.user;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.gestionStock.backend.entity.user.SynchroUtilisateurs;
+import com.gestionStock.backend.repository.user.SynchroUtilisateursRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+/**
+ * Tient la table {@code users} à jour depuis Keycloak, pour que la liste des
+ * utilisateurs se lise en base.
+ * <p>
+ * Toutes les {@code utilisateurs.synchro.intervalle-ms}, les événements
+ * d'administration (utilisateurs et attributions de rôles) survenus depuis le
+ * dernier passage sont relus, et seuls les utilisateurs concernés sont
+ * redemandés à Keycloak. Toutes les {@code utilisateurs.synchro.complete}, le
+ * realm entier est relu et comparé à la base, ce qui rattrape ce que les
+ * événements ne couvrent pas (événements désactivés ou purgés). Un utilisateur
+ * local absent de cette liste n'est supprimé qu'après un {@code GET /users/{id}}
+ * répondant 404 : la liste est lue par pages parallèles, et un ajout ou une
+ * suppression pendant la lecture peut en décaler une. La copie est
+ * considérée à jour tant que la dernière synchronisation réussie date de moins
+ * de {@code utilisateurs.synchro.obsolescence-max}. Si le realm n'enregistre
+ * pas les événements d'administration ({@code GET /events/config}), seule la
+ * dernière synchronisation complète compte.
+ * <p>
+ * Métriques : {@code utilisateurs.synchro{type=complete|incrementale, resultat}}
+ * et {@code utilisateurs.synchro.age} (secondes depuis la dernière réussite).
+ */
+@Slf4j
+@Service
+public class SynchroUtilisateursService {
+
+	private static final String ID = "keycloak";
+
+	private final KeycloakAdminService adminService;
+	private final UserService userService;
+	private final SynchroUtilisateursRepository synchroRepo;
+	private final boolean active;
+	private final Duration complete;
+	private final Duration obsolescenceMax;
+	private final int paralleles;
+	private final MeterRegistry registry;
+
+	private volatile Instant derniereReussite;
+	private volatile Instant derniereComplete;
+	/** Faux tant que Keycloak n'a pas confirmé que les événements sont enregistrés. */
+	private volatile boolean evenementsActives;
+
+	public SynchroUtilisateursService(KeycloakAdminService adminService, UserService userService,
+			SynchroUtilisateursRepository synchroRepo,
+			@Value("${utilisateurs.synchro.active:true}") boolean active,
+			@Value("${utilisateurs.synchro.complete:6h}") Duration complete,
+			@Value("${utilisateurs.synchro.obsolescence-max:5m}") Duration obsolescenceMax,
+			@Value("${keycloak.admin.paralleles:4}") int paralleles,
+			MeterRegistry registry) {
+		this.adminService = adminService;
+		this.userService = userService;
+		this.synchroRepo = synchroRepo;
+		this.active = active;
+		this.complete = complete;
+		this.obsolescenceMax = obsolescenceMax;
+		this.paralleles = paralleles;
+		this.registry = registry;
+		Gauge.builder("utilisateurs.synchro.age", this, s -> s.derniereReussite != null
+				? Duration.between(s.derniereReussite, Instant.now()).toSeconds() : Double.NaN)
+				.baseUnit("seconds").register(registry);
+	}
+
+	@Scheduled(fixedDelayString = "${utilisateurs.synchro.intervalle-ms:30000}")
+	public void planifiee() {
+		if (!active) {
+			return;
+		}
+		try {
+			synchroniser();
+		} catch (RuntimeException e) {
+			log.warn("Synchronisation des utilisateurs Keycloak impossible : {}", e.getMessage());
+		}
+	}
+
+	/** Synchronisation incrémentale, ou complète si la dernière complète est trop ancienne. */
+	public synchronized SynchroUtilisateurs synchroniser() {
+		SynchroUtilisateurs etat = synchroRepo.findById(ID).orElseGet(() -> new SynchroUtilisateurs(ID));
+		boolean evenements = Boolean.TRUE.equals(adminService.evenementsAdminActives().block());
+		if (evenements != evenementsActives) {
+			evenementsActives = evenements;
+			if (!evenements) {
+				log.warn("Événements d'administration désactivés sur le realm : la copie des utilisateurs ne suit"
+						+ " que les synchronisations complètes");
+			}
+		}
+		boolean estComplete = etat.getDerniereComplete() == null
+				|| etat.getDerniereComplete().plus(complete).isBefore(Instant.now());
+		String type = estComplete ? "complete" : "incrementale";
+		long debut = System.nanoTime();
+		try {
+			if (estComplete) {
+				complete(etat);
+			} else if (evenements) {
+				incrementale(etat);
+			}
+			etat.setDerniereSynchro(Instant.now());
+			SynchroUtilisateurs enregistre = synchroRepo.save(etat);
+			derniereReussite = enregistre.getDerniereSynchro();
+			derniereComplete = enregistre.getDerniereComplete();
+			mesurer(type, "succes", debut);
+			return enregistre;
+		} catch (RuntimeException e) {
+			mesurer(type, "echec", debut);
+			throw e;
+		}
+	}
+
+	/** Date de la dernière synchronisation réussie. */
+	public Optional<Instant> derniereSynchro() {
+		if (derniereReussite == null) {
+			derniereReussite = synchroRepo.findById(ID).map(SynchroUtilisateurs::getDerniereSynchro).orElse(null);
+		}
+		return Optional.ofNullable(derniereReussite);
+	}
+
+	/**
+	 * Vrai si la copie locale respecte {@code utilisateurs.synchro.obsolescence-max} :
+	 * depuis la dernière synchronisation si les événements d'administration sont
+	 * enregistrés, depuis la dernière complète sinon.
+	 */
+	public boolean aJour() {
+		Optional<Instant> reference = evenementsActives ? derniereSynchro() : derniereComplete();
+		return reference.map(d -> d.plus(obsolescenceMax).isAfter(Instant.now())).orElse(false);
+	}
+
+	private Optional<Instant> derniereComplete() {
+		if (derniereComplete == null) {
+			derniereComplete = synchroRepo.findById(ID).map(SynchroUtilisateurs::getDerniereComplete).orElse(null);
+		}
+		return Optional.ofNullable(derniereComplete);
+	}
+
+	private void complete(SynchroUtilisateurs etat) {
+		// Les événements survenus pendant la lecture seront rejoués au passage suivant.
+		long debut = System.currentTimeMillis();
+		Map<String, Collection<String>> roles = adminService
+				.rolesParUtilisateur(KeycloakAdminService.ROLES_METIER.keySet()).block();
+		List<Map<String, Object>> utilisateurs = adminService.utilisateurs().collectList().block();
+		int ecrits = userService.appliquerMiroir(utilisateurs, roles);
+		int supprimes = 0;
+		// Une liste vide vient plus sûrement d'un realm mal configuré que d'un realm sans utilisateurs.
+		if (!utilisateurs.isEmpty()) {
+			Set<String> absents = userService
+					.absents(utilisateurs.stream().map(u -> (String) u.get("id")).toList());
+			supprimes = absents.size();
+			ecrits += relire(absents);
+			supprimes -= absents.size();
+		}
+		etat.setDernierEvenement(debut);
+		etat.setDerniereComplete(Instant.now());
+		etat.setUtilisateurs(utilisateurs.size());
+		log.info("Synchronisation complète des utilisateurs Keycloak : {} utilisateurs, {} lignes écrites, {} supprimées",
+				utilisateurs.size(), ecrits, supprimes);
+	}
+
+	private void incrementale(SynchroUtilisateurs etat) {
+		List<Map<String, Object>> evenements = adminService.evenementsAdmin(etat.getDernierEvenement())
+				.collectList().block();
+		Set<String> ids = new HashSet<>();
+		long dernier = etat.getDernierEvenement();
+		for (Map<String, Object> evenement : evenements) {
+			String id = idUtilisateur((String) evenement.get("resourcePath"));
+			if (id != null) {
+				ids.add(id);
+			}
+			dernier = Math.max(dernier, KeycloakAdminService.temps(evenement));
+		}
+		if (ids.isEmpty()) {
+			etat.setDernierEvenement(dernier);
+			return;
+		}
+
+		int ecrits = relire(ids);
+		etat.setDernierEvenement(dernier);
+		log.debug("Synchronisation des utilisateurs Keycloak : {} événements, {} lignes écrites, {} supprimées",
+				evenements.size(), ecrits, ids.size());
+	}
+
+	/**
+	 * Redemande ces utilisateurs un par un à Keycloak : ceux qui existent encore
+	 * sont recopiés, les autres sont supprimés et restent seuls dans {@code ids}.
+	 * Renvoie le nombre de lignes créées ou modifiées.
+	 */
+	private int relire(Set<String> ids) {
+		if (ids.isEmpty()) {
+			return 0;
+		}
+		List<Map.Entry<Map<String, Object>, List<String>>> lus = Flux.fromIterable(ids)
+				.flatMap(id -> adminService.utilisateur(id)
+						.flatMap(u -> adminService.rolesRealm(id).map(r -> Map.entry(u, r))), paralleles)
+				.collectList().block();
+		List<Map<String, Object>> utilisateurs = lus.stream().map(Map.Entry::getKey).toList();
+		Map<String, List<String>> roles = new HashMap<>();
+		for (Map.Entry<Map<String, Object>, List<String>> lu : lus) {
+			roles.put((String) lu.getKey().get("id"), lu.getValue());
+			ids.remove((String) lu.getKey().get("id"));
+		}
+		int ecrits = userService.appliquerMiroir(utilisateurs, roles);
+		userService.supprimerMiroir(ids);
+		return ecrits;
+	}
+
+	/** {@code users/<id>} ou {@code users/<id>/role-mappings/...} ; {@code null} pour les autres ressources. */
+	private static String idUtilisateur(String chemin) {
+		if (chemin == null || !chemin.startsWith("users/")) {
+			return null;
+		}
+		int fin = chemin.indexOf('/', "users/".length());
+		return fin < 0 ? chemin.substring("users/".length()) : chemin.substring("users/".length(), fin);
+	}
+
+	private void mesurer(String type, String resultat, long debut) {
+		Timer.builder("utilisateurs.synchro").tag("type", type).tag("resultat", resultat).register(registry)
+				.record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+	}
+}
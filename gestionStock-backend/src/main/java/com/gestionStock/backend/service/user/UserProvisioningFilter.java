@@ -1,27 +1,34 @@
 package com.gestionStock.backend.service.user;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
 
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Component;
 
+import com.gestionStock.backend.entity.user.Role;
+
 import jakarta.servlet.Filter;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.ServletRequest;
 import jakarta.servlet.ServletResponse;
-import com.gestionStock.backend.entity.user.Role;
-import java.util.Map;
-import java.util.List;
+import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Signale l'utilisateur du jeton au provisioning ; l'écriture en base, si elle
+ * est nécessaire, se fait hors de la requête.
+ */
+@Slf4j
 @Component
 public class UserProvisioningFilter implements Filter {
-	private final UserService userService;
+	private final ProvisioningUtilisateurs provisioning;
 
-	public UserProvisioningFilter(UserService userService) {
-		this.userService = userService;
+	public UserProvisioningFilter(ProvisioningUtilisateurs provisioning) {
+		this.provisioning = provisioning;
 	}
 
 	@Override
@@ -29,35 +36,29 @@ public class UserProvisioningFilter implements Filter {
 			throws IOException, ServletException {
 		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 		if (authentication != null && authentication.getPrincipal() instanceof Jwt jwt) {
-			System.out.println("UserProvisioningFilter: Utilisateur authentifié détecté: " + jwt.getSubject());
 			String id = jwt.getSubject();
 			String firstName = jwt.getClaimAsString("given_name") != null ? jwt.getClaimAsString("given_name") : "";
 			String lastName = jwt.getClaimAsString("family_name") != null ? jwt.getClaimAsString("family_name") : "";
 			String email = jwt.getClaimAsString("email");
 
 			if (email != null) {
-				Role userRole = Role.MAGASINIER;
-				Map<String, Object> realmAccess = jwt.getClaim("realm_access");
-				if (realmAccess != null && realmAccess.containsKey("roles")) {
-					@SuppressWarnings("unchecked")
-					List<String> roles = (List<String>) realmAccess.get("roles");
-					for (String r : roles) {
-						try {
-							userRole = Role.valueOf(r.toUpperCase().replace(" ", "_"));
-							break;
-						} catch (Exception e) {
-						}
-					}
-				}
-
-				userService.provisionUserIfNeeded(id, firstName, lastName, email, userRole);
+				provisioning.signaler(new ProvisioningUtilisateurs.Profil(id, firstName, lastName, email, role(jwt)));
 			} else {
-				System.err.println("UserProvisioningFilter: Email manquant dans le token pour l'ID: " + id);
+				log.debug("Email manquant dans le token pour l'ID {}", id);
 			}
-		} else {
-			System.out.println(
-					"UserProvisioningFilter: Aucune authentification JWT trouvée dans le contexte à ce stade.");
 		}
 		chain.doFilter(request, response);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Rôle métier des rôles de realm du jeton, selon la même correspondance que
+	 * la copie locale ({@link KeycloakAdminService#ROLES_METIER}) ; {@code null}
+	 * s'il n'y en a aucun, pour ne pas écraser le rôle recopié depuis Keycloak.
+	 */
+	private static Role role(Jwt jwt) {
+		Map<String, Object> realmAccess = jwt.getClaim("realm_access");
+		return realmAccess != null && realmAccess.get("roles") instanceof Collection<?> roles
+				? KeycloakAdminService.roleMetier(roles)
+				: null;
+	}
+}
@@ -1,7 +1,13 @@
 package com.gestionStock.backend.service.user;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -10,6 +16,8 @@ import com.gestionStock.backend.entity.user.Role;
 import com.gestionStock.backend.entity.user.User;
 import com.gestionStock.backend.repository.user.UserRepository;
 
+import jakarta.transaction.Transactional;
+
 @Service
 public class UserService {
 
@@ -64,6 +72,86 @@ public class UserService {
 		});
 	}
 
+	/**
+	 * Version groupée de {@link #provisionUserIfNeeded} : une requête pour
+	 * retrouver les utilisateurs par email, et seules les lignes réellement
+	 * différentes sont écrites. Un profil sans rôle métier laisse le rôle en base
+	 * inchangé ({@code MAGASINIER} pour un nouvel utilisateur). Renvoie le nombre
+	 * de lignes créées ou modifiées.
+	 */
+	@Transactional
+	public int provisionner(Collection<ProvisioningUtilisateurs.Profil> profils) {
+		List<String> emails = profils.stream().map(ProvisioningUtilisateurs.Profil::email).toList();
+		Map<String, User> parEmail = new HashMap<>();
+		for (User user : userRepository.findByEmailIn(emails)) {
+			parEmail.put(user.getEmail(), user);
+		}
+		int ecrits = 0;
+		for (ProvisioningUtilisateurs.Profil profil : profils) {
+			User user = parEmail.get(profil.email());
+			if (user == null) {
+				user = new User();
+				user.setId(profil.id());
+				user.setEmail(profil.email());
+				user.setActive(true);
+				user.setRole(Role.MAGASINIER);
+			} else if (Objects.equals(user.getFirstName(), profil.prenom())
+					&& Objects.equals(user.getLastName(), profil.nom())
+					&& (profil.role() == null || user.getRole() == profil.role())) {
+				continue;
+			}
+			user.setFirstName(profil.prenom());
+			user.setLastName(profil.nom());
+			if (profil.role() != null) {
+				user.setRole(profil.role());
+			}
+			userRepository.save(user);
+			ecrits++;
+		}
+		return ecrits;
+	}
+
+	/**
+	 * Recopie des utilisateurs Keycloak dans {@code users}. Le rôle local suit le
+	 * rôle métier le plus élevé attribué dans Keycloak, et reste inchangé si
+	 * l'utilisateur n'en a aucun. Seules les lignes différentes sont écrites.
+	 * Renvoie le nombre de lignes créées ou modifiées.
+	 */
+	@Transactional
+	public int appliquerMiroir(Collection<Map<String, Object>> utilisateurs,
+			Map<String, ? extends Collection<String>> roles) {
+		List<String> ids = utilisateurs.stream().map(u -> (String) u.get("id")).toList();
+		Map<String, User> existants = new HashMap<>();
+		for (User user : userRepository.findAllById(ids)) {
+			existants.put(user.getId(), user);
+		}
+		int ecrits = 0;
+		for (Map<String, Object> kc : utilisateurs) {
+			User existant = existants.remove((String) kc.get("id"));
+			Role role = KeycloakAdminService.roleMetier(roles.get((String) kc.get("id")));
+			User miroir = new User((String) kc.get("id"), (String) kc.get("username"), (String) kc.get("firstName"),
+					(String) kc.get("lastName"), (String) kc.get("email"), !Boolean.FALSE.equals(kc.get("enabled")),
+					role != null ? role : existant != null ? existant.getRole() : null);
+			if (!miroir.equals(existant)) {
+				userRepository.save(miroir);
+				ecrits++;
+			}
+		}
+		return ecrits;
+	}
+
+	/** Identifiants des utilisateurs locaux qui ne figurent pas dans {@code ids}. */
+	public Set<String> absents(Collection<String> ids) {
+		Set<String> absents = new HashSet<>(userRepository.findAllIds());
+		absents.removeAll(ids);
+		return absents;
+	}
+
+	@Transactional
+	public void supprimerMiroir(Collection<String> ids) {
+		userRepository.deleteAllById(ids);
+	}
+
 	public Optional<User> findByEmail(String email) {
 		return userRepository.findByEmail(email);
 	}
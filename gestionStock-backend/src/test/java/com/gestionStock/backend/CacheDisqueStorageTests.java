@@ -0,0 +1,131 @@
+package com.gestionStock.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gestionStock.backend.service.images.CacheDisqueStorage;
+import com.gestionStock.backend.service.images.IImageStorage;
+import com.gestionStock.backend.service.images.LocalStorage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/** Cache disque devant un stockage lent, simulé par un stockage local qui compte ses lectures. */
+class CacheDisqueStorageTests {
+
+	@TempDir
+	Path sourceDir;
+
+	@TempDir
+	Path cacheDir;
+
+	private final AtomicInteger telechargements = new AtomicInteger();
+	private IImageStorage lente;
+	private SimpleMeterRegistry registry;
+
+	@BeforeEach
+	void demarrer() {
+		LocalStorage local = new LocalStorage();
+		ReflectionTestUtils.setField(local, "uploadDir", sourceDir.toString());
+		lente = (IImageStorage) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { IImageStorage.class }, (proxy, methode, arguments) -> {
+					if (methode.getName().equals("getImageResource")) {
+						telechargements.incrementAndGet();
+						Thread.sleep(200);
+					}
+					try {
+						return methode.invoke(local, arguments);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+				});
+		registry = new SimpleMeterRegistry();
+	}
+
+	private void image(String nom, int taille) throws Exception {
+		Files.write(sourceDir.resolve(nom), "x".repeat(taille).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private double octetsEnCache() {
+		return registry.get("cache.size").tag("cache", "images-disque").gauge().value();
+	}
+
+	@Test
+	void evictionDesMoinsRecemmentLuesAuDelaDeLaTaille() throws Exception {
+		CacheDisqueStorage cache = new CacheDisqueStorage(lente, cacheDir, 25, registry);
+		image("a.jpg", 10);
+		image("b.jpg", 10);
+		image("c.jpg", 10);
+
+		cache.getImageResource("a.jpg");
+		cache.getImageResource("b.jpg");
+		cache.getImageResource("a.jpg");
+		cache.getImageResource("c.jpg");
+
+		assertThat(Files.exists(cacheDir.resolve("a.jpg"))).isTrue();
+		assertThat(Files.exists(cacheDir.resolve("b.jpg"))).isFalse();
+		assertThat(Files.exists(cacheDir.resolve("c.jpg"))).isTrue();
+		assertThat(octetsEnCache()).isEqualTo(20);
+		assertThat(registry.get("cache.evictions").counter().count()).isEqualTo(1);
+		assertThat(telechargements.get()).isEqualTo(3);
+	}
+
+	@Test
+	void unSeulTelechargementPourDesLecturesSimultanees() throws Exception {
+		CacheDisqueStorage cache = new CacheDisqueStorage(lente, cacheDir, 1_000, registry);
+		image("a.jpg", 10);
+
+		int lecteurs = 8;
+		CountDownLatch depart = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(lecteurs);
+		try {
+			List<Future<Resource>> lectures = new ArrayList<>();
+			for (int i = 0; i < lecteurs; i++) {
+				lectures.add(executor.submit(() -> {
+					depart.await();
+					return cache.getImageResource("a.jpg");
+				}));
+			}
+			depart.countDown();
+			for (Future<Resource> lecture : lectures) {
+				assertThat(lecture.get().contentLength()).isEqualTo(10);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(telechargements.get()).isEqualTo(1);
+	}
+
+	@Test
+	void suppressionRetireLaCopieDuCache() throws Exception {
+		CacheDisqueStorage cache = new CacheDisqueStorage(lente, cacheDir, 1_000, registry);
+		image("a.jpg", 10);
+		cache.getImageResource("a.jpg");
+		assertThat(Files.exists(cacheDir.resolve("a.jpg"))).isTrue();
+
+		cache.supprimer("a.jpg");
+
+		assertThat(Files.exists(cacheDir.resolve("a.jpg"))).isFalse();
+		assertThat(octetsEnCache()).isZero();
+		assertThat(cache.exists("a.jpg")).isFalse();
+		assertThat(cache.getImageResource("a.jpg")).isNull();
+	}
+}
@@ -0,0 +1,115 @@
+package com.gestionStock.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import com.gestionStock.backend.service.images.CloudinaryStorage;
+import com.gestionStock.backend.support.CloudinaryLocal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/** Envois par morceaux et URLs de transformation de {@link CloudinaryStorage}, contre un Cloudinary local. */
+class CloudinaryStorageTests {
+
+	private static final int MORCEAU = 1024;
+
+	private CloudinaryLocal cloudinary;
+	private CloudinaryStorage storage;
+
+	@BeforeEach
+	void demarrer() throws Exception {
+		cloudinary = new CloudinaryLocal(100);
+		storage = new CloudinaryStorage("demo", "cle", "secret", "pieces_images", cloudinary.url(), false,
+				cloudinary.hote(), DataSize.ofBytes(MORCEAU), 3, Duration.ofSeconds(2), Duration.ofSeconds(5),
+				new SimpleMeterRegistry());
+	}
+
+	@AfterEach
+	void arreter() throws Exception {
+		storage.fermer();
+		cloudinary.close();
+	}
+
+	@Test
+	void petiteImageEnUnSeulEnvoi() throws Exception {
+		byte[] image = image(500);
+
+		String url = storage.saveImage("a.jpg", new ByteArrayInputStream(image), image.length);
+
+		assertThat(url).isEqualTo("/api/images/a.jpg");
+		assertThat(cloudinary.envois()).singleElement().extracting(CloudinaryLocal.Envoi::plage).isNull();
+		assertThat(cloudinary.image("pieces_images/a")).isEqualTo(image);
+	}
+
+	@Test
+	void grandeImageParMorceauxEnParallele() throws Exception {
+		byte[] image = image(5 * MORCEAU + 200);
+
+		storage.saveImage("grande.jpg", new ByteArrayInputStream(image), -1);
+
+		List<CloudinaryLocal.Envoi> envois = cloudinary.envois();
+		assertThat(envois).hasSize(6);
+		assertThat(envois).extracting(CloudinaryLocal.Envoi::idEnvoi).containsOnly(envois.get(0).idEnvoi());
+		assertThat(envois.get(envois.size() - 1).plage()).isEqualTo("bytes 5120-5319/5320");
+		assertThat(cloudinary.envoisSimultanesMax()).isBetween(2, 3);
+		assertThat(cloudinary.image("pieces_images/grande")).isEqualTo(image);
+		try (InputStream is = storage.getImage("grande.jpg")) {
+			assertThat(is.readAllBytes()).isEqualTo(image);
+		}
+	}
+
+	@Test
+	void imageAbsente() throws Exception {
+		assertThat(storage.exists("absente.jpg")).isFalse();
+		assertThat(storage.getImage("absente.jpg")).isNull();
+	}
+
+	@Test
+	void renommageEtSuppression() throws Exception {
+		storage.saveImage("envoi.tmp", new ByteArrayInputStream(image(10)), 10);
+
+		storage.renommer("envoi.tmp", "abc.png");
+
+		assertThat(storage.exists("abc.png")).isTrue();
+		storage.supprimer("abc.png");
+		assertThat(storage.exists("abc.png")).isFalse();
+	}
+
+	@Test
+	void toucherReenvoieDepuisLeCdn() throws Exception {
+		byte[] image = image(300);
+		storage.saveImage("a.png", new ByteArrayInputStream(image), image.length);
+
+		assertThat(storage.toucher("a.png")).isTrue();
+		assertThat(storage.toucher("absente.png")).isFalse();
+
+		assertThat(cloudinary.envois()).hasSize(2);
+		assertThat(cloudinary.image("pieces_images/a")).isEqualTo(image);
+	}
+
+	@Test
+	void miniatureRedimensionneeParLeCdn() {
+		assertThat(storage.urlPublique("abc.jpg", 480)).contains("w_480").contains("c_limit")
+				.endsWith("/pieces_images/abc.jpg");
+		assertThat(storage.urlPublique("abc.jpg", null)).doesNotContain("w_").endsWith("/pieces_images/abc.jpg");
+	}
+
+	private static byte[] image(int taille) {
+		byte[] octets = new byte[taille];
+		Arrays.fill(octets, (byte) 'x');
+		for (int i = 0; i < taille; i += 7) {
+			octets[i] = (byte) (i % 251);
+		}
+		return octets;
+	}
+}
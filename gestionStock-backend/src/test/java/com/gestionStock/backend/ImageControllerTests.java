@@ -0,0 +1,86 @@
+package com.gestionStock.backend;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+/** Requêtes conditionnelles sur {@code GET /api/images/{nom}}, avec le stockage local. */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ImageControllerTests {
+
+	private static final Instant MODIFICATION = Instant.parse("2026-03-01T10:00:00Z");
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Value("${file.local.upload-dir}")
+	private String uploadDir;
+
+	private String nom;
+
+	@BeforeEach
+	void image() throws Exception {
+		nom = "conditionnelle-" + System.nanoTime() + ".jpg";
+		Path fichier = Files.createDirectories(Path.of(uploadDir)).resolve(nom);
+		Files.write(fichier, new byte[] { 1, 2, 3 });
+		Files.setLastModifiedTime(fichier, FileTime.from(MODIFICATION));
+	}
+
+	private static String date(Instant instant) {
+		return DateTimeFormatter.RFC_1123_DATE_TIME.format(instant.atOffset(ZoneOffset.UTC));
+	}
+
+	@Test
+	void etagCorrespondant() throws Exception {
+		mockMvc.perform(get("/api/images/" + nom).header(HttpHeaders.IF_NONE_MATCH, "\"" + nom + "\""))
+				.andExpect(status().isNotModified());
+	}
+
+	@Test
+	void etagDifferentIgnoreLaDate() throws Exception {
+		mockMvc.perform(get("/api/images/" + nom).header(HttpHeaders.IF_NONE_MATCH, "\"autre.jpg\"")
+				.header(HttpHeaders.IF_MODIFIED_SINCE, date(MODIFICATION.plus(1, ChronoUnit.DAYS))))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void imageNonModifieeDepuisLaDate() throws Exception {
+		mockMvc.perform(get("/api/images/" + nom).header(HttpHeaders.IF_MODIFIED_SINCE, date(MODIFICATION)))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string(HttpHeaders.ETAG, "\"" + nom + "\""));
+	}
+
+	@Test
+	void imageModifieeApresLaDate() throws Exception {
+		mockMvc.perform(get("/api/images/" + nom)
+				.header(HttpHeaders.IF_MODIFIED_SINCE, date(MODIFICATION.minus(1, ChronoUnit.HOURS))))
+				.andExpect(status().isOk())
+				.andExpect(header().dateValue(HttpHeaders.LAST_MODIFIED, MODIFICATION.toEpochMilli()));
+	}
+
+	@Test
+	void imageAbsenteMalgreLaDate() throws Exception {
+		mockMvc.perform(get("/api/images/absente.jpg").header(HttpHeaders.IF_MODIFIED_SINCE, date(Instant.now())))
+				.andExpect(status().isNotFound());
+	}
+}
@@ -0,0 +1,82 @@
+package com.gestionStock.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gestionStock.backend.service.images.ImageDeriveeService;
+import com.gestionStock.backend.service.images.LocalStorage;
+
+/** Génération des miniatures, avec le stockage local. */
+class ImageDeriveeTests {
+
+	@TempDir
+	Path repertoire;
+
+	private LocalStorage storage;
+
+	@BeforeEach
+	void demarrer() {
+		storage = new LocalStorage();
+		ReflectionTestUtils.setField(storage, "uploadDir", repertoire.toString());
+	}
+
+	private void image(String nom, String format, int largeur, int hauteur) throws Exception {
+		BufferedImage image = new BufferedImage(largeur, hauteur, BufferedImage.TYPE_INT_RGB);
+		assertThat(ImageIO.write(image, format, repertoire.resolve(nom).toFile())).isTrue();
+	}
+
+	/** Génère les miniatures puis attend la fin des générations. */
+	private void generer(String nom, long pixelsMax) throws Exception {
+		ImageDeriveeService derivees = new ImageDeriveeService(storage, List.of(160), 1, 10, pixelsMax);
+		derivees.planifier(nom);
+		derivees.arreter();
+	}
+
+	@Test
+	void miniatureALaLargeurDemandee() throws Exception {
+		image("photo.png", "png", 400, 300);
+		generer("photo.png", 40_000_000);
+
+		BufferedImage miniature = ImageIO.read(repertoire.resolve("w160_photo.png").toFile());
+		assertThat(miniature.getWidth()).isEqualTo(160);
+		assertThat(miniature.getHeight()).isEqualTo(120);
+	}
+
+	@Test
+	void miniatureAuFormatDeLOriginal() throws Exception {
+		image("photo.jpg", "jpg", 400, 300);
+		image("anime.gif", "gif", 400, 300);
+		generer("photo.jpg", 40_000_000);
+		generer("anime.gif", 40_000_000);
+
+		assertThat(format("w160_photo.jpg")).isEqualTo("jpeg");
+		assertThat(format("w160_anime.gif")).isEqualTo("gif");
+	}
+
+	private String format(String nom) throws Exception {
+		try (ImageInputStream entree = ImageIO.createImageInputStream(repertoire.resolve(nom).toFile())) {
+			return ImageIO.getImageReaders(entree).next().getFormatName().toLowerCase(Locale.ROOT);
+		}
+	}
+
+	@Test
+	void imageTropGrandePasDecodee() throws Exception {
+		image("immense.png", "png", 400, 300);
+		generer("immense.png", 100_000);
+
+		assertThat(Files.exists(repertoire.resolve("w160_immense.png"))).isFalse();
+	}
+}
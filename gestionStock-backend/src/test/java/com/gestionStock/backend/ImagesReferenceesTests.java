@@ -0,0 +1,93 @@
+package com.gestionStock.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.gestionStock.backend.entity.piece.PieceDetachee;
+import com.gestionStock.backend.entity.piece.ProduitFini;
+import com.gestionStock.backend.repository.piece.PieceDetacheeRepository;
+import com.gestionStock.backend.repository.piece.ProduitFiniRepository;
+import com.gestionStock.backend.service.images.ImagesReferencees;
+
+/** Formes d'URL reconnues par le marquage et par la vérification avant suppression. */
+@SpringBootTest
+@ActiveProfiles("test")
+class ImagesReferenceesTests {
+
+	@Autowired
+	private ImagesReferencees references;
+
+	@Autowired
+	private PieceDetacheeRepository pieceRepo;
+
+	@Autowired
+	private ProduitFiniRepository produitRepo;
+
+	private String prefixe;
+
+	@BeforeEach
+	void images() {
+		prefixe = "ref" + System.nanoTime() + "_";
+		piece("/api/images/" + prefixe + "api.jpg");
+		piece(prefixe + "nu.jpg");
+		piece("/uploads/" + prefixe + "upload.png");
+		piece("http://localhost:8082/remote.php/dav/files/admin/pieces_images/" + prefixe + "dav.jpg");
+		piece("data:image/png;base64,AAAA");
+		piece("");
+		ProduitFini produit = new ProduitFini();
+		produit.setCode(prefixe + "produit");
+		produit.setImageUrl("/api/images/" + prefixe + "produit.jpg");
+		produitRepo.save(produit);
+	}
+
+	private void piece(String imageUrl) {
+		PieceDetachee p = new PieceDetachee();
+		p.setCodeBarre(prefixe + imageUrl.hashCode());
+		p.setReference(p.getCodeBarre());
+		p.setDesignation("Pièce illustrée");
+		p.setImageUrl(imageUrl);
+		pieceRepo.save(p);
+	}
+
+	@Test
+	void marquageRameneChaqueUrlASonNom() {
+		List<String> noms = new ArrayList<>();
+		int pages = 0;
+		String curseur = null;
+		do {
+			ImagesReferencees.Page page = references.page(curseur, 2);
+			noms.addAll(page.noms());
+			curseur = page.curseurSuivant();
+			pages++;
+		} while (curseur != null);
+
+		assertThat(pages).isGreaterThan(3);
+		assertThat(noms.stream().filter(n -> n.startsWith(prefixe))).containsExactlyInAnyOrder(
+				prefixe + "api.jpg", prefixe + "nu.jpg", prefixe + "upload.png", prefixe + "dav.jpg",
+				prefixe + "produit.jpg");
+		assertThat(noms).noneMatch(n -> n.contains("base64"));
+	}
+
+	@Test
+	void verificationAvantSuppressionSousToutesLesFormes() {
+		assertThat(references.estReferencee(prefixe + "api.jpg")).isTrue();
+		assertThat(references.estReferencee(prefixe + "nu.jpg")).isTrue();
+		assertThat(references.estReferencee(prefixe + "upload.png")).isTrue();
+		assertThat(references.estReferencee(prefixe + "dav.jpg")).isTrue();
+		assertThat(references.estReferencee(prefixe + "produit.jpg")).isTrue();
+		assertThat(references.estReferencee(prefixe + "absente.jpg")).isFalse();
+		// Format détecté par Cloudinary plutôt qu'extension enregistrée.
+		assertThat(references.estReferencee(prefixe + "api.png")).isTrue();
+		assertThat(references.estReferencee(prefixe + "dav")).isTrue();
+		// « _ » n'est pas un joker : un autre nom de même longueur ne correspond pas.
+		assertThat(references.estReferencee(prefixe.replace('_', 'x') + "api.jpg")).isFalse();
+	}
+}
@@ -0,0 +1,100 @@
+package com.gestionStock.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/** Cache des droits de {@link JwtAuthConverter}. */
+class JwtAuthConverterTests {
+
+	private SimpleMeterRegistry registry;
+	private JwtAuthConverter converter;
+
+	@BeforeEach
+	void demarrer() {
+		registry = new SimpleMeterRegistry();
+		converter = new JwtAuthConverter(registry, 100, Duration.ofHours(1));
+		ReflectionTestUtils.setField(converter, "principalAttribute", "preferred_username");
+		ReflectionTestUtils.setField(converter, "resourceId", "myclient");
+	}
+
+	private static Jwt jwt(String jti, Duration duree, String... roles) {
+		Instant maintenant = Instant.now();
+		Jwt.Builder builder = Jwt.withTokenValue("jeton-" + System.nanoTime())
+				.header("alg", "RS256")
+				.subject("utilisateur")
+				.issuedAt(maintenant)
+				.expiresAt(maintenant.plus(duree))
+				.claim("preferred_username", "magasinier")
+				.claim("realm_access", Map.of("roles", List.of(roles)));
+		if (jti != null) {
+			builder.jti(jti);
+		}
+		return builder.build();
+	}
+
+	private double echecs() {
+		return registry.get("cache.gets").tag("cache", "jwt.droits").tag("result", "miss").functionCounter().count();
+	}
+
+	@Test
+	void droitsCalculesUneFoisParJeton() {
+		AbstractAuthenticationToken premier = converter.convert(jwt("a", Duration.ofMinutes(5), "Magasinier"));
+		AbstractAuthenticationToken second = converter.convert(jwt("a", Duration.ofMinutes(5), "Magasinier"));
+
+		assertThat(premier.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+				.containsExactly("ROLE_MAGASINIER");
+		assertThat(second.getAuthorities().iterator().next()).isSameAs(premier.getAuthorities().iterator().next());
+		assertThat(premier.getName()).isEqualTo("magasinier");
+		assertThat(echecs()).isEqualTo(1);
+	}
+
+	@Test
+	void autoritesPartageesEntreJetons() {
+		AbstractAuthenticationToken a = converter.convert(jwt("a", Duration.ofMinutes(5), "Responsable logistique"));
+		AbstractAuthenticationToken b = converter.convert(jwt("b", Duration.ofMinutes(5), "Responsable logistique"));
+
+		assertThat(a.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+				.containsExactly("ROLE_RESPONSABLE_LOGISTIQUE");
+		assertThat(b.getAuthorities().iterator().next()).isSameAs(a.getAuthorities().iterator().next());
+		assertThat(echecs()).isEqualTo(2);
+	}
+
+	@Test
+	void entreeExpireAvecLeJeton() throws Exception {
+		Jwt jwt = jwt("court", Duration.ofSeconds(1), "Magasinier");
+		converter.convert(jwt);
+		converter.convert(jwt);
+		assertThat(echecs()).isEqualTo(1);
+
+		Thread.sleep(1200);
+		converter.convert(jwt);
+
+		assertThat(echecs()).isEqualTo(2);
+	}
+
+	@Test
+	void sansJtiLaCleEstFaiteDesClaimsDeRoles() {
+		converter.convert(jwt(null, Duration.ofMinutes(5), "Magasinier"));
+		converter.convert(jwt(null, Duration.ofMinutes(5), "Magasinier"));
+		assertThat(echecs()).isEqualTo(1);
+
+		AbstractAuthenticationToken auditeur = converter.convert(jwt(null, Duration.ofMinutes(5), "Auditeur"));
+
+		assertThat(auditeur.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+				.containsExactly("ROLE_AUDITEUR");
+		assertThat(echecs()).isEqualTo(2);
+	}
+}
@@ -0,0 +1,132 @@
+package com.gestionStock.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.gestionStock.backend.service.user.JetonAdminKeycloak;
+import com.gestionStock.backend.service.user.KeycloakAdminService;
+import com.gestionStock.backend.support.KeycloakLocal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/** Client d'administration Keycloak, contre un Keycloak local. */
+class KeycloakAdminTests {
+
+	private KeycloakLocal keycloak;
+	private SimpleMeterRegistry registry;
+
+	@BeforeEach
+	void demarrer() throws Exception {
+		keycloak = new KeycloakLocal(100);
+		registry = new SimpleMeterRegistry();
+	}
+
+	@AfterEach
+	void arreter() {
+		keycloak.close();
+	}
+
+	private JetonAdminKeycloak jetons(Duration marge) {
+		return new JetonAdminKeycloak(WebClient.builder(), keycloak.url(), "master", "admin-cli", "admin", "admin",
+				marge, registry);
+	}
+
+	@Test
+	void demandesSimultaneesPartagentUnSeulJeton() {
+		JetonAdminKeycloak jetons = jetons(Duration.ofSeconds(30));
+
+		List<CompletableFuture<String>> demandes = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			demandes.add(CompletableFuture.supplyAsync(jetons::jetonBloquant));
+		}
+
+		assertThat(demandes.stream().map(CompletableFuture::join).distinct()).hasSize(1);
+		assertThat(keycloak.jetons("password")).isEqualTo(1);
+		assertThat(jetons.jetonBloquant()).isEqualTo(demandes.get(0).join());
+		assertThat(keycloak.jetons("password")).isEqualTo(1);
+		assertThat(registry.get("keycloak.admin.jeton").tag("type", "identifiants").tag("resultat", "succes").timer()
+				.count()).isEqualTo(1);
+	}
+
+	@Test
+	void renouvelleAvantExpirationAvecLeRefreshToken() throws Exception {
+		keycloak.dureeJeton(20);
+		JetonAdminKeycloak jetons = jetons(Duration.ofSeconds(30));
+		String premier = jetons.jetonBloquant();
+		keycloak.dureeJeton(300);
+
+		// Dans la marge : le jeton courant reste servi pendant le renouvellement.
+		assertThat(jetons.jetonBloquant()).isEqualTo(premier);
+		for (int i = 0; i < 50 && keycloak.jetons("refresh_token") == 0; i++) {
+			Thread.sleep(20);
+		}
+		for (int i = 0; i < 50 && jetons.jetonBloquant().equals(premier); i++) {
+			Thread.sleep(20);
+		}
+
+		assertThat(keycloak.jetons("refresh_token")).isEqualTo(1);
+		assertThat(keycloak.jetons("password")).isEqualTo(1);
+		assertThat(jetons.jetonBloquant()).isNotEqualTo(premier);
+	}
+
+	@Test
+	void jetonInvalideEstRedemande() {
+		JetonAdminKeycloak jetons = jetons(Duration.ofSeconds(30));
+		String premier = jetons.jetonBloquant();
+
+		jetons.invalider(premier);
+
+		assertThat(jetons.jetonBloquant()).isNotEqualTo(premier);
+		assertThat(keycloak.jetons("password")).isEqualTo(2);
+	}
+
+	@Test
+	void utilisateursParPagesEnParallele() {
+		List<String> emails = new ArrayList<>();
+		for (int i = 0; i < 250; i++) {
+			emails.add("u" + i + "@stock.local");
+			keycloak.ajouterUtilisateur(emails.get(i));
+		}
+		KeycloakAdminService admin = new KeycloakAdminService(WebClient.builder(), jetons(Duration.ofSeconds(30)),
+				keycloak.url(), "myrealm", 50, 2);
+
+		List<Map<String, Object>> utilisateurs = admin.utilisateurs().collectList().block();
+
+		assertThat(utilisateurs).extracting(u -> u.get("email")).containsExactlyElementsOf(emails);
+		assertThat(keycloak.requetes("count")).isEqualTo(1);
+		assertThat(keycloak.requetes("users")).isEqualTo(5);
+		assertThat(keycloak.requetesSimultaneesMax()).isEqualTo(2);
+	}
+
+	@Test
+	void rolesLusParRolePlutotQueParUtilisateur() {
+		String admin1 = keycloak.ajouterUtilisateur("admin@stock.local", "Administrateur");
+		List<String> magasiniers = new ArrayList<>();
+		for (int i = 0; i < 120; i++) {
+			magasiniers.add(keycloak.ajouterUtilisateur("m" + i + "@stock.local", "Magasinier"));
+		}
+		keycloak.ajouterUtilisateur("sans-role@stock.local");
+		KeycloakAdminService admin = new KeycloakAdminService(WebClient.builder(), jetons(Duration.ofSeconds(30)),
+				keycloak.url(), "myrealm", 50, 4);
+
+		Map<String, Collection<String>> roles = admin.rolesParUtilisateur(KeycloakAdminService.ROLES_METIER.keySet())
+				.block();
+
+		assertThat(roles).hasSize(121);
+		assertThat(roles.get(admin1)).containsExactly("Administrateur");
+		assertThat(roles.get(magasiniers.get(119))).containsExactly("Magasinier");
+		// Une page par rôle, trois pour les 120 magasiniers.
+		assertThat(keycloak.requetes("role-users")).isEqualTo(6);
+	}
+}
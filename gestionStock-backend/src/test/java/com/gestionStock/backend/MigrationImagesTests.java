@@ -0,0 +1,129 @@
+package com.gestionStock.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gestionStock.backend.entity.piece.MigrationImages;
+import com.gestionStock.backend.entity.piece.PieceDetachee;
+import com.gestionStock.backend.repository.piece.MigrationImagesRepository;
+import com.gestionStock.backend.repository.piece.PieceDetacheeRepository;
+import com.gestionStock.backend.service.images.ImageDeriveeService;
+import com.gestionStock.backend.service.images.ImagesReferencees;
+import com.gestionStock.backend.service.images.LocalStorage;
+import com.gestionStock.backend.service.images.MigrationImagesService;
+import com.gestionStock.backend.service.images.NextcloudStorage;
+import com.gestionStock.backend.support.WebDavLocal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/** Migration du stockage local vers Nextcloud, contre un serveur WebDAV local. */
+@SpringBootTest
+@ActiveProfiles("test")
+class MigrationImagesTests {
+
+	@Autowired
+	private ImagesReferencees references;
+
+	@Autowired
+	private MigrationImagesRepository migrationRepo;
+
+	@Autowired
+	private PieceDetacheeRepository pieceRepo;
+
+	@TempDir
+	Path repertoire;
+
+	private WebDavLocal webDav;
+	private NextcloudStorage nextcloud;
+	private MigrationImagesService migration;
+	private String prefixe;
+
+	@BeforeEach
+	void demarrer() throws Exception {
+		migrationRepo.deleteAll();
+		webDav = new WebDavLocal();
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		nextcloud = new NextcloudStorage(webDav.url(), "admin", "secret", "/remote.php/dav/files/admin",
+				"pieces_images", 4, Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofSeconds(30), registry);
+		LocalStorage local = new LocalStorage();
+		ReflectionTestUtils.setField(local, "uploadDir", repertoire.toString());
+		ImageDeriveeService derivees = new ImageDeriveeService(local, List.of(), 1, 10, 40_000_000);
+		migration = new MigrationImagesService(Map.of("localStorage", local, "nextcloudStorage", nextcloud),
+				"local", "nextcloud", references, derivees, migrationRepo, 4, 2, registry);
+
+		prefixe = "migr" + System.nanoTime() + "_";
+		for (String nom : List.of("a.jpg", "b.jpg", "c.jpg")) {
+			Files.write(repertoire.resolve(prefixe + nom), ("image " + nom).getBytes(StandardCharsets.UTF_8));
+			PieceDetachee p = new PieceDetachee();
+			p.setCodeBarre(prefixe + nom);
+			p.setReference(p.getCodeBarre());
+			p.setDesignation("Pièce illustrée");
+			p.setImageUrl("/api/images/" + prefixe + nom);
+			pieceRepo.save(p);
+		}
+	}
+
+	@AfterEach
+	void arreter() throws Exception {
+		migration.fermer();
+		nextcloud.fermer();
+		webDav.close();
+	}
+
+	/** Lance la migration et attend qu'elle s'arrête. */
+	private MigrationImages migrer(boolean reprendre) throws Exception {
+		migration.demarrer(reprendre);
+		Instant limite = Instant.now().plusSeconds(10);
+		MigrationImages etat;
+		do {
+			Thread.sleep(20);
+			etat = migration.etat().orElseThrow();
+		} while (etat.getStatut() == MigrationImages.Statut.EN_COURS && Instant.now().isBefore(limite));
+		return etat;
+	}
+
+	@Test
+	void copieAltereeSupprimeeEtGardeeEnEchec() throws Exception {
+		webDav.alterer(prefixe + "b.jpg");
+
+		MigrationImages etat = migrer(false);
+
+		assertThat(etat.getStatut()).isEqualTo(MigrationImages.Statut.TERMINEE);
+		assertThat(etat.getEchecs()).isEqualTo(1);
+		assertThat(etat.getEnEchec()).containsExactly(prefixe + "b.jpg");
+		assertThat(webDav.noms()).contains(prefixe + "a.jpg", prefixe + "c.jpg")
+				.doesNotContain(prefixe + "b.jpg");
+	}
+
+	@Test
+	void repriseRetenteLesEchecsSansRecopierLeReste() throws Exception {
+		webDav.alterer(prefixe + "b.jpg");
+		migrer(false);
+		webDav.retablir(prefixe + "b.jpg");
+		int envois = webDav.requetes("PUT");
+
+		MigrationImages etat = migrer(true);
+
+		assertThat(etat.getStatut()).isEqualTo(MigrationImages.Statut.TERMINEE);
+		assertThat(etat.getEchecs()).isZero();
+		assertThat(etat.getEnEchec()).isEmpty();
+		assertThat(webDav.noms()).contains(prefixe + "a.jpg", prefixe + "b.jpg", prefixe + "c.jpg");
+		assertThat(webDav.requetes("PUT") - envois).isEqualTo(1);
+	}
+}
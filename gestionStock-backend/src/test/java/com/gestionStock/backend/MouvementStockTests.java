@@ -0,0 +1,431 @@
+package com.gestionStock.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.gestionStock.backend.config.MigrationStock;
+import com.gestionStock.backend.dto.piece.MouvementStockDto;
+import com.gestionStock.backend.dto.piece.MouvementStockRequest;
+import com.gestionStock.backend.entity.piece.CurseurProjection;
+import com.gestionStock.backend.entity.piece.Entrepot;
+import com.gestionStock.backend.entity.piece.MouvementStock;
+import com.gestionStock.backend.entity.piece.PieceDetachee;
+import com.gestionStock.backend.entity.piece.Stock;
+import com.gestionStock.backend.entity.piece.TypeMouvement;
+import com.gestionStock.backend.entity.piece.TypeStock;
+import com.gestionStock.backend.repository.piece.CurseurProjectionRepository;
+import com.gestionStock.backend.repository.piece.EntrepotRepository;
+import com.gestionStock.backend.repository.piece.MouvementStockRepository;
+import com.gestionStock.backend.repository.piece.PieceDetacheeRepository;
+import com.gestionStock.backend.repository.piece.StockRepository;
+import com.gestionStock.backend.service.piece.CleStock;
+import com.gestionStock.backend.service.piece.CompteurStockService;
+import com.gestionStock.backend.service.piece.MouvementStockService;
+import com.gestionStock.backend.service.piece.MouvementStockWriter;
+import com.gestionStock.backend.service.piece.PieceExportService;
+import com.gestionStock.backend.service.piece.StockProjectionWriter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Chemin d'écriture du journal : mouvements mis en file, écrits par lot,
+ * appliqués aux compteurs puis reportés dans {@code Stock}. Le report
+ * périodique est écarté : les tests le déclenchent eux-mêmes.
+ */
+@SpringBootTest(properties = "stock.compteurs.intervalle-report-ms=3600000")
+@ActiveProfiles("test")
+class MouvementStockTests {
+
+	@Autowired
+	private MouvementStockService mouvements;
+
+	@Autowired
+	private CompteurStockService compteurs;
+
+	@Autowired
+	private MigrationStock migration;
+
+	@Autowired
+	private PieceDetacheeRepository pieceRepo;
+
+	@Autowired
+	private EntrepotRepository entrepotRepo;
+
+	@Autowired
+	private StockRepository stockRepo;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transaction;
+
+	@Autowired
+	private MouvementStockRepository mouvementRepo;
+
+	@Autowired
+	private CurseurProjectionRepository curseurRepo;
+
+	@Autowired
+	private StockProjectionWriter projectionWriter;
+
+	@Autowired
+	private MouvementStockWriter writer;
+
+	@Autowired
+	private ApplicationEventPublisher evenements;
+
+	@Autowired
+	private PieceExportService export;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	private Long piece;
+	private Long nord;
+	private Long sud;
+
+	@BeforeEach
+	void jeuDeDonnees() {
+		PieceDetachee p = new PieceDetachee();
+		p.setCodeBarre("MVT-" + System.nanoTime());
+		p.setReference(p.getCodeBarre());
+		p.setDesignation("Pièce mouvementée");
+		piece = pieceRepo.save(p).getId();
+		nord = entrepot("Nord");
+		sud = entrepot("Sud");
+	}
+
+	private Long entrepot(String nom) {
+		Entrepot e = new Entrepot();
+		e.setNomEntrepot(nom);
+		e.setAdresse(nom + " " + System.nanoTime());
+		e.setVille(nom);
+		return entrepotRepo.save(e).getId();
+	}
+
+	private static MouvementStockRequest mouvement(TypeMouvement typeMouvement, Long pieceId, Long entrepotId,
+			Long destinationId, TypeStock type, int quantite) {
+		return new MouvementStockRequest(typeMouvement, pieceId, entrepotId, destinationId, type, quantite, null);
+	}
+
+	private List<MouvementStockDto> enregistrer(MouvementStockRequest... demandes) throws Exception {
+		CompletableFuture<List<MouvementStockDto>> resultat = mouvements.enregistrer(List.of(demandes), "test");
+		mouvements.vider();
+		return resultat.get(5, TimeUnit.SECONDS);
+	}
+
+	/** Lignes {@code stock} de la pièce, par "entrepôt/type". */
+	private Map<String, Integer> lignesStock() {
+		Map<String, Integer> lignes = new HashMap<>();
+		jdbcTemplate.query("SELECT entrepot_id, type, quantite FROM stock WHERE piece_detachee_id = ?",
+				ligne -> {
+					lignes.put(ligne.getLong(1) + "/" + ligne.getString(2), ligne.getInt(3));
+				}, piece);
+		return lignes;
+	}
+
+	@Test
+	void mouvementsReportesDansStock() throws Exception {
+		List<MouvementStockDto> ecrits = enregistrer(
+				mouvement(TypeMouvement.ENTREE, piece, nord, null, null, 10),
+				mouvement(TypeMouvement.SORTIE, piece, nord, null, TypeStock.DISPONIBLE, 3),
+				mouvement(TypeMouvement.TRANSFERT, piece, nord, sud, TypeStock.DISPONIBLE, 2),
+				mouvement(TypeMouvement.ENTREE, piece, nord, null, TypeStock.RESERVE, 4));
+
+		assertThat(ecrits).hasSize(4);
+		assertThat(compteurs.quantite(piece, nord, TypeStock.DISPONIBLE)).isEqualTo(5);
+		assertThat(compteurs.quantite(piece, sud, TypeStock.DISPONIBLE)).isEqualTo(2);
+
+		compteurs.reporter();
+
+		// Deux types pour le même couple (pièce, entrepôt) : la contrainte porte sur les trois colonnes.
+		assertThat(lignesStock()).containsOnly(
+				Map.entry(nord + "/DISPONIBLE", 5),
+				Map.entry(sud + "/DISPONIBLE", 2),
+				Map.entry(nord + "/RESERVE", 4));
+		assertThat(curseurRepo.findById("stock")).get().extracting(CurseurProjection::getDernierMouvementId)
+				.isEqualTo(ecrits.get(ecrits.size() - 1).id());
+	}
+
+	@Test
+	void reportSuivantMetAJourLesLignesExistantes() throws Exception {
+		enregistrer(mouvement(TypeMouvement.ENTREE, piece, nord, null, TypeStock.DISPONIBLE, 10));
+		compteurs.reporter();
+		enregistrer(mouvement(TypeMouvement.SORTIE, piece, nord, null, TypeStock.DISPONIBLE, 4),
+				mouvement(TypeMouvement.AJUSTEMENT, piece, nord, null, TypeStock.DISPONIBLE, -1));
+		compteurs.reporter();
+
+		assertThat(lignesStock()).containsOnly(Map.entry(nord + "/DISPONIBLE", 5));
+	}
+
+	@Test
+	void identifiantsTiresCommeParLEntite() throws Exception {
+		Stock avant = nouvelleLigne(TypeStock.EN_REAPPROVISIONNEMENT, sud);
+		enregistrer(mouvement(TypeMouvement.ENTREE, piece, nord, null, TypeStock.DISPONIBLE, 1));
+		compteurs.reporter();
+		Stock apres = nouvelleLigne(TypeStock.RESERVE, sud);
+
+		List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM stock WHERE piece_detachee_id = ?", Long.class,
+				piece);
+		assertThat(ids).hasSize(3).doesNotHaveDuplicates().contains(avant.getId(), apres.getId());
+	}
+
+	/** Ligne créée par Hibernate, hors du chemin du journal. */
+	private Stock nouvelleLigne(TypeStock type, Long entrepotId) {
+		return transaction.execute(statut -> {
+			Stock stock = new Stock();
+			stock.setPiece(pieceRepo.getReferenceById(piece));
+			stock.setEntrepot(entrepotRepo.getReferenceById(entrepotId));
+			stock.setType(type);
+			return stockRepo.save(stock);
+		});
+	}
+
+	@Test
+	void migrationDepuisLaCleADeuxColonnes() {
+		jdbcTemplate.execute("ALTER TABLE stock DROP CONSTRAINT " + Stock.CLE_UNIQUE);
+		jdbcTemplate.execute("ALTER TABLE stock ADD CONSTRAINT uk_stock_ancienne UNIQUE (piece_detachee_id, entrepot_id)");
+		jdbcTemplate.execute("ALTER TABLE stock ALTER COLUMN type SET NULL");
+		jdbcTemplate.update("INSERT INTO stock (id, piece_detachee_id, entrepot_id, type, quantite) VALUES (?, ?, ?, NULL, 7)",
+				-1L, piece, nord);
+
+		migration.migrer();
+		migration.migrer();
+
+		assertThat(lignesStock()).containsOnly(Map.entry(nord + "/DISPONIBLE", 7));
+		assertThat(jdbcTemplate.queryForList("""
+				SELECT constraint_name FROM information_schema.table_constraints
+				WHERE LOWER(table_name) = 'stock' AND constraint_type = 'UNIQUE'
+				""", String.class)).containsExactly(Stock.CLE_UNIQUE);
+		assertThat(jdbcTemplate.queryForObject("""
+				SELECT is_nullable FROM information_schema.columns
+				WHERE LOWER(table_name) = 'stock' AND LOWER(column_name) = 'type'
+				""", String.class)).isEqualTo("NO");
+
+		// La seconde ligne de type pour ce couple était refusée par l'ancienne contrainte.
+		nouvelleLigne(TypeStock.RESERVE, nord);
+	}
+
+	/** Instance neuve, comme au redémarrage de l'application. */
+	private CompteurStockService nouveauxCompteurs() {
+		return nouveauxCompteurs(stockRepo, 100_000);
+	}
+
+	private CompteurStockService nouveauxCompteurs(StockRepository repo, long piecesMax) {
+		return new CompteurStockService(repo, mouvementRepo, curseurRepo, projectionWriter, evenements,
+				new SimpleMeterRegistry(), piecesMax);
+	}
+
+	@Test
+	void mouvementsNonReportesRejouesAuRedemarrage() throws Exception {
+		enregistrer(mouvement(TypeMouvement.ENTREE, piece, nord, null, TypeStock.DISPONIBLE, 10));
+		compteurs.reporter();
+		enregistrer(mouvement(TypeMouvement.SORTIE, piece, nord, null, TypeStock.DISPONIBLE, 3),
+				mouvement(TypeMouvement.TRANSFERT, piece, nord, sud, TypeStock.DISPONIBLE, 2));
+		// Arrêt brutal : les deux derniers mouvements sont au journal mais pas dans Stock.
+		assertThat(lignesStock()).containsOnly(Map.entry(nord + "/DISPONIBLE", 10));
+
+		CompteurStockService apresRedemarrage = nouveauxCompteurs();
+		ReflectionTestUtils.invokeMethod(apresRedemarrage, "rejouer");
+
+		assertThat(apresRedemarrage.quantite(piece, nord, TypeStock.DISPONIBLE)).isEqualTo(5);
+		assertThat(apresRedemarrage.quantite(piece, sud, TypeStock.DISPONIBLE)).isEqualTo(2);
+	}
+
+	@Test
+	void applicationsSimultanees() throws Exception {
+		Stock existante = nouvelleLigne(TypeStock.DISPONIBLE, nord);
+		jdbcTemplate.update("UPDATE stock SET quantite = 100 WHERE id = ?", existante.getId());
+		List<MouvementStockRequest> demandes = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			demandes.add(i % 2 == 0 ? mouvement(TypeMouvement.SORTIE, piece, nord, null, TypeStock.DISPONIBLE, 1)
+					: mouvement(TypeMouvement.ENTREE, piece, sud, null, TypeStock.DISPONIBLE, 2));
+		}
+		enregistrer(demandes.toArray(MouvementStockRequest[]::new));
+		List<MouvementStock> journal = mouvementRepo.findByPiece_IdAndIdLessThanOrderByIdDesc(piece, Long.MAX_VALUE,
+				Limit.unlimited());
+
+		// Compteurs neufs : chaque clé est chargée en base par le premier des appels simultanés.
+		CompteurStockService neufs = nouveauxCompteurs();
+		int appels = 8;
+		CountDownLatch depart = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(appels);
+		try {
+			List<Future<?>> resultats = new ArrayList<>();
+			for (int i = 0; i < appels; i++) {
+				List<MouvementStock> part = new ArrayList<>();
+				for (int j = i; j < journal.size(); j += appels) {
+					part.add(journal.get(j));
+				}
+				resultats.add(executor.submit(() -> {
+					depart.await();
+					neufs.appliquer(part);
+					return null;
+				}));
+			}
+			depart.countDown();
+			for (Future<?> resultat : resultats) {
+				resultat.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(neufs.quantite(piece, nord, TypeStock.DISPONIBLE)).isEqualTo(0);
+		assertThat(neufs.quantite(piece, sud, TypeStock.DISPONIBLE)).isEqualTo(200);
+		assertThat(neufs.quantites(piece)).hasSize(2);
+	}
+
+	@Test
+	void echecDesCompteursApresValidation() throws Exception {
+		AtomicBoolean panne = new AtomicBoolean();
+		CompteurStockService defaillants = new CompteurStockService(stockRepo, mouvementRepo, curseurRepo,
+				projectionWriter, evenements, new SimpleMeterRegistry(), 100_000) {
+			@Override
+			public void appliquer(List<MouvementStock> lot) {
+				if (panne.getAndSet(false)) {
+					// Une partie du lot seulement atteint les compteurs.
+					super.appliquer(lot.subList(0, 1));
+					throw new IllegalStateException("Panne simulée");
+				}
+				super.appliquer(lot);
+			}
+		};
+		ReflectionTestUtils.invokeMethod(defaillants, "rejouer");
+		MouvementStockService service = new MouvementStockService(writer, defaillants, mouvementRepo, pieceRepo,
+				entrepotRepo, 100, 500, 2000);
+
+		panne.set(true);
+		CompletableFuture<List<MouvementStockDto>> resultat = service.enregistrer(List.of(
+				mouvement(TypeMouvement.ENTREE, piece, nord, null, TypeStock.DISPONIBLE, 4),
+				mouvement(TypeMouvement.ENTREE, piece, sud, null, TypeStock.DISPONIBLE, 3)), "test");
+		service.vider();
+
+		// Les mouvements sont en base : l'appelant l'apprend, et les compteurs repartent du journal.
+		assertThat(resultat.get(5, TimeUnit.SECONDS)).hasSize(2);
+		assertThat(defaillants.quantite(piece, nord, TypeStock.DISPONIBLE)).isEqualTo(4);
+		assertThat(defaillants.quantite(piece, sud, TypeStock.DISPONIBLE)).isEqualTo(3);
+	}
+
+	@Test
+	void lectureSimultaneeDUnePiece() throws Exception {
+		nouvelleLigne(TypeStock.DISPONIBLE, nord);
+		nouvelleLigne(TypeStock.DISPONIBLE, sud);
+		CountDownLatch lecture = new CountDownLatch(1);
+		CountDownLatch reponse = new CountDownLatch(1);
+		StockRepository lent = (StockRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { StockRepository.class }, (proxy, methode, arguments) -> {
+					if (methode.getName().equals("findQuantitesParPieces")) {
+						lecture.countDown();
+						reponse.await();
+					}
+					try {
+						return methode.invoke(stockRepo, arguments);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+				});
+		CompteurStockService neufs = nouveauxCompteurs(lent, 100_000);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Map<CleStock, Long>> premier = executor.submit(() -> neufs.quantites(piece));
+			assertThat(lecture.await(5, TimeUnit.SECONDS)).isTrue();
+			// Le second appel trouve la pièce en cours de lecture : il attend au lieu de la voir vide.
+			Future<Map<CleStock, Long>> second = executor.submit(() -> neufs.quantites(piece));
+			Thread.sleep(100);
+			assertThat(second).isNotDone();
+			reponse.countDown();
+
+			assertThat(premier.get(5, TimeUnit.SECONDS)).hasSize(2);
+			assertThat(second.get(5, TimeUnit.SECONDS)).hasSize(2);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void seulesLesPiecesNonReporteesRestentEnMemoire() throws Exception {
+		Stock ligne = nouvelleLigne(TypeStock.DISPONIBLE, nord);
+		enregistrer(mouvement(TypeMouvement.ENTREE, piece, nord, null, TypeStock.DISPONIBLE, 5));
+		List<MouvementStock> journal = mouvementRepo.findByPiece_IdAndIdLessThanOrderByIdDesc(piece, Long.MAX_VALUE,
+				Limit.unlimited());
+		// Aucune pièce gardée en cache : toute pièce sans variation en attente est relue.
+		CompteurStockService sansCache = nouveauxCompteurs(stockRepo, 0);
+
+		jdbcTemplate.update("UPDATE stock SET quantite = 7 WHERE id = ?", ligne.getId());
+		assertThat(sansCache.quantite(piece, nord, TypeStock.DISPONIBLE)).isEqualTo(7);
+		// Une ligne inconnue vaut zéro sans créer de compteur.
+		assertThat(sansCache.quantite(piece, sud, TypeStock.RESERVE)).isZero();
+		assertThat(sansCache.quantites(piece)).containsOnlyKeys(new CleStock(piece, nord, TypeStock.DISPONIBLE));
+
+		sansCache.appliquer(journal);
+		jdbcTemplate.update("UPDATE stock SET quantite = 100 WHERE id = ?", ligne.getId());
+		assertThat(sansCache.quantite(piece, nord, TypeStock.DISPONIBLE)).isEqualTo(12);
+
+		sansCache.reporter();
+		assertThat(lignesStock()).containsOnly(Map.entry(nord + "/DISPONIBLE", 105));
+		jdbcTemplate.update("UPDATE stock SET quantite = 50 WHERE id = ?", ligne.getId());
+		assertThat(sansCache.quantite(piece, nord, TypeStock.DISPONIBLE)).isEqualTo(50);
+	}
+
+	@Test
+	void exportCompteLeDisponibleDesCompteurs() throws Exception {
+		enregistrer(mouvement(TypeMouvement.ENTREE, piece, nord, null, TypeStock.DISPONIBLE, 5),
+				mouvement(TypeMouvement.ENTREE, piece, sud, null, TypeStock.DISPONIBLE, 2),
+				mouvement(TypeMouvement.ENTREE, piece, nord, null, TypeStock.RESERVE, 3));
+		// Rien n'est encore reporté dans Stock : la quantité exportée vient des compteurs.
+		assertThat(lignesStock()).isEmpty();
+
+		ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+		export.exporterNdjson(sortie);
+
+		String ligne = sortie.toString(StandardCharsets.UTF_8).lines()
+				.filter(l -> l.startsWith("{\"id\":" + piece + ",")).findFirst().orElseThrow();
+		assertThat(ligne).contains("\"quantiteTotale\":7");
+	}
+
+	@Test
+	void exportAjouteLesMouvementsNonReportesSansRemplirLesCompteurs() throws Exception {
+		Stock ligne = nouvelleLigne(TypeStock.DISPONIBLE, nord);
+		jdbcTemplate.update("UPDATE stock SET quantite = 4 WHERE id = ?", ligne.getId());
+		enregistrer(mouvement(TypeMouvement.ENTREE, piece, sud, null, TypeStock.DISPONIBLE, 5));
+		double enCache = registry.get("cache.size").tag("cache", "stock.compteurs").gauge().value();
+
+		ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+		export.exporterNdjson(sortie);
+
+		String exportee = sortie.toString(StandardCharsets.UTF_8).lines()
+				.filter(l -> l.startsWith("{\"id\":" + piece + ",")).findFirst().orElseThrow();
+		assertThat(exportee).contains("\"quantiteTotale\":9");
+		assertThat(registry.get("cache.size").tag("cache", "stock.compteurs").gauge().value()).isEqualTo(enCache);
+	}
+}
@@ -0,0 +1,226 @@
+package com.gestionStock.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gestionStock.backend.dto.piece.RapportNettoyage;
+import com.gestionStock.backend.service.images.ImageDeriveeService;
+import com.gestionStock.backend.service.images.ImagesReferencees;
+import com.gestionStock.backend.service.images.LocalStorage;
+import com.gestionStock.backend.service.images.NettoyageImagesService;
+import com.gestionStock.backend.service.images.PageImages;
+import com.gestionStock.backend.service.images.StockageParContenu;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/** Marquage et balayage de {@link NettoyageImagesService} sur un stockage local. */
+class NettoyageImagesTests {
+
+	@TempDir
+	Path repertoire;
+
+	/** Noms vus au marquage. */
+	private final Set<String> marquees = new TreeSet<>();
+	/** Noms référencés au moment de la suppression (marquage compris). */
+	private final Set<String> enBase = ConcurrentHashMap.newKeySet();
+
+	/** Noms touchés pendant la vérification en base, comme par un envoi identique concurrent. */
+	private final Set<String> reutilisees = ConcurrentHashMap.newKeySet();
+
+	private LocalStorage storage;
+	private NettoyageImagesService nettoyage;
+
+	@BeforeEach
+	void demarrer() {
+		storage = new LocalStorage();
+		ReflectionTestUtils.setField(storage, "uploadDir", repertoire.toString());
+		ImagesReferencees references = new ImagesReferencees(null) {
+			@Override
+			public Page page(String curseur, int taille) {
+				List<String> noms = marquees.stream().filter(n -> curseur == null || n.compareTo(curseur) > 0)
+						.limit(taille).toList();
+				return new Page(noms, noms.size() < taille ? null : noms.get(noms.size() - 1));
+			}
+
+			@Override
+			public boolean estReferencee(String nom) {
+				if (reutilisees.contains(nom)) {
+					try {
+						storage.toucher(nom);
+					} catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+				}
+				return enBase.contains(nom);
+			}
+		};
+		ImageDeriveeService derivees = new ImageDeriveeService(storage, List.of(160, 480), 1, 10, 40_000_000);
+		nettoyage = new NettoyageImagesService(storage, Map.of("localStorage", storage), "local", references,
+				derivees, Duration.ofDays(7), 1000, 2, new SimpleMeterRegistry());
+	}
+
+	private void referencer(String nom) {
+		marquees.add(nom);
+		enBase.add(nom);
+	}
+
+	private void fichier(String nom, Duration age) throws Exception {
+		Path p = Files.writeString(repertoire.resolve(nom), nom);
+		Files.setLastModifiedTime(p, FileTime.from(Instant.now().minus(age)));
+	}
+
+	private RapportNettoyage nettoyer(boolean simulation) throws Exception {
+		assertThat(nettoyage.lancer(simulation)).isTrue();
+		for (int i = 0; i < 250 && nettoyage.dernierRapport().map(r -> r.simulation() != simulation).orElse(true); i++) {
+			Thread.sleep(20);
+		}
+		return nettoyage.dernierRapport().orElseThrow();
+	}
+
+	private boolean present(String nom) {
+		return Files.exists(repertoire.resolve(nom));
+	}
+
+	@Test
+	void supprimeLesOrphelinesAnciennesSeulement() throws Exception {
+		referencer("a.jpg");
+		fichier("a.jpg", Duration.ofDays(30));
+		fichier("b.jpg", Duration.ofDays(30));
+		fichier("recente.jpg", Duration.ofHours(1));
+
+		RapportNettoyage rapport = nettoyer(false);
+
+		assertThat(present("a.jpg")).isTrue();
+		assertThat(present("b.jpg")).isFalse();
+		assertThat(present("recente.jpg")).isTrue();
+		assertThat(rapport.referencees()).isEqualTo(1);
+		assertThat(rapport.examinees()).isEqualTo(3);
+		assertThat(rapport.recentes()).isEqualTo(1);
+		assertThat(rapport.supprimees()).isEqualTo(1);
+	}
+
+	@Test
+	void miniatureSuitSonOriginal() throws Exception {
+		referencer("a.jpg");
+		fichier("a.jpg", Duration.ofDays(30));
+		fichier("w160_a.jpg", Duration.ofDays(30));
+		fichier("w480_b.jpg", Duration.ofDays(30));
+		// Largeur non configurée : ce n'est pas une miniature de a.jpg.
+		fichier("w999_a.jpg", Duration.ofDays(30));
+
+		nettoyer(false);
+
+		assertThat(present("w160_a.jpg")).isTrue();
+		assertThat(present("w480_b.jpg")).isFalse();
+		assertThat(present("w999_a.jpg")).isFalse();
+	}
+
+	@Test
+	void extensionDifferenteDuFormatListe() throws Exception {
+		// Cloudinary liste <identifiant>.<format détecté> : un PNG envoyé en .jpg revient en .png.
+		referencer("a.jpg");
+		fichier("a.png", Duration.ofDays(30));
+		fichier("w160_a.png", Duration.ofDays(30));
+
+		RapportNettoyage rapport = nettoyer(false);
+
+		assertThat(present("a.png")).isTrue();
+		assertThat(present("w160_a.png")).isTrue();
+		assertThat(rapport.orphelines()).isZero();
+	}
+
+	@Test
+	void envoiIdentiqueRepartPourUnDelaiDeGrace() throws Exception {
+		byte[] contenu = "photo".getBytes(StandardCharsets.UTF_8);
+		String nom = new StockageParContenu(storage, new SimpleMeterRegistry())
+				.uploadImage("photo.jpg", new ByteArrayInputStream(contenu), contenu.length);
+		nom = nom.substring(nom.lastIndexOf('/') + 1);
+		Files.setLastModifiedTime(repertoire.resolve(nom), FileTime.from(Instant.now().minus(Duration.ofDays(30))));
+
+		// Orpheline ancienne reprise par un nouvel envoi, avant que la pièce soit enregistrée.
+		new StockageParContenu(storage, new SimpleMeterRegistry())
+				.uploadImage("photo.jpg", new ByteArrayInputStream(contenu), contenu.length);
+		RapportNettoyage rapport = nettoyer(false);
+
+		assertThat(present(nom)).isTrue();
+		assertThat(rapport.recentes()).isEqualTo(1);
+	}
+
+	@Test
+	void imageToucheeApresLeListageEstGardee() throws Exception {
+		fichier("e.jpg", Duration.ofDays(30));
+		reutilisees.add("e.jpg");
+
+		RapportNettoyage rapport = nettoyer(false);
+
+		assertThat(present("e.jpg")).isTrue();
+		assertThat(rapport.orphelines()).isZero();
+		assertThat(rapport.recentes()).isEqualTo(1);
+	}
+
+	@Test
+	void listageLocalEnUnSeulParcours() throws Exception {
+		for (String nom : List.of("a.jpg", "b.jpg", "c.jpg", "d.jpg", "e.jpg")) {
+			fichier(nom, Duration.ofDays(1));
+		}
+
+		List<String> noms = new ArrayList<>();
+		PageImages page = storage.lister(null, 2);
+		noms.addAll(page.fichiers().stream().map(PageImages.Fichier::filename).toList());
+		String premierCurseur = page.curseurSuivant();
+		while (page.curseurSuivant() != null) {
+			page = storage.lister(page.curseurSuivant(), 2);
+			noms.addAll(page.fichiers().stream().map(PageImages.Fichier::filename).toList());
+		}
+
+		assertThat(noms).containsExactlyInAnyOrder("a.jpg", "b.jpg", "c.jpg", "d.jpg", "e.jpg");
+		// Chaque curseur ne sert qu'une fois : le parcours a avancé.
+		assertThatThrownBy(() -> storage.lister(premierCurseur, 2)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void simulationNeSupprimeRien() throws Exception {
+		fichier("b.jpg", Duration.ofDays(30));
+		fichier("c.jpg", Duration.ofDays(30));
+
+		RapportNettoyage rapport = nettoyer(true);
+
+		assertThat(present("b.jpg")).isTrue();
+		assertThat(present("c.jpg")).isTrue();
+		assertThat(rapport.orphelines()).isEqualTo(2);
+		assertThat(rapport.supprimees()).isZero();
+		assertThat(rapport.exemples()).containsExactlyInAnyOrder("b.jpg", "c.jpg");
+	}
+
+	@Test
+	void referencePoseeApresLeMarquageEstRespectee() throws Exception {
+		fichier("d.jpg", Duration.ofDays(30));
+		// Absente au marquage, référencée en base au moment de la suppression.
+		enBase.add("d.jpg");
+
+		RapportNettoyage rapport = nettoyer(false);
+
+		assertThat(present("d.jpg")).isTrue();
+		assertThat(rapport.orphelines()).isZero();
+		assertThat(rapport.supprimees()).isZero();
+	}
+}
@@ -0,0 +1,167 @@
+package com.gestionStock.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.gestionStock.backend.service.images.NextcloudStorage;
+import com.gestionStock.backend.service.images.PageImages;
+import com.gestionStock.backend.service.images.StockageParContenu;
+import com.gestionStock.backend.support.WebDavLocal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/** Client WebDAV partagé de {@link NextcloudStorage}, contre un serveur WebDAV local. */
+class NextcloudStorageTests {
+
+	private static final byte[] IMAGE = "contenu de l'image".getBytes(StandardCharsets.UTF_8);
+
+	private WebDavLocal webDav;
+	private SimpleMeterRegistry registry;
+	private NextcloudStorage storage;
+
+	@BeforeEach
+	void demarrer() throws Exception {
+		webDav = new WebDavLocal();
+		registry = new SimpleMeterRegistry();
+		storage = new NextcloudStorage(webDav.url(), "admin", "secret", "/remote.php/dav/files/admin",
+				"pieces_images", 4, Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofSeconds(30), registry);
+	}
+
+	@AfterEach
+	void arreter() throws Exception {
+		storage.fermer();
+		webDav.close();
+	}
+
+	@Test
+	void envoiPuisLecture() throws Exception {
+		String url = storage.saveImage("a.jpg", new ByteArrayInputStream(IMAGE));
+
+		assertThat(url).isEqualTo("/api/images/a.jpg");
+		try (InputStream is = storage.getImage("a.jpg")) {
+			assertThat(is.readAllBytes()).isEqualTo(IMAGE);
+		}
+		Resource image = storage.getImageResource("a.jpg");
+		assertThat(image.contentLength()).isEqualTo(IMAGE.length);
+		assertThat(image.lastModified()).isPositive();
+	}
+
+	@Test
+	void imageAbsente() throws Exception {
+		assertThat(storage.getImage("absente.jpg")).isNull();
+		assertThat(storage.getImageResource("absente.jpg")).isNull();
+	}
+
+	@Test
+	void dossierVerifieUneSeuleFois() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			storage.saveImage("image-" + i + ".jpg", new ByteArrayInputStream(IMAGE));
+		}
+
+		assertThat(webDav.requetes("HEAD")).isEqualTo(1);
+		assertThat(webDav.requetes("MKCOL")).isEqualTo(1);
+		assertThat(webDav.requetes("PUT")).isEqualTo(3);
+	}
+
+	@Test
+	void connexionReutiliseeEtAuthentificationPreemptive() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			storage.saveImage("image-" + i + ".jpg", new ByteArrayInputStream(IMAGE));
+			try (InputStream is = storage.getImage("image-" + i + ".jpg")) {
+				is.readAllBytes();
+			}
+		}
+
+		assertThat(webDav.connexions()).isEqualTo(1);
+		assertThat(webDav.sansAuthentification()).isZero();
+	}
+
+	@Test
+	void latenceMesureeParOperation() throws Exception {
+		storage.saveImage("a.jpg", new ByteArrayInputStream(IMAGE));
+		storage.getImageResource("a.jpg");
+		storage.getImageResource("absente.jpg");
+
+		assertThat(registry.get("nextcloud.requetes").tag("operation", "put").timer().count()).isEqualTo(1);
+		assertThat(registry.get("nextcloud.requetes").tag("operation", "propfind").tag("issue", "succes").timer()
+				.count()).isEqualTo(1);
+		assertThat(registry.get("nextcloud.requetes").tag("operation", "propfind").tag("issue", "erreur").timer()
+				.count()).isEqualTo(1);
+	}
+
+	@Test
+	void contenuIdentiqueStockeUneSeuleFois() throws Exception {
+		StockageParContenu parContenu = new StockageParContenu(storage, registry);
+
+		String premiere = parContenu.uploadImage(new MockMultipartFile("file", "photo.JPEG", "image/jpeg", IMAGE));
+		String seconde = parContenu.uploadImage(new MockMultipartFile("file", "autre.jpg", "image/jpeg", IMAGE));
+
+		assertThat(premiere).matches("/api/images/[0-9a-f]{64}\\.jpg").isEqualTo(seconde);
+		assertThat(webDav.requetes("PUT")).isEqualTo(1);
+		assertThat(registry.get("images.envois").tag("resultat", "doublon").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void doublonRemetLaDateAMaintenant() throws Exception {
+		StockageParContenu parContenu = new StockageParContenu(storage, registry);
+		String url = parContenu.uploadImage(new MockMultipartFile("file", "photo.jpg", "image/jpeg", IMAGE));
+		String nom = url.substring(url.lastIndexOf('/') + 1);
+		long initiale = storage.getImageResource(nom).lastModified();
+
+		long avant = Instant.now().minusSeconds(1).toEpochMilli();
+		parContenu.uploadImage(new MockMultipartFile("file", "photo.jpg", "image/jpeg", IMAGE));
+
+		assertThat(storage.getImageResource(nom).lastModified()).isGreaterThan(initiale)
+				.isGreaterThanOrEqualTo(avant);
+		assertThat(storage.toucher("absente.jpg")).isFalse();
+	}
+
+	@Test
+	void listeParPagesDeRecherche() throws Exception {
+		for (String nom : List.of("a.jpg", "b.jpg", "c.jpg", "d.jpg", "e.jpg")) {
+			storage.saveImage(nom, new ByteArrayInputStream(IMAGE));
+		}
+
+		List<String> noms = new ArrayList<>();
+		PageImages page = storage.lister(null, 2);
+		noms.addAll(page.fichiers().stream().map(PageImages.Fichier::filename).toList());
+		// Suppression d'un fichier déjà lu : la page suivante n'en saute aucun.
+		storage.supprimer("a.jpg");
+		while (page.curseurSuivant() != null) {
+			page = storage.lister(page.curseurSuivant(), 2);
+			noms.addAll(page.fichiers().stream().map(PageImages.Fichier::filename).toList());
+		}
+
+		assertThat(noms).containsExactly("a.jpg", "b.jpg", "c.jpg", "d.jpg", "e.jpg");
+		assertThat(webDav.requetes("SEARCH")).isEqualTo(3);
+		assertThat(webDav.requetes("PROPFIND")).isZero();
+	}
+
+	@Test
+	void envoiEnFluxRenommeOuSupprimeLeProvisoire() throws Exception {
+		StockageParContenu parContenu = new StockageParContenu(storage, registry);
+
+		String premiere = parContenu.uploadImage("photo.png", new ByteArrayInputStream(IMAGE), IMAGE.length);
+		String seconde = parContenu.uploadImage("photo.png", new ByteArrayInputStream(IMAGE), -1);
+
+		assertThat(premiere).matches("/api/images/[0-9a-f]{64}\\.png").isEqualTo(seconde);
+		assertThat(webDav.requetes("MOVE")).isEqualTo(1);
+		assertThat(webDav.requetes("DELETE")).isEqualTo(1);
+		try (InputStream is = storage.getImage(premiere.substring(premiere.lastIndexOf('/') + 1))) {
+			assertThat(is.readAllBytes()).isEqualTo(IMAGE);
+		}
+	}
+}
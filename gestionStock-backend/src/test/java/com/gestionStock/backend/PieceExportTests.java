@@ -0,0 +1,38 @@
+package com.gestionStock.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+/** Export du catalogue par {@code GET /api/pieces/export}. */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@WithMockUser(roles = "MAGASINIER")
+class PieceExportTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	void delaiPropreALExport() throws Exception {
+		MvcResult resultat = mockMvc.perform(get("/api/pieces/export"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		assertThat(resultat.getRequest().getAsyncContext().getTimeout()).isEqualTo(600_000);
+		mockMvc.perform(asyncDispatch(resultat)).andExpect(status().isOk());
+		assertThat(resultat.getResponse().getContentAsString()).startsWith("id;codeBarre;");
+	}
+}
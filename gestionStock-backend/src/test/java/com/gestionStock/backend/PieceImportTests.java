@@ -0,0 +1,103 @@
+package com.gestionStock.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.gestionStock.backend.dto.piece.RapportImport;
+import com.gestionStock.backend.repository.piece.CategorieRepository;
+import com.gestionStock.backend.repository.piece.PieceDetacheeRepository;
+import com.gestionStock.backend.repository.piece.ProduitFiniRepository;
+import com.gestionStock.backend.service.piece.PieceImportService;
+import com.gestionStock.backend.service.piece.PieceImportWriter;
+
+import tools.jackson.databind.ObjectMapper;
+
+/** Détection des doublons de l'import en masse, dans un lot et d'un lot à l'autre. */
+@SpringBootTest
+@ActiveProfiles("test")
+class PieceImportTests {
+
+	@Autowired
+	private PieceDetacheeRepository pieceRepo;
+
+	@Autowired
+	private CategorieRepository categorieRepo;
+
+	@Autowired
+	private ProduitFiniRepository produitRepo;
+
+	@Autowired
+	private PieceImportWriter writer;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	/** Lots de deux lignes, pour qu'un petit fichier en compte plusieurs. */
+	private PieceImportService importService;
+
+	private String prefixe;
+
+	@BeforeEach
+	void demarrer() {
+		importService = new PieceImportService(pieceRepo, categorieRepo, produitRepo, writer, objectMapper, 2);
+		prefixe = "IMP" + System.nanoTime() + "-";
+	}
+
+	private RapportImport importer(String... lignes) throws Exception {
+		StringBuilder csv = new StringBuilder("codeBarre;reference;designation;categorieCode\n");
+		for (String ligne : lignes) {
+			csv.append(ligne.replace("@", prefixe)).append('\n');
+		}
+		return importService.importer(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)),
+				"text/csv");
+	}
+
+	@Test
+	void doublonsDansUnMemeLot() throws Exception {
+		RapportImport rapport = importer(
+				"@A;@RA;Pièce A;",
+				"@A;@RB;Même code;",
+				"@C;@RC;Pièce C;",
+				"@D;@RC;Même référence;");
+
+		assertThat(rapport.importees()).isEqualTo(2);
+		assertThat(rapport.erreurs()).extracting(RapportImport.Erreur::ligne).containsExactly(3L, 5L);
+		assertThat(pieceRepo.findByCodeBarre(prefixe + "A").getReference()).isEqualTo(prefixe + "RA");
+	}
+
+	@Test
+	void doublonsDUnLotALAutre() throws Exception {
+		RapportImport rapport = importer(
+				"@A;@RA;Lot 1;",
+				"@B;@RB;Lot 1;",
+				"@C;@RC;Lot 2;",
+				"@A;@RX;Lot 2, code du lot 1;",
+				"@E;@RB;Lot 3, référence du lot 1;");
+
+		assertThat(rapport.lignesLues()).isEqualTo(5);
+		assertThat(rapport.importees()).isEqualTo(3);
+		assertThat(rapport.erreurs()).extracting(RapportImport.Erreur::ligne).containsExactly(5L, 6L);
+		assertThat(rapport.erreurs().get(0).message()).contains("code barre");
+		assertThat(rapport.erreurs().get(1).message()).contains("référence");
+	}
+
+	@Test
+	void ligneRejeteeNeReservePasSesCles() throws Exception {
+		RapportImport rapport = importer(
+				"@A;@RA;Catégorie inconnue;INCONNUE",
+				"@B;@RB;Lot 1;",
+				"@A;@RA;Lot 2, corrigée;");
+
+		assertThat(rapport.importees()).isEqualTo(2);
+		assertThat(rapport.erreurs()).singleElement().extracting(RapportImport.Erreur::ligne).isEqualTo(2L);
+		assertThat(pieceRepo.findByCodeBarre(prefixe + "A").getDesignation()).isEqualTo("Lot 2, corrigée");
+	}
+}
@@ -0,0 +1,50 @@
+package com.gestionStock.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.gestionStock.backend.dto.piece.PieceResume;
+import com.gestionStock.backend.entity.piece.PieceDetachee;
+import com.gestionStock.backend.service.piece.PieceDetacheeService;
+import com.gestionStock.backend.service.piece.PieceParCodeService;
+
+/** Invalidation du cache des lectures par code barre. */
+@SpringBootTest
+@ActiveProfiles("test")
+class PieceParCodeTests {
+
+	@Autowired
+	private PieceDetacheeService pieceService;
+
+	@Autowired
+	private PieceParCodeService parCode;
+
+	private static PieceDetachee piece(String codeBarre, String reference) {
+		PieceDetachee p = new PieceDetachee();
+		p.setCodeBarre(codeBarre);
+		p.setReference(reference);
+		p.setDesignation("Pièce " + reference);
+		return p;
+	}
+
+	@Test
+	void changementDeCodeInvalideLAncienEtLeNouveau() {
+		String suffixe = String.valueOf(System.nanoTime());
+		String ancien = "A-" + suffixe;
+		String nouveau = "N-" + suffixe;
+		Long id = pieceService.addPiece(piece(ancien, "REF-" + suffixe)).getId();
+
+		assertThat(parCode.parCode(ancien)).get().extracting(PieceResume::id).isEqualTo(id);
+		// Code encore inconnu : l'absence est mise en cache.
+		assertThat(parCode.parCode(nouveau)).isEmpty();
+
+		pieceService.update(id, piece(nouveau, "REF-" + suffixe));
+
+		assertThat(parCode.parCode(ancien)).isEmpty();
+		assertThat(parCode.parCode(nouveau)).get().extracting(PieceResume::id).isEqualTo(id);
+	}
+}
@@ -0,0 +1,133 @@
+package com.gestionStock.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.gestionStock.backend.entity.piece.Categorie;
+import com.gestionStock.backend.entity.piece.PieceDetachee;
+import com.gestionStock.backend.entity.piece.ProduitFini;
+import com.gestionStock.backend.repository.piece.CategorieRepository;
+import com.gestionStock.backend.repository.piece.PieceDetacheeRepository;
+import com.gestionStock.backend.repository.piece.ProduitFiniRepository;
+import com.gestionStock.backend.support.SqlStatementCounter;
+
+/**
+ * Budget de requêtes SQL par endpoint. Le jeu de données contient assez de
+ * lignes pour qu'un chargement paresseux ligne à ligne (N+1) dépasse largement
+ * le budget et fasse échouer le test.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@WithMockUser(roles = "MAGASINIER")
+class SqlStatementBudgetTests {
+
+	private static final int NB_PIECES = 30;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private PieceDetacheeRepository pieceRepo;
+
+	@Autowired
+	private CategorieRepository categorieRepo;
+
+	@Autowired
+	private ProduitFiniRepository produitRepo;
+
+	@Autowired
+	private TransactionTemplate transaction;
+
+	/**
+	 * Jeu de données créé une fois, en une transaction : les catégories restent
+	 * gérées quand les pièces sont enregistrées, et un échec n'en laisse rien.
+	 * Les produits étant insérés en dernier, leur présence atteste le reste.
+	 */
+	@BeforeEach
+	void jeuDeDonnees() {
+		if (produitRepo.count() > 0) {
+			return;
+		}
+		transaction.executeWithoutResult(statut -> inserer());
+	}
+
+	private void inserer() {
+		List<Categorie> categories = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Categorie c = new Categorie();
+			c.setCode("CAT_" + i);
+			c.setNom("Catégorie " + i);
+			categories.add(categorieRepo.save(c));
+		}
+
+		List<PieceDetachee> pieces = new ArrayList<>();
+		for (int i = 0; i < NB_PIECES; i++) {
+			PieceDetachee p = new PieceDetachee();
+			p.setCodeBarre("CB" + i);
+			p.setReference("REF" + i);
+			p.setDesignation("Pièce " + i);
+			p.setCategorie(categories.get(i % categories.size()));
+			pieces.add(pieceRepo.save(p));
+		}
+
+		for (int i = 0; i < 5; i++) {
+			ProduitFini produit = new ProduitFini();
+			produit.setCode("PF" + i);
+			produit.setDesignation("Produit " + i);
+			for (int j = i; j < NB_PIECES; j += 5) {
+				produit.getPieces().add(pieces.get(j));
+			}
+			produitRepo.save(produit);
+		}
+	}
+
+	@Test
+	void listeDesPieces() throws Exception {
+		assertBudget(get("/api/pieces"), 2);
+	}
+
+	@Test
+	void pageDesPieces() throws Exception {
+		// Une requête pour les désignations renseignées, une pour compléter avec les autres.
+		assertBudget(get("/api/pieces/page").param("tri", "designation"), 2);
+	}
+
+	@Test
+	void listeDesProduits() throws Exception {
+		assertBudget(get("/api/produits"), 2);
+	}
+
+	@Test
+	void pageDesProduits() throws Exception {
+		assertBudget(get("/api/produits/page"), 1);
+	}
+
+	@Test
+	void listeDesCategories() throws Exception {
+		assertBudget(get("/api/categories"), 1);
+	}
+
+	private void assertBudget(RequestBuilder requete, int budget) throws Exception {
+		SqlStatementCounter.reset();
+		mockMvc.perform(requete).andExpect(status().isOk());
+		assertThat(SqlStatementCounter.count())
+				.as("Requêtes SQL émises (budget %d)", budget)
+				.isLessThanOrEqualTo(budget);
+	}
+}
@@ -0,0 +1,203 @@
+package com.gestionStock.backend;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.gestionStock.backend.entity.user.Role;
+import com.gestionStock.backend.entity.user.SynchroUtilisateurs;
+import com.gestionStock.backend.entity.user.User;
+import com.gestionStock.backend.repository.user.SynchroUtilisateursRepository;
+import com.gestionStock.backend.repository.user.UserRepository;
+import com.gestionStock.backend.service.user.ProvisioningUtilisateurs;
+import com.gestionStock.backend.service.user.SynchroUtilisateursService;
+import com.gestionStock.backend.service.user.UserProvisioningFilter;
+import com.gestionStock.backend.support.KeycloakLocal;
+
+/** Copie locale des utilisateurs Keycloak, contre un Keycloak local. */
+@SpringBootTest
+@ActiveProfiles("test")
+class SynchroUtilisateursTests {
+
+	private static final KeycloakLocal keycloak = demarrer();
+
+	@Autowired
+	private SynchroUtilisateursService synchro;
+
+	@Autowired
+	private UserRepository userRepo;
+
+	@Autowired
+	private UserProvisioningFilter filtre;
+
+	@Autowired
+	private ProvisioningUtilisateurs provisioning;
+
+	@Autowired
+	private SynchroUtilisateursRepository synchroRepo;
+
+	private static KeycloakLocal demarrer() {
+		try {
+			return new KeycloakLocal(0);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@DynamicPropertySource
+	static void keycloak(DynamicPropertyRegistry registry) {
+		registry.add("keycloak.admin.server-url", keycloak::url);
+		registry.add("keycloak.target-realm", () -> "myrealm");
+		registry.add("keycloak.admin.taille-page", () -> 10);
+	}
+
+	@AfterAll
+	static void arreter() {
+		keycloak.close();
+	}
+
+	@BeforeEach
+	void vider() {
+		keycloak.vider();
+		userRepo.deleteAll();
+		synchroRepo.deleteAll();
+		// Date gardée en mémoire par le service, qui ne relit la base qu'au démarrage.
+		ReflectionTestUtils.setField(synchro, "derniereReussite", null);
+		ReflectionTestUtils.setField(synchro, "derniereComplete", null);
+	}
+
+	@Test
+	void premiereSynchronisationCopieToutLeRealm() {
+		String admin = keycloak.ajouterUtilisateur("admin@stock.local", "Administrateur", "Magasinier");
+		for (int i = 0; i < 25; i++) {
+			keycloak.ajouterUtilisateur("m" + i + "@stock.local", "Magasinier");
+		}
+		User ancien = new User("ancien", "ancien", "A", "B", "ancien@stock.local", true, Role.AUDITEUR);
+		userRepo.save(ancien);
+
+		assertThat(synchro.aJour()).isFalse();
+		synchro.synchroniser();
+
+		assertThat(synchro.aJour()).isTrue();
+		assertThat(userRepo.count()).isEqualTo(26);
+		assertThat(userRepo.findById(admin)).get().extracting(User::getRole).isEqualTo(Role.ADMINISTRATEUR);
+		assertThat(userRepo.findById("ancien")).isEmpty();
+		assertThat(keycloak.requetes("users")).isEqualTo(3);
+	}
+
+	@Test
+	void absentDeLaListeMaisToujoursDansKeycloakEstGarde() {
+		String decale = keycloak.ajouterUtilisateur("decale@stock.local", "Auditeur");
+		keycloak.ajouterUtilisateur("autre@stock.local", "Magasinier");
+		keycloak.omettreDeLaListe(decale);
+		userRepo.save(new User(decale, "decale@stock.local", "A", "B", "decale@stock.local", true, Role.MAGASINIER));
+		userRepo.save(new User("ancien", "ancien", "A", "B", "ancien@stock.local", true, Role.AUDITEUR));
+
+		synchro.synchroniser();
+
+		assertThat(userRepo.findById(decale)).get().extracting(User::getRole).isEqualTo(Role.AUDITEUR);
+		assertThat(userRepo.findById("ancien")).isEmpty();
+		assertThat(keycloak.requetes("user")).isEqualTo(2);
+	}
+
+	@Test
+	void ensuiteSeulsLesUtilisateursModifiesSontRelus() throws Exception {
+		String modifie = keycloak.ajouterUtilisateur("modifie@stock.local", "Magasinier");
+		String supprime = keycloak.ajouterUtilisateur("supprime@stock.local", "Magasinier");
+		for (int i = 0; i < 25; i++) {
+			keycloak.ajouterUtilisateur("m" + i + "@stock.local", "Magasinier");
+		}
+		// Les événements de création précèdent strictement la synchronisation complète.
+		Thread.sleep(5);
+		synchro.synchroniser();
+
+		keycloak.modifierUtilisateur(modifie, "enabled", false);
+		keycloak.retirerRole(modifie, "Magasinier");
+		keycloak.attribuerRole(modifie, "Auditeur");
+		keycloak.supprimerUtilisateur(supprime);
+		synchro.synchroniser();
+
+		assertThat(keycloak.requetes("users")).isEqualTo(3);
+		assertThat(keycloak.requetes("user")).isEqualTo(2);
+		User apres = userRepo.findById(modifie).orElseThrow();
+		assertThat(apres.isActive()).isFalse();
+		assertThat(apres.getRole()).isEqualTo(Role.AUDITEUR);
+		assertThat(userRepo.findById(supprime)).isEmpty();
+		assertThat(userRepo.count()).isEqualTo(26);
+	}
+
+	@Test
+	void sansEvenementsSeuleLaSynchronisationCompleteCompte() {
+		keycloak.evenementsAdmin(false);
+		keycloak.ajouterUtilisateur("m@stock.local", "Magasinier");
+		synchro.synchroniser();
+		assertThat(synchro.aJour()).isTrue();
+
+		SynchroUtilisateurs etat = synchroRepo.findAll().get(0);
+		etat.setDerniereComplete(Instant.now().minus(1, ChronoUnit.HOURS));
+		synchroRepo.save(etat);
+		synchro.synchroniser();
+
+		assertThat(keycloak.requetes("admin-events")).isZero();
+		assertThat(synchro.derniereSynchro()).get().satisfies(d -> assertThat(d).isAfter(etat.getDerniereComplete()));
+		assertThat(synchro.aJour()).isFalse();
+	}
+
+	@Test
+	void leJetonNEcrasePasLeRoleRecopie() throws Exception {
+		String responsable = keycloak.ajouterUtilisateur("resp@stock.local", "Responsable logistique");
+		synchro.synchroniser();
+		assertThat(userRepo.findById(responsable)).get().extracting(User::getRole)
+				.isEqualTo(Role.RESPONSABL_LOGISTIQUE);
+
+		requete(responsable, "resp@stock.local", "Responsable logistique", "offline_access");
+		assertThat(userRepo.findById(responsable)).get().extracting(User::getRole)
+				.isEqualTo(Role.RESPONSABL_LOGISTIQUE);
+
+		// Sans rôle métier dans le jeton, le rôle recopié reste en place.
+		requete(responsable, "resp@stock.local", "offline_access");
+		assertThat(userRepo.findById(responsable)).get().extracting(User::getRole)
+				.isEqualTo(Role.RESPONSABL_LOGISTIQUE);
+
+		requete("nouveau", "nouveau@stock.local", "offline_access");
+		assertThat(userRepo.findById("nouveau")).get().extracting(User::getRole).isEqualTo(Role.MAGASINIER);
+	}
+
+	/** Requête authentifiée par un jeton portant ces rôles de realm, puis écriture du provisioning. */
+	private void requete(String sujet, String email, String... roles) throws Exception {
+		Jwt jwt = Jwt.withTokenValue("jeton-" + System.nanoTime())
+				.header("alg", "RS256")
+				.subject(sujet)
+				.claim("email", email)
+				.claim("given_name", "Prénom")
+				.claim("family_name", "Nom")
+				.claim("realm_access", Map.of("roles", List.of(roles)))
+				.build();
+		SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+		try {
+			filtre.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(), new MockFilterChain());
+		} finally {
+			SecurityContextHolder.clearContext();
+		}
+		provisioning.vider();
+	}
+}
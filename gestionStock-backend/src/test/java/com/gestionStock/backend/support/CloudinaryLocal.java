@@ -0,0 +1,239 @@
+package com.gestionStock.backend.support;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serveur en mémoire imitant l'API d'envoi de Cloudinary (upload, y compris par
+ * morceaux ou depuis une URL de livraison, rename, destroy) et sa livraison (HEAD et GET des images), pour
+ * tester le stockage Cloudinary sans Cloudinary. Chaque envoi reçu est
+ * journalisé, et le nombre maximal d'envois traités en même temps est retenu.
+ */
+public class CloudinaryLocal implements AutoCloseable {
+
+	/** Un appel à {@code upload} : plage annoncée ({@code null} hors envoi par morceaux) et taille reçue. */
+	public record Envoi(String plage, String idEnvoi, int taille) {
+	}
+
+	/** {@code bytes <debut>-<fin>/<total>}, total valant -1 tant qu'il n'est pas connu. */
+	private static final Pattern PLAGE = Pattern.compile("bytes (\\d+)-(\\d+)/(-?\\d+)");
+
+	private final HttpServer serveur;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final long delaiMs;
+	private final Map<String, byte[]> images = new ConcurrentHashMap<>();
+	private final Map<String, TreeMap<Long, byte[]>> morceaux = new ConcurrentHashMap<>();
+	private final List<Envoi> envois = Collections.synchronizedList(new ArrayList<>());
+	private final AtomicInteger enCours = new AtomicInteger();
+	private final AtomicInteger enCoursMax = new AtomicInteger();
+
+	/** @param delaiMs temps de traitement simulé de chaque envoi */
+	public CloudinaryLocal(long delaiMs) throws IOException {
+		this.delaiMs = delaiMs;
+		serveur = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		serveur.createContext("/", this::traiter);
+		serveur.setExecutor(executor);
+		serveur.start();
+	}
+
+	public String url() {
+		return "http://127.0.0.1:" + serveur.getAddress().getPort();
+	}
+
+	public String hote() {
+		return "127.0.0.1:" + serveur.getAddress().getPort();
+	}
+
+	public List<Envoi> envois() {
+		synchronized (envois) {
+			return List.copyOf(envois);
+		}
+	}
+
+	public int envoisSimultanesMax() {
+		return enCoursMax.get();
+	}
+
+	public byte[] image(String publicId) {
+		return images.get(publicId);
+	}
+
+	@Override
+	public void close() {
+		serveur.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void traiter(HttpExchange echange) throws IOException {
+		String chemin = echange.getRequestURI().getPath();
+		try (InputStream corps = echange.getRequestBody()) {
+			byte[] recu = corps.readAllBytes();
+			if ("POST".equals(echange.getRequestMethod()) && chemin.startsWith("/v1_1/")) {
+				String action = chemin.substring(chemin.lastIndexOf('/') + 1);
+				Map<String, byte[]> champs = champs(echange.getRequestHeaders().getFirst("Content-Type"), recu);
+				switch (action) {
+				case "upload" -> envoyer(echange, champs);
+				case "rename" -> {
+					byte[] image = images.remove(texte(champs, "from_public_id"));
+					String cible = texte(champs, "to_public_id");
+					if (image != null) {
+						images.put(cible, image);
+					}
+					repondre(echange, image != null ? 200 : 404, json(cible, image != null ? image.length : 0));
+				}
+				case "destroy" -> {
+					boolean supprimee = images.remove(texte(champs, "public_id")) != null;
+					repondre(echange, 200, ("{\"result\":\"" + (supprimee ? "ok" : "not found") + "\"}")
+							.getBytes(StandardCharsets.UTF_8));
+				}
+				default -> repondre(echange, 404, null);
+				}
+				return;
+			}
+			String publicId = livree(chemin);
+			byte[] image = publicId != null ? images.get(publicId) : null;
+			repondre(echange, image != null ? 200 : 404, image);
+		}
+	}
+
+	private void envoyer(HttpExchange echange, Map<String, byte[]> champs) throws IOException {
+		int n = enCours.incrementAndGet();
+		enCoursMax.accumulateAndGet(n, Math::max);
+		try {
+			Thread.sleep(delaiMs);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			enCours.decrementAndGet();
+		}
+
+		String publicId = texte(champs, "public_id");
+		byte[] fichier = champs.getOrDefault("file", new byte[0]);
+		String plage = echange.getRequestHeaders().getFirst("Content-Range");
+		String idEnvoi = echange.getRequestHeaders().getFirst("X-Unique-Upload-Id");
+		envois.add(new Envoi(plage, idEnvoi, fichier.length));
+
+		if (plage == null) {
+			String depuis = new String(fichier, StandardCharsets.ISO_8859_1);
+			if (depuis.startsWith(url())) {
+				String source = livree(URI.create(depuis).getPath());
+				fichier = source != null ? images.get(source) : null;
+				if (fichier == null) {
+					repondre(echange, 404, null);
+					return;
+				}
+			}
+			images.put(publicId, fichier);
+			repondre(echange, 200, json(publicId, fichier.length));
+			return;
+		}
+		Matcher bornes = PLAGE.matcher(plage);
+		if (!bornes.matches()) {
+			repondre(echange, 400, null);
+			return;
+		}
+		long debut = Long.parseLong(bornes.group(1));
+		long fin = Long.parseLong(bornes.group(2));
+		long total = Long.parseLong(bornes.group(3));
+		TreeMap<Long, byte[]> recus = morceaux.computeIfAbsent(idEnvoi, id -> new TreeMap<>());
+		synchronized (recus) {
+			recus.put(debut, fichier);
+			if (fin + 1 == total) {
+				ByteArrayOutputStream assemblee = new ByteArrayOutputStream();
+				for (byte[] m : recus.values()) {
+					assemblee.write(m);
+				}
+				images.put(publicId, assemblee.toByteArray());
+				morceaux.remove(idEnvoi);
+			}
+		}
+		repondre(echange, 200, json(publicId, fichier.length));
+	}
+
+	/** Livraison : /<cloud>/image/upload/[transformation/][v1/]<public_id>.<format> ; {@code null} sinon. */
+	private static String livree(String chemin) {
+		int upload = chemin.indexOf("/image/upload/");
+		if (upload < 0) {
+			return null;
+		}
+		String publicId = chemin.substring(upload + "/image/upload/".length()).replaceFirst("^v\\d+/", "");
+		return publicId.substring(0, publicId.lastIndexOf('.'));
+	}
+
+	private static String texte(Map<String, byte[]> champs, String nom) {
+		byte[] valeur = champs.get(nom);
+		return valeur != null ? new String(valeur, StandardCharsets.UTF_8) : null;
+	}
+
+	/** Champs d'un formulaire multipart ou urlencoded ; ISO-8859-1 préserve les octets du fichier. */
+	private static Map<String, byte[]> champs(String type, byte[] corps) {
+		Map<String, byte[]> champs = new HashMap<>();
+		String brut = new String(corps, StandardCharsets.ISO_8859_1);
+		if (type != null && type.startsWith("multipart/")) {
+			String separateur = "--" + type.substring(type.indexOf("boundary=") + "boundary=".length())
+					.replace("\"", "").split(";")[0];
+			for (String partie : brut.split(Pattern.quote(separateur))) {
+				int entetes = partie.indexOf("\r\n\r\n");
+				int nom = partie.indexOf("name=\"");
+				if (entetes < 0 || nom < 0 || nom > entetes) {
+					continue;
+				}
+				String cle = partie.substring(nom + 6, partie.indexOf('"', nom + 6));
+				String valeur = partie.substring(entetes + 4, partie.length() - 2);
+				champs.put(cle, valeur.getBytes(StandardCharsets.ISO_8859_1));
+			}
+		} else {
+			for (String paire : brut.split("&")) {
+				int egal = paire.indexOf('=');
+				if (egal > 0) {
+					champs.put(URLDecoder.decode(paire.substring(0, egal), StandardCharsets.UTF_8),
+							URLDecoder.decode(paire.substring(egal + 1), StandardCharsets.UTF_8)
+									.getBytes(StandardCharsets.UTF_8));
+				}
+			}
+		}
+		return champs;
+	}
+
+	private static byte[] json(String publicId, int taille) {
+		return ("{\"public_id\":\"" + publicId + "\",\"version\":1,\"bytes\":" + taille + "}")
+				.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void repondre(HttpExchange echange, int statut, byte[] corps) throws IOException {
+		if (corps == null || "HEAD".equals(echange.getRequestMethod())) {
+			if (corps != null) {
+				echange.getResponseHeaders().set("Content-Length", String.valueOf(corps.length));
+			}
+			echange.sendResponseHeaders(statut, -1);
+			return;
+		}
+		echange.getResponseHeaders().set("Content-Type",
+				corps.length > 0 && corps[0] == '{' ? "application/json" : "application/octet-stream");
+		echange.sendResponseHeaders(statut, corps.length);
+		try (OutputStream sortie = echange.getResponseBody()) {
+			sortie.write(corps);
+		}
+	}
+}
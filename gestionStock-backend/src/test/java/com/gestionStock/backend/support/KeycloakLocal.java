@@ -0,0 +1,307 @@
+package com.gestionStock.backend.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serveur en mémoire imitant Keycloak pour tester le client d'administration
+ * sans Keycloak : point d'accès des jetons (grants password et refresh_token),
+ * liste paginée des utilisateurs et de leur nombre, utilisateur et rôles de
+ * realm d'un utilisateur, membres paginés d'un rôle de realm, événements
+ * d'administration (du plus récent au plus ancien, comme Keycloak), produits
+ * par les modifications faites via cette classe. Compte les demandes de jeton par grant et les requêtes
+ * d'administration par type, et retient le nombre maximal de requêtes
+ * d'administration traitées en même temps.
+ */
+public class KeycloakLocal implements AutoCloseable {
+
+	private final HttpServer serveur;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final long delaiMs;
+	private final Map<String, AtomicInteger> jetons = new ConcurrentHashMap<>();
+	private final Map<String, AtomicInteger> requetes = new ConcurrentHashMap<>();
+	private final List<Map<String, Object>> utilisateurs = Collections.synchronizedList(new ArrayList<>());
+	private final Map<String, Set<String>> membres = new ConcurrentHashMap<>();
+	private final List<Map<String, Object>> evenements = Collections.synchronizedList(new ArrayList<>());
+	private final Set<String> horsListe = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger enCours = new AtomicInteger();
+	private final AtomicInteger enCoursMax = new AtomicInteger();
+	private volatile int dureeJeton = 300;
+	private volatile boolean evenementsAdmin = true;
+
+	/** @param delaiMs temps de traitement simulé de chaque requête */
+	public KeycloakLocal(long delaiMs) throws IOException {
+		this.delaiMs = delaiMs;
+		serveur = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		serveur.createContext("/", this::traiter);
+		serveur.setExecutor(executor);
+		serveur.start();
+	}
+
+	public String url() {
+		return "http://127.0.0.1:" + serveur.getAddress().getPort();
+	}
+
+	/** Nombre de jetons délivrés pour le grant donné. */
+	public int jetons(String grant) {
+		AtomicInteger n = jetons.get(grant);
+		return n != null ? n.get() : 0;
+	}
+
+	/**
+	 * Requêtes d'administration reçues : {@code count}, {@code users},
+	 * {@code user}, {@code role-mappings}, {@code role-users},
+	 * {@code admin-events} ou {@code events-config}.
+	 */
+	public int requetes(String type) {
+		AtomicInteger n = requetes.get(type);
+		return n != null ? n.get() : 0;
+	}
+
+	public int requetesSimultaneesMax() {
+		return enCoursMax.get();
+	}
+
+	/** Ajoute un utilisateur, avec les rôles de realm donnés, et renvoie son identifiant. */
+	public String ajouterUtilisateur(String email, String... roles) {
+		String id = UUID.randomUUID().toString();
+		Map<String, Object> utilisateur = new LinkedHashMap<>();
+		utilisateur.put("id", id);
+		utilisateur.put("username", email);
+		utilisateur.put("email", email);
+		utilisateur.put("firstName", "Prénom");
+		utilisateur.put("lastName", "Nom");
+		utilisateur.put("enabled", true);
+		utilisateur.put("createdTimestamp", System.currentTimeMillis());
+		utilisateurs.add(utilisateur);
+		evenement("CREATE", "USER", "users/" + id);
+		for (String role : roles) {
+			attribuerRole(id, role);
+		}
+		return id;
+	}
+
+	public void modifierUtilisateur(String id, String champ, Object valeur) {
+		synchronized (utilisateurs) {
+			utilisateurs.stream().filter(u -> u.get("id").equals(id)).forEach(u -> u.put(champ, valeur));
+		}
+		evenement("UPDATE", "USER", "users/" + id);
+	}
+
+	public void attribuerRole(String id, String role) {
+		membres.computeIfAbsent(role, r -> ConcurrentHashMap.newKeySet()).add(id);
+		evenement("CREATE", "REALM_ROLE_MAPPING", "users/" + id + "/role-mappings/realm");
+	}
+
+	public void retirerRole(String id, String role) {
+		membres.computeIfPresent(role, (r, ids) -> {
+			ids.remove(id);
+			return ids;
+		});
+		evenement("DELETE", "REALM_ROLE_MAPPING", "users/" + id + "/role-mappings/realm");
+	}
+
+	public void supprimerUtilisateur(String id) {
+		utilisateurs.removeIf(u -> u.get("id").equals(id));
+		membres.values().forEach(ids -> ids.remove(id));
+		evenement("DELETE", "USER", "users/" + id);
+	}
+
+	/**
+	 * L'utilisateur reste lisible par {@code GET /users/{id}} mais n'apparaît
+	 * plus dans {@code GET /users}, comme quand une page se décale pendant la lecture.
+	 */
+	public void omettreDeLaListe(String id) {
+		horsListe.add(id);
+	}
+
+	/** Valeur de {@code adminEventsEnabled} renvoyée par {@code GET /events/config}. */
+	public void evenementsAdmin(boolean actives) {
+		this.evenementsAdmin = actives;
+	}
+
+	/** Oublie utilisateurs, rôles, événements et compteurs de requêtes. */
+	public void vider() {
+		utilisateurs.clear();
+		horsListe.clear();
+		evenementsAdmin = true;
+		membres.clear();
+		evenements.clear();
+		requetes.clear();
+	}
+
+	private void evenement(String operation, String ressource, String chemin) {
+		Map<String, Object> evenement = new LinkedHashMap<>();
+		evenement.put("time", System.currentTimeMillis());
+		evenement.put("operationType", operation);
+		evenement.put("resourceType", ressource);
+		evenement.put("resourcePath", chemin);
+		evenements.add(evenement);
+	}
+
+	/** Durée de vie, en secondes, des jetons délivrés ensuite. */
+	public void dureeJeton(int secondes) {
+		this.dureeJeton = secondes;
+	}
+
+	@Override
+	public void close() {
+		serveur.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void traiter(HttpExchange echange) throws IOException {
+		String chemin = echange.getRequestURI().getPath();
+		try (InputStream corps = echange.getRequestBody()) {
+			byte[] recu = corps.readAllBytes();
+			if ("POST".equals(echange.getRequestMethod()) && chemin.endsWith("/protocol/openid-connect/token")) {
+				attendre();
+				String grant = formulaire(new String(recu, StandardCharsets.UTF_8)).get("grant_type");
+				jetons.computeIfAbsent(grant, g -> new AtomicInteger()).incrementAndGet();
+				repondre(echange, 200, "{\"access_token\":\"" + UUID.randomUUID() + "\",\"expires_in\":" + dureeJeton
+						+ ",\"refresh_token\":\"" + UUID.randomUUID() + "\",\"refresh_expires_in\":1800}");
+				return;
+			}
+			int admin = chemin.indexOf("/admin/realms/");
+			if ("GET".equals(echange.getRequestMethod()) && admin >= 0) {
+				int n = enCours.incrementAndGet();
+				enCoursMax.accumulateAndGet(n, Math::max);
+				try {
+					attendre();
+					administrer(echange, chemin.substring(chemin.indexOf('/', admin + "/admin/realms/".length())));
+				} finally {
+					enCours.decrementAndGet();
+				}
+				return;
+			}
+			repondre(echange, 404, null);
+		}
+	}
+
+	private void administrer(HttpExchange echange, String chemin) throws IOException {
+		Map<String, String> parametres = formulaire(echange.getRequestURI().getRawQuery() != null
+				? echange.getRequestURI().getRawQuery() : "");
+		int first = Integer.parseInt(parametres.getOrDefault("first", "0"));
+		int max = Integer.parseInt(parametres.getOrDefault("max", "100"));
+		List<Map<String, Object>> tous;
+		synchronized (utilisateurs) {
+			tous = List.copyOf(utilisateurs);
+		}
+		if (chemin.equals("/users/count")) {
+			compter("count");
+			repondre(echange, 200, String.valueOf(tous.size()));
+		} else if (chemin.equals("/users")) {
+			compter("users");
+			repondre(echange, 200, json(page(tous.stream().filter(u -> !horsListe.contains(u.get("id"))).toList(),
+					first, max)));
+		} else if (chemin.equals("/events/config")) {
+			compter("events-config");
+			repondre(echange, 200, "{\"adminEventsEnabled\":" + evenementsAdmin + "}");
+		} else if (chemin.equals("/admin-events")) {
+			compter("admin-events");
+			long depuis = LocalDate.parse(parametres.get("dateFrom")).atStartOfDay(ZoneOffset.UTC).toInstant()
+					.toEpochMilli();
+			List<Map<String, Object>> recents;
+			synchronized (evenements) {
+				recents = new ArrayList<>(evenements);
+			}
+			Collections.reverse(recents);
+			repondre(echange, 200, json(page(recents.stream().filter(e -> (long) e.get("time") >= depuis).toList(),
+					first, max)));
+		} else if (chemin.startsWith("/users/") && chemin.endsWith("/role-mappings/realm")) {
+			compter("role-mappings");
+			String id = chemin.substring("/users/".length(), chemin.indexOf('/', "/users/".length()));
+			repondre(echange, 200, json(membres.entrySet().stream().filter(m -> m.getValue().contains(id))
+					.map(m -> Map.<String, Object>of("name", m.getKey())).toList()));
+		} else if (chemin.startsWith("/users/")) {
+			compter("user");
+			String id = chemin.substring("/users/".length());
+			List<Map<String, Object>> trouve = tous.stream().filter(u -> u.get("id").equals(id)).toList();
+			if (trouve.isEmpty()) {
+				repondre(echange, 404, null);
+			} else {
+				String liste = json(trouve);
+				repondre(echange, 200, liste.substring(1, liste.length() - 1));
+			}
+		} else if (chemin.startsWith("/roles/") && chemin.endsWith("/users")) {
+			compter("role-users");
+			String role = URLDecoder.decode(chemin.substring("/roles/".length(), chemin.length() - "/users".length()),
+					StandardCharsets.UTF_8);
+			Set<String> ids = membres.getOrDefault(role, Set.of());
+			repondre(echange, 200, json(page(tous.stream().filter(u -> ids.contains(u.get("id"))).toList(), first, max)));
+		} else {
+			repondre(echange, 404, null);
+		}
+	}
+
+	/** Temps de traitement simulé ; pour l'administration, compté comme requête en cours. */
+	private void attendre() {
+		try {
+			Thread.sleep(delaiMs);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void compter(String type) {
+		requetes.computeIfAbsent(type, t -> new AtomicInteger()).incrementAndGet();
+	}
+
+	private static List<Map<String, Object>> page(List<Map<String, Object>> liste, int first, int max) {
+		return liste.subList(Math.min(first, liste.size()), Math.min(first + max, liste.size()));
+	}
+
+	private static String json(List<Map<String, Object>> liste) {
+		return liste.stream().map(u -> u.entrySet().stream()
+				.map(e -> "\"" + e.getKey() + "\":"
+						+ (e.getValue() instanceof String v ? "\"" + v + "\"" : String.valueOf(e.getValue())))
+				.collect(Collectors.joining(",", "{", "}"))).collect(Collectors.joining(",", "[", "]"));
+	}
+
+	private static Map<String, String> formulaire(String corps) {
+		Map<String, String> champs = new HashMap<>();
+		for (String paire : corps.split("&")) {
+			int egal = paire.indexOf('=');
+			if (egal > 0) {
+				champs.put(URLDecoder.decode(paire.substring(0, egal), StandardCharsets.UTF_8),
+						URLDecoder.decode(paire.substring(egal + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return champs;
+	}
+
+	private static void repondre(HttpExchange echange, int statut, String json) throws IOException {
+		if (json == null) {
+			echange.sendResponseHeaders(statut, -1);
+			return;
+		}
+		byte[] corps = json.getBytes(StandardCharsets.UTF_8);
+		echange.getResponseHeaders().set("Content-Type", "application/json");
+		echange.sendResponseHeaders(statut, corps.length);
+		try (OutputStream sortie = echange.getResponseBody()) {
+			sortie.write(corps);
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package com.gestionStock.backend.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Compte les requêtes SQL préparées par Hibernate sur le thread courant. MockMvc
+ * exécute la requête HTTP sur le thread du test : le compteur mesure donc
+ * exactement ce qu'un appel d'endpoint coûte en base.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+	private static final ThreadLocal<int[]> COMPTEUR = ThreadLocal.withInitial(() -> new int[1]);
+
+	@Override
+	public String inspect(String sql) {
+		COMPTEUR.get()[0]++;
+		return sql;
+	}
+
+	public static void reset() {
+		COMPTEUR.get()[0] = 0;
+	}
+
+	public static int count() {
+		return COMPTEUR.get()[0];
+	}
+}
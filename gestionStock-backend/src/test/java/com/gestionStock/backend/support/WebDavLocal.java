@@ -0,0 +1,227 @@
+package com.gestionStock.backend.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serveur WebDAV minimal en mémoire (HEAD, GET, PUT, MOVE, DELETE, MKCOL, PROPFIND de
+ * profondeur 0, PROPPATCH de {@code d:lastmodified}, SEARCH par identifiant croissant
+ * comme Nextcloud), pour tester le stockage Nextcloud sans Nextcloud. Compte les
+ * requêtes par méthode, les connexions TCP ouvertes et les requêtes reçues sans
+ * authentification, et peut altérer le contenu reçu de certains fichiers.
+ */
+public class WebDavLocal implements AutoCloseable {
+
+	private static final Pattern DERNIERE_MODIFICATION = Pattern.compile("lastmodified[^>]*>(\\d+)<");
+	private static final Pattern PORTEE = Pattern.compile("<d:href>([^<]+)</d:href>");
+	private static final Pattern APRES = Pattern.compile("<d:literal>(\\d+)</d:literal>");
+	private static final Pattern NOMBRE = Pattern.compile("<d:nresults>(\\d+)</d:nresults>");
+
+	private final HttpServer serveur;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final Map<String, byte[]> fichiers = new ConcurrentHashMap<>();
+	/** Dates posées par PROPPATCH ; les autres fichiers portent une date fixe. */
+	private final Map<String, Instant> modifications = new ConcurrentHashMap<>();
+	/** Identifiant de chaque fichier, attribué à sa création comme le {@code oc:fileid} de Nextcloud. */
+	private final Map<String, Long> identifiants = new ConcurrentHashMap<>();
+	private final AtomicLong prochainIdentifiant = new AtomicLong(1);
+	private final Set<String> dossiers = ConcurrentHashMap.newKeySet();
+	private final Map<String, AtomicInteger> requetes = new ConcurrentHashMap<>();
+	private final Set<Integer> connexions = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger sansAuthentification = new AtomicInteger();
+	/** Noms de fichiers dont le contenu envoyé est enregistré altéré. */
+	private final Set<String> alteres = ConcurrentHashMap.newKeySet();
+
+	public WebDavLocal() throws IOException {
+		serveur = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		serveur.createContext("/", this::traiter);
+		serveur.setExecutor(executor);
+		serveur.start();
+	}
+
+	public String url() {
+		return "http://127.0.0.1:" + serveur.getAddress().getPort();
+	}
+
+	public int requetes(String methode) {
+		AtomicInteger n = requetes.get(methode);
+		return n != null ? n.get() : 0;
+	}
+
+	public int connexions() {
+		return connexions.size();
+	}
+
+	public int sansAuthentification() {
+		return sansAuthentification.get();
+	}
+
+	/** Les prochains envois de {@code nom} seront enregistrés avec leur premier octet modifié. */
+	public void alterer(String nom) {
+		alteres.add(nom);
+	}
+
+	public void retablir(String nom) {
+		alteres.remove(nom);
+	}
+
+	/** Fichiers enregistrés, par nom. */
+	public Set<String> noms() {
+		return fichiers.keySet().stream().map(c -> c.substring(c.lastIndexOf('/') + 1))
+				.collect(Collectors.toSet());
+	}
+
+	@Override
+	public void close() {
+		serveur.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void traiter(HttpExchange echange) throws IOException {
+		String methode = echange.getRequestMethod();
+		String chemin = echange.getRequestURI().getPath();
+		String cle = chemin.endsWith("/") ? chemin.substring(0, chemin.length() - 1) : chemin;
+		requetes.computeIfAbsent(methode, m -> new AtomicInteger()).incrementAndGet();
+		connexions.add(echange.getRemoteAddress().getPort());
+		if (echange.getRequestHeaders().getFirst("Authorization") == null) {
+			sansAuthentification.incrementAndGet();
+		}
+
+		try (InputStream corps = echange.getRequestBody()) {
+			byte[] recu = corps.readAllBytes();
+			switch (methode) {
+			case "HEAD" -> repondre(echange, fichiers.containsKey(cle) || dossiers.contains(cle) ? 200 : 404, null);
+			case "MKCOL" -> {
+				dossiers.add(cle);
+				repondre(echange, 201, null);
+			}
+			case "PUT" -> {
+				if (recu.length > 0 && alteres.contains(cle.substring(cle.lastIndexOf('/') + 1))) {
+					recu[0]++;
+				}
+				fichiers.put(cle, recu);
+				modifications.remove(cle);
+				identifiants.computeIfAbsent(cle, c -> prochainIdentifiant.getAndIncrement());
+				repondre(echange, 201, null);
+			}
+			case "MOVE" -> {
+				String destination = URI.create(echange.getRequestHeaders().getFirst("Destination")).getPath();
+				byte[] contenu = fichiers.remove(cle);
+				if (contenu != null) {
+					fichiers.put(destination, contenu);
+					modifications.remove(destination);
+					identifiants.put(destination, identifiants.remove(cle));
+				}
+				repondre(echange, contenu != null ? 201 : 404, null);
+			}
+			case "DELETE" -> {
+				identifiants.remove(cle);
+				repondre(echange, fichiers.remove(cle) != null ? 204 : 404, null);
+			}
+			case "SEARCH" -> repondre(echange, 207, rechercher(cle, new String(recu, StandardCharsets.UTF_8)));
+			case "PROPPATCH" -> {
+				byte[] contenu = fichiers.get(cle);
+				Matcher date = DERNIERE_MODIFICATION.matcher(new String(recu, StandardCharsets.UTF_8));
+				if (contenu != null && date.find()) {
+					modifications.put(cle, Instant.ofEpochSecond(Long.parseLong(date.group(1))));
+				}
+				repondre(echange, contenu != null ? 207 : 404, contenu != null ? proprietes(chemin, contenu, null) : null);
+			}
+			case "GET" -> {
+				byte[] contenu = fichiers.get(cle);
+				repondre(echange, contenu != null ? 200 : 404, contenu);
+			}
+			case "PROPFIND" -> {
+				byte[] contenu = fichiers.get(cle);
+				repondre(echange, contenu != null ? 207 : 404,
+						contenu != null ? proprietes(chemin, contenu, modifications.get(cle)) : null);
+			}
+			default -> repondre(echange, 405, null);
+			}
+		}
+	}
+
+	private byte[] rechercher(String racine, String requete) {
+		Matcher portee = PORTEE.matcher(requete);
+		Matcher apres = APRES.matcher(requete);
+		Matcher nombre = NOMBRE.matcher(requete);
+		if (!portee.find() || !apres.find() || !nombre.find()) {
+			throw new IllegalArgumentException("Requête SEARCH incomplète : " + requete);
+		}
+		String dossier = racine + portee.group(1) + "/";
+		long depuis = Long.parseLong(apres.group(1));
+		StringBuilder reponses = new StringBuilder();
+		identifiants.entrySet().stream()
+				.filter(e -> e.getKey().startsWith(dossier) && e.getValue() > depuis)
+				.sorted(Map.Entry.comparingByValue())
+				.limit(Long.parseLong(nombre.group(1)))
+				.forEach(e -> reponses.append(reponse(e.getKey(), fichiers.get(e.getKey()).length,
+						modifications.get(e.getKey()), "<oc:fileid>" + e.getValue() + "</oc:fileid>")));
+		return multistatus(reponses.toString());
+	}
+
+	private static byte[] proprietes(String chemin, byte[] contenu, Instant modification) {
+		return multistatus(reponse(chemin, contenu.length, modification, ""));
+	}
+
+	private static byte[] multistatus(String reponses) {
+		return ("""
+				<?xml version="1.0" encoding="utf-8"?>
+				<d:multistatus xmlns:d="DAV:" xmlns:oc="http://owncloud.org/ns">
+				%s</d:multistatus>
+				""").formatted(reponses).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String reponse(String chemin, int longueur, Instant modification, String autres) {
+		String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+				(modification != null ? modification : Instant.parse("2025-01-15T10:00:00Z")).atZone(ZoneOffset.UTC));
+		return """
+				  <d:response>
+				    <d:href>%s</d:href>
+				    <d:propstat>
+				      <d:prop>
+				        <d:getcontentlength>%d</d:getcontentlength>
+				        <d:getlastmodified>%s</d:getlastmodified>
+				        <d:getcontenttype>application/octet-stream</d:getcontenttype>
+				        <d:resourcetype/>%s
+				      </d:prop>
+				      <d:status>HTTP/1.1 200 OK</d:status>
+				    </d:propstat>
+				  </d:response>
+				""".formatted(chemin, longueur, date, autres);
+	}
+
+	private static void repondre(HttpExchange echange, int statut, byte[] corps) throws IOException {
+		if (corps == null || "HEAD".equals(echange.getRequestMethod())) {
+			echange.sendResponseHeaders(statut, -1);
+			return;
+		}
+		if (statut == 207) {
+			echange.getResponseHeaders().set("Content-Type", "application/xml; charset=utf-8");
+		}
+		echange.sendResponseHeaders(statut, corps.length);
+		try (OutputStream sortie = echange.getResponseBody()) {
+			sortie.write(corps);
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.gestionStock.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lanceur des bancs d'essai. Accepte les options habituelles de JMH (expression
+ * des bancs à lancer, {@code -p}, {@code -f}, ...) et écrit par défaut les
+ * résultats en JSON dans {@code target/jmh-result.json}, pour comparer deux
+ * exécutions.
+ *
+ * <pre>
+ * mvn -f gestionStock-backend install -DskipTests
+ * mvn -f gestionStock-benchmarks compile exec:exec -Dbench.args="Serialisation -p nbPieces=100"
+ * </pre>
+ */
+public final class Bancs {
+
+    private Bancs() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions ligne = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(ligne)
+                .resultFormat(ligne.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(ligne.getResult().orElse("target/jmh-result.json"))
+                .build();
+        new Runner(options).run();
+    }
+}
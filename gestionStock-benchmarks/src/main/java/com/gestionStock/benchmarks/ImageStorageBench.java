@@ -0,0 +1,112 @@
+package com.gestionStock.benchmarks;
+
+import com.gestionStock.backend.service.images.IImageStorage;
+import com.gestionStock.backend.service.images.LocalStorage;
+import com.gestionStock.backend.service.images.NextcloudStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Envoi et lecture d'une image sur chaque implémentation de {@link IImageStorage}.
+ * <p>
+ * L'envoi réécrit toujours le même nom, pour que le volume stocké ne grossisse
+ * pas avec le nombre d'invocations. Le stockage local écrit dans un répertoire
+ * temporaire. Le stockage Nextcloud
+ * exige un serveur joignable : {@code -p stockage=nextcloud} avec les propriétés
+ * système {@code bench.nextcloud.url}, {@code .username}, {@code .password}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageStorageBench {
+
+    @Param({ "local" })
+    public String stockage;
+
+    @Param({ "16384", "262144" })
+    public int taille;
+
+    private IImageStorage storage;
+    private Path repertoire;
+    private byte[] octets;
+    private String nomLu;
+
+    @Setup(Level.Trial)
+    public void preparer() throws Exception {
+        octets = new byte[taille];
+        new Random(42).nextBytes(octets);
+
+        switch (stockage) {
+            case "local" -> {
+                repertoire = Files.createTempDirectory("bench-images");
+                LocalStorage local = new LocalStorage();
+                ReflectionTestUtils.setField(local, "uploadDir", repertoire.toString());
+                storage = local;
+            }
+            case "nextcloud" -> {
+                NextcloudStorage nextcloud = new NextcloudStorage(System.getProperty("bench.nextcloud.url"),
+                        System.getProperty("bench.nextcloud.username"), System.getProperty("bench.nextcloud.password"),
+                        System.getProperty("bench.nextcloud.base-path", "/remote.php/dav/files/admin"),
+                        "bench_images", 20, Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofSeconds(60),
+                        new SimpleMeterRegistry());
+                storage = nextcloud;
+            }
+            default -> throw new IllegalArgumentException("Stockage inconnu : " + stockage);
+        }
+
+        String url = storage.uploadImage(new MockMultipartFile("file", "image.jpg", "image/jpeg", octets));
+        nomLu = url.substring(url.lastIndexOf('/') + 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void nettoyer() throws IOException {
+        if (repertoire != null) {
+            try (Stream<Path> chemins = Files.walk(repertoire)) {
+                for (Path p : chemins.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public String upload() throws Exception {
+        return storage.saveImage("bench-envoi.jpg", new ByteArrayInputStream(octets), octets.length);
+    }
+
+    @Benchmark
+    public long lecture() throws Exception {
+        try (InputStream is = storage.getImage(nomLu)) {
+            return is.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.gestionStock.benchmarks;
+
+import com.gestionStock.backend.JwtAuthConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion d'un jeton Keycloak en authentification, exécutée à chaque requête.
+ * {@code convert} mesure le cas courant (jeton déjà vu, droits en cache) ;
+ * {@code convertJetonNouveau} un {@code jti} différent à chaque appel, donc un
+ * défaut de cache, construction du {@link Jwt} comprise.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthConverterBench {
+
+    @Param({ "1", "5", "20" })
+    public int nbRoles;
+
+    private JwtAuthConverter converter;
+    private Jwt jwt;
+    private long jetons;
+
+    @Setup
+    public void preparer() {
+        converter = new JwtAuthConverter(new SimpleMeterRegistry(), 10_000, Duration.ofHours(1));
+        ReflectionTestUtils.setField(converter, "principalAttribute", "preferred_username");
+        ReflectionTestUtils.setField(converter, "resourceId", "myclient");
+
+        List<String> roles = new ArrayList<>();
+        for (int i = 0; i < nbRoles; i++) {
+            roles.add("role metier " + i);
+        }
+        Instant maintenant = Instant.now();
+        jwt = Jwt.withTokenValue("jeton")
+                .header("alg", "RS256")
+                .jti("jti-courant")
+                .subject("3f1c2a9e-0000-4000-8000-000000000001")
+                .issuedAt(maintenant)
+                .expiresAt(maintenant.plusSeconds(300))
+                .claim("preferred_username", "magasinier")
+                .claim("scope", "openid profile email")
+                .claim("realm_access", Map.of("roles", roles))
+                .claim("resource_access", Map.of("myclient", Map.of("roles", roles)))
+                .build();
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken convert() {
+        return converter.convert(jwt);
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken convertJetonNouveau() {
+        Map<String, Object> claims = new HashMap<>(jwt.getClaims());
+        claims.put("jti", "jti-" + jetons++);
+        return converter.convert(new Jwt(jwt.getTokenValue(), jwt.getIssuedAt(), jwt.getExpiresAt(),
+                jwt.getHeaders(), claims));
+    }
+}
@@ -0,0 +1,84 @@
+package com.gestionStock.benchmarks;
+
+import com.gestionStock.backend.GestionStockBackendApplication;
+import com.gestionStock.backend.entity.piece.Categorie;
+import com.gestionStock.backend.entity.piece.PieceDetachee;
+import com.gestionStock.backend.repository.piece.CategorieRepository;
+import com.gestionStock.backend.service.piece.PieceDetacheeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Création et modification d'une pièce au travers du service, contexte Spring
+ * complet sur une base H2 embarquée (profil {@code bench}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PieceServiceBench {
+
+    private ConfigurableApplicationContext contexte;
+    private PieceDetacheeService pieceService;
+    private PieceDetachee modele;
+    private long compteur;
+
+    @Setup(Level.Trial)
+    public void demarrer() {
+        contexte = new SpringApplicationBuilder(GestionStockBackendApplication.class).profiles("bench").run();
+        pieceService = contexte.getBean(PieceDetacheeService.class);
+
+        Categorie categorie = new Categorie();
+        categorie.setCode("BENCH");
+        categorie.setNom("Bancs d'essai");
+        contexte.getBean(CategorieRepository.class).save(categorie);
+
+        modele = pieceService.addPiece(piece("MODELE"));
+    }
+
+    @TearDown(Level.Trial)
+    public void arreter() {
+        contexte.close();
+    }
+
+    @Benchmark
+    public PieceDetachee addPiece() {
+        return pieceService.addPiece(piece("P" + compteur++));
+    }
+
+    @Benchmark
+    public PieceDetachee update() {
+        PieceDetachee p = piece("MODELE");
+        p.setDesignation("Pièce modifiée " + compteur++);
+        return pieceService.update(modele.getId(), p);
+    }
+
+    private static PieceDetachee piece(String code) {
+        PieceDetachee p = new PieceDetachee();
+        p.setCodeBarre("CB-" + code);
+        p.setReference("REF-" + code);
+        p.setDesignation("Pièce " + code);
+        p.setPrixVente(12.5);
+        p.setSeuilMinimum(5);
+        Categorie categorie = new Categorie();
+        categorie.setCode("BENCH");
+        p.setCategorie(categorie);
+        return p;
+    }
+}
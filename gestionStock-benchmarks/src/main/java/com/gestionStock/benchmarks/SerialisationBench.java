@@ -0,0 +1,84 @@
+package com.gestionStock.benchmarks;
+
+import com.gestionStock.backend.entity.piece.Categorie;
+import com.gestionStock.backend.entity.piece.PieceDetachee;
+import com.gestionStock.backend.entity.piece.ProduitFini;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sérialisation JSON de listes de pièces telles que renvoyées par
+ * {@code GET /api/pieces} : chaque pièce avec sa catégorie et trois produits associés.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerialisationBench {
+
+    @Param({ "1", "10", "100", "1000" })
+    public int nbPieces;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private List<PieceDetachee> pieces;
+
+    @Setup
+    public void preparer() {
+        List<Categorie> categories = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Categorie c = new Categorie();
+            c.setId((long) i);
+            c.setCode("CAT_" + i);
+            c.setNom("Catégorie " + i);
+            categories.add(c);
+        }
+        List<ProduitFini> produits = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ProduitFini p = new ProduitFini();
+            p.setId((long) i);
+            p.setCode("PF" + i);
+            p.setDesignation("Produit fini " + i);
+            produits.add(p);
+        }
+
+        pieces = new ArrayList<>(nbPieces);
+        for (int i = 0; i < nbPieces; i++) {
+            PieceDetachee p = new PieceDetachee();
+            p.setId((long) i);
+            p.setCodeBarre("3760000" + String.format("%06d", i));
+            p.setReference("REF-" + i);
+            p.setDesignation("Pièce détachée numéro " + i);
+            p.setPrixVente(10.0 + i);
+            p.setSeuilMinimum(i % 20);
+            p.setTauxTVA(20.0);
+            p.setImageUrl("/api/images/" + i + ".jpg");
+            p.setCategorie(categories.get(i % categories.size()));
+            for (int j = 0; j < 3; j++) {
+                p.getProduitsAssocies().add(produits.get((i + j) % produits.size()));
+            }
+            pieces.add(p);
+        }
+    }
+
+    @Benchmark
+    public byte[] serialiser() {
+        return objectMapper.writeValueAsBytes(pieces);
+    }
+}
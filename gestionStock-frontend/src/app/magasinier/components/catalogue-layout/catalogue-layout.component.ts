@@ -99,6 +99,12 @@ export class CatalogueLayoutComponent implements OnInit {
         this.selectedPiece = null;
     }
 
+    /** Miniature servie par le backend pour les vues en grille (l'original si elle n'existe pas). */
+    getMiniatureUrl(url: string | null | undefined): string {
+        const complete = this.getImageUrl(url);
+        return complete.includes('/api/images/') ? `${complete}?largeur=480` : complete;
+    }
+
     getImageUrl(url: string | null | undefined): string {
         const defaultImage = this.activeTab === 'pieces' ? 'assets/images/default-piece.svg' : 'assets/images/default-produit.svg';
         if (!url) return defaultImage;
@@ -109,10 +109,7 @@ export class PieceListComponent implements OnInit {
     }
 
     private doUpload(file: File, id: number): void {
-        const formData = new FormData();
-        formData.append('file', file);
-
-        this.magasinierService.uploadPieceImage(id, formData).subscribe({
+        this.magasinierService.uploadPieceImage(id, file).subscribe({
             next: (updatedPiece) => {
                 this.notify('Image mise à jour', 'success');
                 this.loadPieces();
@@ -234,10 +231,7 @@ export class PieceListComponent implements OnInit {
                 };
 
                 if (this.quickProductFile && prod.id) {
-                    const formData = new FormData();
-                    formData.append('file', this.quickProductFile);
-
-                    this.magasinierService.uploadProduitImage(prod.id, formData).subscribe({
+                    this.magasinierService.uploadProduitImage(prod.id, this.quickProductFile).subscribe({
                         next: (updatedProd) => finalize(updatedProd),
                         error: (err) => {
                             console.error('Error uploading produit image from quick add:', err);
@@ -503,6 +497,12 @@ export class PieceListComponent implements OnInit {
         }
     }
 
+    /** Miniature servie par le backend pour les vues en grille (l'original si elle n'existe pas). */
+    getMiniatureUrl(url: string | null | undefined): string {
+        const complete = this.getImageUrl(url);
+        return complete.includes('/api/images/') ? `${complete}?largeur=480` : complete;
+    }
+
     getImageUrl(url: string | null | undefined): string {
         if (!url) return 'assets/images/default-produit.svg';
 
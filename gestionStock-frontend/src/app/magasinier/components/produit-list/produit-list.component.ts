@@ -90,10 +90,7 @@ export class ProduitListComponent implements OnInit {
     }
 
     private doUpload(file: File, id: number): void {
-        const formData = new FormData();
-        formData.append('file', file);
-
-        this.magasinierService.uploadProduitImage(id, formData).subscribe({
+        this.magasinierService.uploadProduitImage(id, file).subscribe({
             next: (updatedProduit) => {
                 this.notify('Image mise à jour', 'success');
                 this.loadProduits();
@@ -222,6 +219,12 @@ export class ProduitListComponent implements OnInit {
         }
     }
 
+    /** Miniature servie par le backend pour les vues en grille (l'original si elle n'existe pas). */
+    getMiniatureUrl(url: string | null | undefined): string {
+        const complete = this.getImageUrl(url);
+        return complete.includes('/api/images/') ? `${complete}?largeur=480` : complete;
+    }
+
     getImageUrl(url: string | null | undefined): string {
         if (!url) return 'assets/images/default-produit.svg';
 
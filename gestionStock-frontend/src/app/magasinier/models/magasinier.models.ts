@@ -41,3 +41,43 @@ export interface ProduitFini {
     pieces?: PieceDetachee[];
     estArchivee?: boolean;
 }
+
+export interface PageCurseur<T> {
+    elements: T[];
+    curseurSuivant: string | null;
+}
+
+export interface PieceResume {
+    id: number;
+    codeBarre: string;
+    reference: string;
+    designation: string;
+    prixVente: number;
+    seuilMinimum: number;
+    tauxTVA: number;
+    imageUrl?: string;
+    categorieId?: number;
+    categorieNom?: string;
+}
+
+export interface PieceSuggestion {
+    id: number;
+    codeBarre: string;
+    reference?: string;
+    designation?: string;
+}
+
+export interface ProduitResume {
+    id: number;
+    code: string;
+    designation: string;
+    imageUrl?: string;
+}
+
+export interface CategorieResume {
+    id: number;
+    code: string;
+    nom: string;
+    description?: string;
+    archivee: boolean;
+}
@@ -1,7 +1,9 @@
 import { Injectable } from '@angular/core';
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpParams } from '@angular/common/http';
 import { Observable } from 'rxjs';
-import { PieceDetachee, ProduitFini, Categorie } from '../models/magasinier.models';
+import {
+    PieceDetachee, ProduitFini, Categorie, PageCurseur, PieceResume, PieceSuggestion, ProduitResume, CategorieResume
+} from '../models/magasinier.models';
 
 @Injectable({
     providedIn: 'root'
@@ -15,6 +17,19 @@ export class MagasinierService {
         return this.http.get<PieceDetachee[]>(`${this.baseUrl}/pieces`);
     }
 
+    getPiecesPage(curseur?: string | null, taille = 50, tri: 'id' | 'designation' = 'id'): Observable<PageCurseur<PieceResume>> {
+        return this.http.get<PageCurseur<PieceResume>>(`${this.baseUrl}/pieces/page`, { params: this.pageParams(curseur, taille, tri) });
+    }
+
+    getPieceByCode(codeBarre: string): Observable<PieceResume> {
+        return this.http.get<PieceResume>(`${this.baseUrl}/pieces/by-code/${encodeURIComponent(codeBarre)}`);
+    }
+
+    rechercherPieces(q: string, limite = 10): Observable<PieceSuggestion[]> {
+        const params = new HttpParams().set('q', q).set('limite', limite);
+        return this.http.get<PieceSuggestion[]>(`${this.baseUrl}/pieces/recherche`, { params });
+    }
+
     createPiece(piece: PieceDetachee): Observable<PieceDetachee> {
         return this.http.post<PieceDetachee>(`${this.baseUrl}/pieces`, piece);
     }
@@ -31,6 +46,10 @@ export class MagasinierService {
         return this.http.get<ProduitFini[]>(`${this.baseUrl}/produits`);
     }
 
+    getProduitsPage(curseur?: string | null, taille = 50, tri: 'id' | 'designation' = 'id'): Observable<PageCurseur<ProduitResume>> {
+        return this.http.get<PageCurseur<ProduitResume>>(`${this.baseUrl}/produits/page`, { params: this.pageParams(curseur, taille, tri) });
+    }
+
     createProduit(produit: ProduitFini): Observable<ProduitFini> {
         return this.http.post<ProduitFini>(`${this.baseUrl}/produits`, produit);
     }
@@ -43,12 +62,18 @@ export class MagasinierService {
         return this.http.delete<void>(`${this.baseUrl}/produits/${id}`);
     }
 
-    uploadPieceImage(id: number, formData: FormData): Observable<PieceDetachee> {
-        return this.http.post<PieceDetachee>(`${this.baseUrl}/pieces/upload-image/${id}`, formData);
+    uploadPieceImage(id: number, file: File): Observable<PieceDetachee> {
+        return this.http.put<PieceDetachee>(`${this.baseUrl}/pieces/${id}/image`, file, {
+            headers: { 'Content-Type': file.type || 'image/jpeg' },
+            params: { nom: file.name }
+        });
     }
 
-    uploadProduitImage(id: number, formData: FormData): Observable<ProduitFini> {
-        return this.http.post<ProduitFini>(`${this.baseUrl}/produits/upload-image/${id}`, formData);
+    uploadProduitImage(id: number, file: File): Observable<ProduitFini> {
+        return this.http.put<ProduitFini>(`${this.baseUrl}/produits/${id}/image`, file, {
+            headers: { 'Content-Type': file.type || 'image/jpeg' },
+            params: { nom: file.name }
+        });
     }
 
 
@@ -56,7 +81,19 @@ export class MagasinierService {
         return this.http.get<Categorie[]>(`${this.baseUrl}/categories`);
     }
 
+    getCategoriesPage(curseur?: string | null, taille = 50, tri: 'id' | 'nom' = 'id'): Observable<PageCurseur<CategorieResume>> {
+        return this.http.get<PageCurseur<CategorieResume>>(`${this.baseUrl}/categories/page`, { params: this.pageParams(curseur, taille, tri) });
+    }
+
     createCategorie(categorie: Categorie): Observable<Categorie> {
         return this.http.post<Categorie>(`${this.baseUrl}/categories`, categorie);
     }
+
+    private pageParams(curseur: string | null | undefined, taille: number, tri: string): HttpParams {
+        let params = new HttpParams().set('taille', taille).set('tri', tri);
+        if (curseur) {
+            params = params.set('curseur', curseur);
+        }
+        return params;
+    }
 }